@@ -0,0 +1,66 @@
+package com.store.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.store.domain.CategorySummary;
+import com.store.domain.Product;
+import com.store.rest.representation.CategoryCollectionRepresentation;
+import com.store.rest.representation.ProductCollectionRepresentation;
+
+/**
+ * Builds the response bodies the benchmarks serialize. Dates are spread over a
+ * few years so a date formatter cannot get away with one cached value.
+ */
+final class CatalogFixtures {
+
+	private static final LocalDate FIRST_DAY = LocalDate.of(2014, 1, 1);
+
+	private CatalogFixtures() {
+
+	}
+
+	static ProductCollectionRepresentation products(int size) {
+		return new ProductCollectionRepresentation(productList(size, 0),
+				size > 0 ? "eyJpZCI6" + size + "fQ" : null);
+	}
+
+	static CategoryCollectionRepresentation categories(int size) {
+		List<CategorySummary> categories = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			categories.add(new CategorySummary((long) i + 1, "category-" + i,
+					day(i * 7), day(i * 7 + 3), (long) (i % 50)));
+		}
+		return new CategoryCollectionRepresentation(categories, size, 0, size);
+	}
+
+	/**
+	 * Same as {@link #categories(int)}, with {@code productsPerCategory}
+	 * products embedded in every category as {@code ?expand=products} does.
+	 */
+	static CategoryCollectionRepresentation expandedCategories(int size,
+			int productsPerCategory) {
+		CategoryCollectionRepresentation representation = categories(size);
+		int offset = 0;
+		for (CategorySummary category : representation.getCategories()) {
+			category.setProducts(productList(productsPerCategory, offset));
+			offset += productsPerCategory;
+		}
+		return representation;
+	}
+
+	private static List<Product> productList(int size, int offset) {
+		List<Product> products = new ArrayList<>(size);
+		for (int i = offset; i < offset + size; i++) {
+			products.add(new Product((long) i + 1, String.format("SKU-%08d", i),
+					"product " + i, day(i), day(i + 90)));
+		}
+		return products;
+	}
+
+	private static LocalDate day(int i) {
+		return FIRST_DAY.plusDays(i % 1500);
+	}
+
+}
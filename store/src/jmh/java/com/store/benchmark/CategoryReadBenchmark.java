@@ -0,0 +1,131 @@
+package com.store.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.store.StoreApplication;
+import com.store.domain.Category;
+import com.store.domain.Product;
+import com.store.repository.CategoryRepository;
+import com.store.repository.ProductRepository;
+
+/**
+ * Loads every product of one large category, as {@code expand=products}
+ * does, in a read-write transaction and in the read-only one the GET
+ * endpoints now use. The read-write session copies the state of each product
+ * for dirty checking and walks them all again when it flushes at commit; the
+ * read-only one does neither. Run with {@code -prof gc} (the profile's
+ * default) to get the allocation per read next to the throughput. The store
+ * runs over an in-memory HSQLDB, with its caches off and without the
+ * actuator's web endpoints, whose properties need Spring Security to bind.
+ * <p>
+ * The memory saving is the difference of {@code gc.alloc.rate.norm} (bytes
+ * per read) between the two benchmarks, the CPU saving that of their
+ * throughput, both at the same {@code products}. No figures are quoted here:
+ * they depend on the machine and have to come from a run on it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CategoryReadBenchmark {
+
+	private static final String MANAGEMENT_WEB = "org.springframework.boot.actuate.autoconfigure.ManagementServerPropertiesAutoConfiguration,"
+			+ "org.springframework.boot.actuate.autoconfigure.ManagementWebSecurityAutoConfiguration,"
+			+ "org.springframework.boot.actuate.autoconfigure.EndpointWebMvcAutoConfiguration";
+
+	@Param({ "1000", "10000" })
+	private int products;
+
+	private ConfigurableApplicationContext context;
+
+	private CategoryRepository categoryRepository;
+
+	private TransactionTemplate readWrite;
+	private TransactionTemplate readOnly;
+
+	private long categoryId;
+
+	@Setup
+	public void setUp() {
+		context = new SpringApplication(StoreApplication.class).run(
+				"--server.port=0",
+				"--spring.autoconfigure.exclude=" + MANAGEMENT_WEB,
+				"--spring.datasource.url=jdbc:hsqldb:mem:category-read",
+				"--spring.datasource.driver-class-name=org.hsqldb.jdbc.JDBCDriver",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=sa",
+				"--spring.jpa.hibernate.ddl-auto=create-drop",
+				"--spring.jpa.show-sql=false",
+				"--store.cache.enabled=false",
+				"--store.metrics.latency.enabled=false");
+		categoryRepository = context.getBean(CategoryRepository.class);
+		ProductRepository productRepository = context
+				.getBean(ProductRepository.class);
+		PlatformTransactionManager transactionManager = context
+				.getBean(PlatformTransactionManager.class);
+
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+
+		categoryId = readWrite.execute(status -> {
+			List<Product> batch = new ArrayList<Product>(products);
+			for (int i = 0; i < products; i++) {
+				batch.add(new Product("READ-" + i, "product " + i, LocalDate
+						.now(), LocalDate.now()));
+			}
+			List<Long> productIds = new ArrayList<Long>(products);
+			for (Product product : productRepository.save(batch)) {
+				productIds.add(product.getProductId());
+			}
+			Category category = categoryRepository.save(new Category(
+					"large", LocalDate.now()));
+			for (int from = 0; from < productIds.size(); from += 1000) {
+				categoryRepository.addProductsToCategory(category
+						.getCategoryId(), productIds.subList(from, Math.min(
+						from + 1000, productIds.size())));
+			}
+			return category.getCategoryId();
+		});
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public int readWriteTransaction() {
+		return readWrite.execute(status -> categoryRepository
+				.findProductsByCategoryId(categoryId).size());
+	}
+
+	@Benchmark
+	public int readOnlyTransaction() {
+		return readOnly.execute(status -> categoryRepository
+				.findProductsByCategoryId(categoryId).size());
+	}
+
+}
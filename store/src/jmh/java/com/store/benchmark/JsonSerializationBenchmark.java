@@ -0,0 +1,104 @@
+package com.store.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.store.rest.representation.CategoryCollectionRepresentation;
+import com.store.rest.representation.ProductCollectionRepresentation;
+
+/**
+ * Cost of writing and reading the product and category listings as JSON,
+ * through the same {@code LocalDateSerializer} / {@code LocalDateDeserializer}
+ * the controllers use. Run with {@code -prof gc} to get the allocation rate
+ * per operation next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonSerializationBenchmark {
+
+	@Param({ "10", "1000" })
+	private int size;
+
+	private ObjectWriter productWriter;
+	private ObjectWriter categoryWriter;
+	private ObjectReader productReader;
+	private ObjectReader categoryReader;
+
+	private ProductCollectionRepresentation products;
+	private CategoryCollectionRepresentation categories;
+	private CategoryCollectionRepresentation expandedCategories;
+
+	private byte[] productsJson;
+	private byte[] categoriesJson;
+
+	private ByteArrayOutputStream out;
+
+	@Setup
+	public void setUp() throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		productWriter = objectMapper.writerFor(ProductCollectionRepresentation.class);
+		categoryWriter = objectMapper.writerFor(CategoryCollectionRepresentation.class);
+		productReader = objectMapper.readerFor(ProductCollectionRepresentation.class);
+		categoryReader = objectMapper.readerFor(CategoryCollectionRepresentation.class);
+
+		products = CatalogFixtures.products(size);
+		categories = CatalogFixtures.categories(size);
+		expandedCategories = CatalogFixtures.expandedCategories(size / 10 + 1, 10);
+
+		productsJson = productWriter.writeValueAsBytes(products);
+		categoriesJson = categoryWriter.writeValueAsBytes(categories);
+		out = new ByteArrayOutputStream(productsJson.length * 2);
+	}
+
+	@Benchmark
+	public int writeProducts() throws IOException {
+		out.reset();
+		productWriter.writeValue(out, products);
+		return out.size();
+	}
+
+	@Benchmark
+	public int writeCategories() throws IOException {
+		out.reset();
+		categoryWriter.writeValue(out, categories);
+		return out.size();
+	}
+
+	@Benchmark
+	public int writeExpandedCategories() throws IOException {
+		out.reset();
+		categoryWriter.writeValue(out, expandedCategories);
+		return out.size();
+	}
+
+	@Benchmark
+	public ProductCollectionRepresentation readProducts() throws IOException {
+		return productReader.readValue(productsJson);
+	}
+
+	@Benchmark
+	public CategoryCollectionRepresentation readCategories() throws IOException {
+		return categoryReader.readValue(categoriesJson);
+	}
+
+}
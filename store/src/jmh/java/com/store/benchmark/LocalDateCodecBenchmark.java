@@ -0,0 +1,115 @@
+package com.store.benchmark;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.store.util.LocalDateCodec;
+import com.store.util.LocalDateConverter;
+
+/**
+ * {@link LocalDateCodec} and {@link LocalDateConverter} against the
+ * {@code java.time} and {@code java.sql.Date} calls they replaced. Every
+ * operation converts the next of 1024 dates spread over {@code distinctDays}
+ * days, so the larger values show the cost of a missed table slot. Run with
+ * {@code -prof gc} to see that the codec allocates nothing on a hit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocalDateCodecBenchmark {
+
+	private static final int DATES = 1024;
+
+	@Param({ "30", "1500", "100000" })
+	private int distinctDays;
+
+	private final LocalDateConverter converter = new LocalDateConverter();
+
+	private LocalDate[] dates;
+	private String[] isoDates;
+	private char[][] jsonBuffers;
+	private Date[] sqlDates;
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		dates = new LocalDate[DATES];
+		isoDates = new String[DATES];
+		jsonBuffers = new char[DATES][];
+		sqlDates = new Date[DATES];
+		LocalDate first = LocalDate.of(1990, 1, 1);
+		for (int i = 0; i < DATES; i++) {
+			dates[i] = first.plusDays((i * 7919L) % distinctDays);
+			isoDates[i] = dates[i].toString();
+			jsonBuffers[i] = ("\"" + isoDates[i] + "\"").toCharArray();
+			sqlDates[i] = Date.valueOf(dates[i]);
+		}
+	}
+
+	private int next() {
+		next = (next + 1) & (DATES - 1);
+		return next;
+	}
+
+	@Benchmark
+	public String formatIsoFormatter() {
+		return dates[next()].format(DateTimeFormatter.ISO_LOCAL_DATE);
+	}
+
+	@Benchmark
+	public String formatCodec() {
+		return LocalDateCodec.format(dates[next()]);
+	}
+
+	@Benchmark
+	public LocalDate parseLocalDate() {
+		int i = next();
+		// the deserializer used to copy the token into a String first
+		return LocalDate.parse(new String(jsonBuffers[i], 1, 10));
+	}
+
+	@Benchmark
+	public LocalDate parseCodec() {
+		return LocalDateCodec.parse(jsonBuffers[next()], 1, 10);
+	}
+
+	@Benchmark
+	public Date toColumnValueOf() {
+		return Date.valueOf(dates[next()]);
+	}
+
+	@Benchmark
+	public Date toColumnConverter() {
+		return converter.convertToDatabaseColumn(dates[next()]);
+	}
+
+	@Benchmark
+	public LocalDate toAttributeSqlDate() {
+		// a fresh instance, as the JDBC driver hands out for every row
+		return new Date(sqlDates[next()].getTime()).toLocalDate();
+	}
+
+	@Benchmark
+	public LocalDate toAttributeConverter() {
+		return converter.convertToEntityAttribute(new Date(sqlDates[next()].getTime()));
+	}
+
+}
@@ -0,0 +1,309 @@
+package com.store.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.store.StoreApplication;
+
+/**
+ * Starts the store twice over an in-memory HSQLDB whose every statement is
+ * delayed by {@code -Dlatency} ms, once on Tomcat's platform thread pool and
+ * once with {@code store.threads.virtual=true}, and drives each with
+ * {@code -Dconcurrency} clients fetching products by id for
+ * {@code -Dseconds}. Prints throughput and latency percentiles side by side.
+ * Caches are off so every request reaches the slow datasource, and the
+ * actuator's web endpoints are left out as in {@link CategoryReadBenchmark}.
+ * Needs the store built with the {@code java21} profile for the virtual run.
+ */
+public final class VirtualThreadLoadComparison {
+
+	private static final int PRODUCTS = 500;
+
+	private static final String MANAGEMENT_WEB = "org.springframework.boot.actuate.autoconfigure.ManagementServerPropertiesAutoConfiguration,"
+			+ "org.springframework.boot.actuate.autoconfigure.ManagementWebSecurityAutoConfiguration,"
+			+ "org.springframework.boot.actuate.autoconfigure.EndpointWebMvcAutoConfiguration";
+
+	private final int latencyMillis = Integer.getInteger("latency", 20);
+	private final int concurrency = Integer.getInteger("concurrency", 400);
+	private final int seconds = Integer.getInteger("seconds", 20);
+	private final int warmupSeconds = Integer.getInteger("warmup", 5);
+	private final int connections = Integer.getInteger("connections", 400);
+	private final int tomcatThreads = Integer.getInteger("tomcatThreads", 200);
+
+	public static void main(String[] args) throws Exception {
+		new VirtualThreadLoadComparison().compare();
+	}
+
+	private void compare() throws Exception {
+		Result platform = run(false);
+		Result virtual = run(true);
+		System.out.printf("%nstatement latency %d ms, %d clients, %d connections, %d Tomcat threads%n",
+				latencyMillis, concurrency, connections, tomcatThreads);
+		System.out.printf("%-10s %12s %10s %10s %10s %8s%n", "threads",
+				"requests/s", "p50 ms", "p99 ms", "max ms", "errors");
+		platform.print("platform");
+		virtual.print("virtual");
+	}
+
+	private Result run(boolean virtual) throws Exception {
+		SpringApplication application = new SpringApplication(
+				StoreApplication.class);
+		application.addInitializers(context -> context.getBeanFactory()
+				.addBeanPostProcessor(new SlowDataSourcePostProcessor(
+						latencyMillis)));
+		ConfigurableApplicationContext context = application.run(
+				"--server.port=0",
+				"--spring.autoconfigure.exclude=" + MANAGEMENT_WEB,
+				"--spring.datasource.url=jdbc:hsqldb:mem:load-" + virtual,
+				"--spring.datasource.driver-class-name=org.hsqldb.jdbc.JDBCDriver",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=sa",
+				"--spring.datasource.tomcat.max-active=" + connections,
+				"--spring.jpa.hibernate.ddl-auto=create-drop",
+				"--spring.jpa.show-sql=false",
+				"--server.tomcat.max-threads=" + tomcatThreads,
+				"--store.cache.enabled=false",
+				"--store.async.enabled=false",
+				"--store.threads.virtual=" + virtual);
+		try {
+			int port = ((EmbeddedWebApplicationContext) context)
+					.getEmbeddedServletContainer().getPort();
+			seed(port);
+			drive(port, warmupSeconds);
+			return drive(port, seconds);
+		} finally {
+			context.close();
+		}
+	}
+
+	// through the API, so the product lookup guard learns the new ids
+	private static void seed(int port) throws IOException {
+		StringBuilder body = new StringBuilder("[");
+		for (int i = 0; i < PRODUCTS; i++) {
+			body.append(i == 0 ? "" : ",").append("{\"productSku\":\"LOAD-")
+					.append(i).append("\",\"productName\":\"product ")
+					.append(i).append("\"}");
+		}
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://localhost:" + port + "/store/products/bulk")
+				.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/json");
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body.append(']').toString()
+					.getBytes(StandardCharsets.UTF_8));
+		}
+		if (connection.getResponseCode() != 201) {
+			throw new IllegalStateException("seeding failed with "
+					+ connection.getResponseCode());
+		}
+		drain(connection);
+	}
+
+	private Result drive(int port, int durationSeconds)
+			throws InterruptedException {
+		long deadline = System.nanoTime()
+				+ TimeUnit.SECONDS.toNanos(durationSeconds);
+		Client[] clients = new Client[concurrency];
+		Thread[] threads = new Thread[concurrency];
+		for (int i = 0; i < concurrency; i++) {
+			clients[i] = new Client(port, deadline);
+			threads[i] = new Thread(clients[i], "load-client-" + i);
+			threads[i].start();
+		}
+		Result result = new Result(durationSeconds);
+		for (int i = 0; i < concurrency; i++) {
+			threads[i].join();
+			result.add(clients[i]);
+		}
+		return result;
+	}
+
+	private static void drain(HttpURLConnection connection) throws IOException {
+		try (InputStream in = connection.getInputStream()) {
+			byte[] buffer = new byte[4096];
+			while (in.read(buffer) >= 0) {
+				// keep-alive needs the body consumed
+			}
+		}
+	}
+
+	private static final class Client implements Runnable {
+
+		private final String base;
+		private final long deadline;
+		private long[] latencies = new long[1024];
+		private int count;
+		private int errors;
+
+		Client(int port, long deadline) {
+			this.base = "http://localhost:" + port + "/store/product/id/";
+			this.deadline = deadline;
+		}
+
+		@Override
+		public void run() {
+			while (System.nanoTime() < deadline) {
+				long id = ThreadLocalRandom.current().nextInt(PRODUCTS) + 1;
+				long start = System.nanoTime();
+				try {
+					HttpURLConnection connection = (HttpURLConnection) new URL(
+							base + id).openConnection();
+					connection.setRequestProperty("Accept", "application/json");
+					if (connection.getResponseCode() != 200) {
+						errors++;
+						continue;
+					}
+					drain(connection);
+				} catch (IOException e) {
+					errors++;
+					continue;
+				}
+				if (count == latencies.length) {
+					latencies = Arrays.copyOf(latencies, count * 2);
+				}
+				latencies[count++] = System.nanoTime() - start;
+			}
+		}
+	}
+
+	private static final class Result {
+
+		private final int seconds;
+		private final List<long[]> samples = new ArrayList<long[]>();
+		private int count;
+		private int errors;
+
+		Result(int seconds) {
+			this.seconds = seconds;
+		}
+
+		void add(Client client) {
+			samples.add(Arrays.copyOf(client.latencies, client.count));
+			count += client.count;
+			errors += client.errors;
+		}
+
+		void print(String name) {
+			long[] all = new long[count];
+			int offset = 0;
+			for (long[] sample : samples) {
+				System.arraycopy(sample, 0, all, offset, sample.length);
+				offset += sample.length;
+			}
+			Arrays.sort(all);
+			System.out.printf("%-10s %12.1f %10.1f %10.1f %10.1f %8d%n", name,
+					count / (double) seconds, percentile(all, 0.50),
+					percentile(all, 0.99), all.length == 0 ? 0.0
+							: all[all.length - 1] / 1e6, errors);
+		}
+
+		private static double percentile(long[] sorted, double quantile) {
+			if (sorted.length == 0) {
+				return 0.0;
+			}
+			int index = (int) Math.ceil(quantile * sorted.length) - 1;
+			return sorted[Math.max(index, 0)] / 1e6;
+		}
+	}
+
+	/**
+	 * Wraps the application's {@link DataSource} so every statement execution
+	 * sleeps first, standing in for a remote database under load.
+	 */
+	private static final class SlowDataSourcePostProcessor implements
+			BeanPostProcessor {
+
+		private final long latencyMillis;
+
+		SlowDataSourcePostProcessor(long latencyMillis) {
+			this.latencyMillis = latencyMillis;
+		}
+
+		@Override
+		public Object postProcessBeforeInitialization(Object bean,
+				String beanName) {
+			return bean;
+		}
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean,
+				String beanName) {
+			if (!(bean instanceof DataSource)) {
+				return bean;
+			}
+			return proxy(DataSource.class, bean, (target, method, args) -> {
+				Object result = invoke(method, target, args);
+				return result instanceof Connection ? proxy(Connection.class,
+						result, this::connection) : result;
+			});
+		}
+
+		private Object connection(Object target, Method method, Object[] args)
+				throws Throwable {
+			Object result = invoke(method, target, args);
+			Class<?> type = method.getReturnType();
+			if (result instanceof Statement && type.isInterface()
+					&& Statement.class.isAssignableFrom(type)) {
+				return proxy(type, result, this::statement);
+			}
+			return result;
+		}
+
+		private Object statement(Object target, Method method, Object[] args)
+				throws Throwable {
+			if (method.getName().startsWith("execute")) {
+				Thread.sleep(latencyMillis);
+			}
+			return invoke(method, target, args);
+		}
+
+		private static Object invoke(Method method, Object target,
+				Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		private static Object proxy(Class<?> type, Object target,
+				TargetHandler handler) {
+			InvocationHandler invocationHandler = (proxy, method, args) -> handler
+					.invoke(target, method, args);
+			return Proxy.newProxyInstance(
+					VirtualThreadLoadComparison.class.getClassLoader(),
+					new Class<?>[] { type }, invocationHandler);
+		}
+	}
+
+	@FunctionalInterface
+	private interface TargetHandler {
+		Object invoke(Object target, Method method, Object[] args)
+				throws Throwable;
+	}
+
+}
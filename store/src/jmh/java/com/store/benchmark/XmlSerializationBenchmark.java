@@ -0,0 +1,116 @@
+package com.store.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.store.rest.representation.CategoryCollectionRepresentation;
+import com.store.rest.representation.ProductCollectionRepresentation;
+
+/**
+ * Cost of writing and reading the product and category listings as JAXB XML,
+ * the representation served for {@code Accept: application/xml}. Marshallers
+ * are not thread safe, so every benchmark thread keeps its own; the
+ * {@link JAXBContext} is shared the way Spring's message converter shares it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XmlSerializationBenchmark {
+
+	private static final JAXBContext CONTEXT = newContext();
+
+	@Param({ "10", "1000" })
+	private int size;
+
+	private Marshaller marshaller;
+	private Unmarshaller unmarshaller;
+
+	private ProductCollectionRepresentation products;
+	private CategoryCollectionRepresentation categories;
+	private CategoryCollectionRepresentation expandedCategories;
+
+	private byte[] productsXml;
+	private byte[] categoriesXml;
+
+	private ByteArrayOutputStream out;
+
+	@Setup
+	public void setUp() throws JAXBException {
+		marshaller = CONTEXT.createMarshaller();
+		unmarshaller = CONTEXT.createUnmarshaller();
+
+		products = CatalogFixtures.products(size);
+		categories = CatalogFixtures.categories(size);
+		expandedCategories = CatalogFixtures.expandedCategories(size / 10 + 1, 10);
+
+		out = new ByteArrayOutputStream();
+		marshaller.marshal(products, out);
+		productsXml = out.toByteArray();
+		out.reset();
+		marshaller.marshal(categories, out);
+		categoriesXml = out.toByteArray();
+		out = new ByteArrayOutputStream(productsXml.length * 2);
+	}
+
+	@Benchmark
+	public int writeProducts() throws JAXBException {
+		out.reset();
+		marshaller.marshal(products, out);
+		return out.size();
+	}
+
+	@Benchmark
+	public int writeCategories() throws JAXBException {
+		out.reset();
+		marshaller.marshal(categories, out);
+		return out.size();
+	}
+
+	@Benchmark
+	public int writeExpandedCategories() throws JAXBException {
+		out.reset();
+		marshaller.marshal(expandedCategories, out);
+		return out.size();
+	}
+
+	@Benchmark
+	public Object readProducts() throws JAXBException {
+		return unmarshaller.unmarshal(new ByteArrayInputStream(productsXml));
+	}
+
+	@Benchmark
+	public Object readCategories() throws JAXBException {
+		return unmarshaller.unmarshal(new ByteArrayInputStream(categoriesXml));
+	}
+
+	private static JAXBContext newContext() {
+		try {
+			return JAXBContext.newInstance(ProductCollectionRepresentation.class,
+					CategoryCollectionRepresentation.class);
+		} catch (JAXBException e) {
+			throw new IllegalStateException("cannot bind the store representations", e);
+		}
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.store.async;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint ({@code /executorstats}) reporting the load of the
+ * {@link RepositoryExecutor}: threads in use, queue depth, rejections and
+ * the time tasks spend queued and running.
+ */
+@Component
+public class ExecutorStatisticsEndpoint extends
+		AbstractEndpoint<Map<String, Object>> {
+
+	@Autowired
+	private RepositoryExecutor repositoryExecutor;
+
+	public ExecutorStatisticsEndpoint() {
+		super("executorstats", false);
+	}
+
+	@Override
+	public Map<String, Object> invoke() {
+		return repositoryExecutor.statistics();
+	}
+
+}
@@ -0,0 +1,311 @@
+package com.store.async;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.store.datasource.ReadWriteRoutingDataSource;
+import com.store.exception.ServiceUnavailableException;
+
+/**
+ * Runs the repository work of the controllers, each task in its own
+ * transaction, and hands the outcome back as a {@link CompletableFuture} that
+ * Spring MVC completes asynchronously.
+ * <p>
+ * With {@code store.async.enabled} the work goes to a fixed pool sized to the
+ * JDBC connection pool ({@code store.async.pool-size} overrides it) behind a
+ * queue of {@code store.async.queue-capacity} tasks, so a slow database holds
+ * pool threads instead of Tomcat request threads. A full queue is answered at
+ * once with a 503 rather than queued without bound. Without it the task runs
+ * on the request thread and the returned future is already completed.
+ * <p>
+ * With {@code store.threads.virtual} as well, every task gets a virtual thread
+ * of its own ({@code java21} builds only). The same limits then hold through two
+ * semaphores: one admitting pool size plus queue capacity tasks, the excess
+ * being rejected, and one letting pool size of them at the database at once.
+ */
+@Component
+public class RepositoryExecutor {
+
+	private static final int DEFAULT_POOL_SIZE = 10;
+
+	private final PlatformTransactionManager transactionManager;
+
+	@Autowired(required = false)
+	private DataSource dataSource;
+
+	// applied on the submitting thread, to carry request state over to the task
+	@Autowired(required = false)
+	private List<TaskDecorator> taskDecorators = Collections.emptyList();
+
+	@Value("${store.async.enabled:false}")
+	private boolean enabled = false;
+
+	@Value("${store.async.pool-size:0}")
+	private int poolSize = 0;
+
+	@Value("${store.async.queue-capacity:100}")
+	private int queueCapacity = 100;
+
+	@Value("${store.async.retry-after-seconds:1}")
+	private int retryAfterSeconds = 1;
+
+	@Value("${store.threads.virtual:false}")
+	private boolean virtualThreads = false;
+
+	private int threads;
+
+	private ExecutorService executor;
+
+	// only with virtual threads, which are not pooled and queue on these
+	private Semaphore admissions;
+	private Semaphore connections;
+
+	private ServiceUnavailableException saturated;
+
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder queueNanos = new LongAdder();
+	private final LongAdder executionNanos = new LongAdder();
+	private final LongAccumulator maxQueueNanos = new LongAccumulator(Math::max, 0L);
+	private final LongAccumulator maxExecutionNanos = new LongAccumulator(Math::max, 0L);
+
+	@Autowired
+	public RepositoryExecutor(PlatformTransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+	}
+
+	@PostConstruct
+	public void init() {
+		saturated = new ServiceUnavailableException(
+				"the store is busy, retry in " + retryAfterSeconds + " s",
+				retryAfterSeconds);
+		if (!enabled) {
+			return;
+		}
+		threads = poolSize > 0 ? poolSize : connectionPoolSize();
+		if (virtualThreads) {
+			VirtualThreads.requireSupported("store.threads.virtual");
+			admissions = new Semaphore(threads + queueCapacity);
+			connections = new Semaphore(threads);
+			executor = VirtualThreads
+					.newThreadPerTaskExecutor("store-repository-");
+			return;
+		}
+		executor = new ThreadPoolExecutor(threads, threads, 0L,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+						queueCapacity), new RepositoryThreadFactory(),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (executor != null) {
+			executor.shutdown();
+			executor.awaitTermination(30, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Runs {@code work} in a transaction of its own.
+	 *
+	 * @throws ServiceUnavailableException when the queue is full
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> work) {
+		TransactionTemplate template = new TransactionTemplate(
+				transactionManager);
+		return execute(() -> template.execute(status -> work.get()));
+	}
+
+	/**
+	 * Runs {@code work} in a read-only transaction of its own. The Hibernate
+	 * session is then read-only, keeping no snapshot of the entities it loads,
+	 * and its flush mode is manual, so commit skips the dirty check. For work
+	 * that only reads; changes made to loaded entities are not saved.
+	 *
+	 * @throws ServiceUnavailableException when the queue is full
+	 */
+	public <T> CompletableFuture<T> submitReadOnly(Supplier<T> work) {
+		TransactionTemplate template = new TransactionTemplate(
+				transactionManager);
+		template.setReadOnly(true);
+		return execute(() -> template.execute(status -> work.get()));
+	}
+
+	/**
+	 * Runs {@code work} outside any transaction, for tasks that demarcate
+	 * their own.
+	 *
+	 * @throws ServiceUnavailableException when the queue is full
+	 */
+	public <T> CompletableFuture<T> submitWithoutTransaction(Supplier<T> work) {
+		return execute(work);
+	}
+
+	private <T> CompletableFuture<T> execute(Supplier<T> work) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		long queued = System.nanoTime();
+		Runnable task = () -> {
+			long started = System.nanoTime();
+			record(queueNanos, maxQueueNanos, started - queued);
+			T value;
+			try {
+				value = work.get();
+			} catch (Throwable e) {
+				record(executionNanos, maxExecutionNanos, System.nanoTime()
+						- started);
+				failed.increment();
+				// completed with the exception itself, not a CompletionException,
+				// so the exception handlers see what the controller threw
+				future.completeExceptionally(e);
+				return;
+			}
+			record(executionNanos, maxExecutionNanos, System.nanoTime()
+					- started);
+			completed.increment();
+			future.complete(value);
+		};
+
+		for (TaskDecorator taskDecorator : taskDecorators) {
+			task = taskDecorator.decorate(task);
+		}
+
+		submitted.increment();
+		if (executor == null) {
+			task.run();
+			return future;
+		}
+		if (admissions != null) {
+			executeVirtual(task);
+			return future;
+		}
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw saturated;
+		}
+		return future;
+	}
+
+	private void executeVirtual(Runnable task) {
+		if (!admissions.tryAcquire()) {
+			rejected.increment();
+			throw saturated;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					connections.acquireUninterruptibly();
+					try {
+						task.run();
+					} finally {
+						connections.release();
+					}
+				} finally {
+					admissions.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			admissions.release();
+			rejected.increment();
+			throw saturated;
+		}
+	}
+
+	private static void record(LongAdder total, LongAccumulator max,
+			long nanos) {
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	private int connectionPoolSize() {
+		DataSource target = dataSource;
+		while (target instanceof DelegatingDataSource) {
+			target = ((DelegatingDataSource) target).getTargetDataSource();
+		}
+		// with a replica, sized to the primary pool
+		if (target instanceof ReadWriteRoutingDataSource) {
+			target = ((ReadWriteRoutingDataSource) target).getPrimary();
+		}
+		if (target instanceof org.apache.tomcat.jdbc.pool.DataSource) {
+			return ((org.apache.tomcat.jdbc.pool.DataSource) target)
+					.getMaxActive();
+		}
+		return DEFAULT_POOL_SIZE;
+	}
+
+	public Map<String, Object> statistics() {
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		statistics.put("enabled", executor != null);
+		statistics.put("virtualThreads", admissions != null);
+		if (admissions != null) {
+			int active = threads - connections.availablePermits();
+			statistics.put("poolSize", threads);
+			statistics.put("activeThreads", active);
+			statistics.put("queued", threads + queueCapacity
+					- admissions.availablePermits() - active);
+			statistics.put("queueCapacity", queueCapacity);
+		} else if (executor != null) {
+			ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+			statistics.put("poolSize", pool.getMaximumPoolSize());
+			statistics.put("activeThreads", pool.getActiveCount());
+			statistics.put("queued", pool.getQueue().size());
+			statistics.put("queueCapacity", queueCapacity);
+		}
+		long submittedCount = submitted.sum();
+		long executed = completed.sum() + failed.sum();
+		statistics.put("submitted", submittedCount);
+		statistics.put("completed", completed.sum());
+		statistics.put("failed", failed.sum());
+		statistics.put("rejected", rejected.sum());
+		statistics.put("meanQueueMillis", executed == 0 ? 0.0 : queueNanos.sum()
+				/ 1e6 / executed);
+		statistics.put("maxQueueMillis", maxQueueNanos.get() / 1e6);
+		statistics.put("meanExecutionMillis", executed == 0 ? 0.0
+				: executionNanos.sum() / 1e6 / executed);
+		statistics.put("maxExecutionMillis", maxExecutionNanos.get() / 1e6);
+		return statistics;
+	}
+
+	private static final class RepositoryThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "store-repository-"
+					+ count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
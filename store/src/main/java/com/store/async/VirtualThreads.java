@@ -0,0 +1,68 @@
+package com.store.async;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads, when the store is built for them. The {@code java21}
+ * profile compiles the store for Java 21 and adds
+ * {@code JdkVirtualThreads}, which calls the API; the default Java 8 build
+ * leaves it out, {@link #isSupported()} is false and nothing else may be
+ * called.
+ */
+public final class VirtualThreads {
+
+	private static final Provider PROVIDER = provider();
+
+	private VirtualThreads() {
+
+	}
+
+	public static boolean isSupported() {
+		return PROVIDER != null;
+	}
+
+	/**
+	 * Factory of virtual threads named {@code prefix} followed by a counter.
+	 */
+	public static ThreadFactory factory(String prefix) {
+		return PROVIDER.factory(prefix);
+	}
+
+	/**
+	 * Executor starting one new virtual thread per task.
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+		return PROVIDER.newThreadPerTaskExecutor(prefix);
+	}
+
+	/**
+	 * Fails fast when virtual threads were asked for but the build has none,
+	 * instead of silently running on platform threads.
+	 */
+	public static void requireSupported(String property) {
+		if (!isSupported()) {
+			throw new IllegalStateException(property
+					+ " needs the store built with the java21 profile");
+		}
+	}
+
+	private static Provider provider() {
+		try {
+			return (Provider) Class
+					.forName("com.store.async.JdkVirtualThreads")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			// a Java 8 build
+			return null;
+		}
+	}
+
+	interface Provider {
+
+		ThreadFactory factory(String prefix);
+
+		ExecutorService newThreadPerTaskExecutor(String prefix);
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.store.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Management endpoint ({@code /cachestats}) reporting hit, miss and eviction
+ * counters for every Caffeine backed cache, and the state of the negative
+ * product lookup layer.
+ */
+@Component
+public class CacheStatisticsEndpoint extends
+		AbstractEndpoint<Map<String, Object>> {
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private ProductLookupGuard productLookupGuard;
+
+	public CacheStatisticsEndpoint() {
+		super("cachestats", false);
+	}
+
+	@Override
+	public Map<String, Object> invoke() {
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		for (String cacheName : cacheManager.getCacheNames()) {
+			Cache cache = cacheManager.getCache(cacheName);
+			if (!(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache)) {
+				continue;
+			}
+			com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cache
+					.getNativeCache();
+			CacheStats stats = nativeCache.stats();
+
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put("size", nativeCache.estimatedSize());
+			values.put("hitCount", stats.hitCount());
+			values.put("missCount", stats.missCount());
+			values.put("evictionCount", stats.evictionCount());
+			values.put("hitRate", stats.hitRate());
+			statistics.put(cacheName, values);
+		}
+		statistics.put("productLookupGuard", productLookupGuard.statistics());
+		return statistics;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.store.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.store.config.CacheConfig;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
+
+/**
+ * Keeps the category header and version caches in step with the database after commit.
+ * A changed category is evicted by id and name. Deleting a product changes
+ * the product count of every category that held it, and those are not known
+ * here, so both caches are cleared. Creating or deleting a category drops the
+ * cached category count, once the new total can be read.
+ */
+@Component
+public class CategoryCacheInvalidator {
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private CategoryCountCache categoryCountCache;
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onCatalogChange(CatalogChangeEvent event) {
+		if (event.isCategory()) {
+			if (event.getChangeType() != ChangeType.UPDATED) {
+				categoryCountCache.invalidate();
+			}
+			if (event.getChangeType() != ChangeType.CREATED) {
+				evict(CacheConfig.CATEGORIES_BY_ID, event.getEntityId());
+				evict(CacheConfig.CATEGORIES_BY_NAME, event.getKey());
+				evict(CacheConfig.CATEGORIES_BY_NAME, event.getPreviousKey());
+				evict(CacheConfig.CATEGORY_VERSIONS, event.getEntityId());
+				evict(CacheConfig.CATEGORY_VERSIONS_BY_NAME, event.getKey());
+				evict(CacheConfig.CATEGORY_VERSIONS_BY_NAME, event.getPreviousKey());
+			}
+		} else if (event.getChangeType() == ChangeType.DELETED) {
+			clear(CacheConfig.CATEGORIES_BY_ID);
+			clear(CacheConfig.CATEGORIES_BY_NAME);
+			clear(CacheConfig.CATEGORY_VERSIONS);
+			clear(CacheConfig.CATEGORY_VERSIONS_BY_NAME);
+		}
+	}
+
+	private void evict(String cacheName, Object key) {
+		Cache cache = cacheManager.getCache(cacheName);
+		if (cache != null && key != null) {
+			cache.evict(key);
+		}
+	}
+
+	private void clear(String cacheName) {
+		Cache cache = cacheManager.getCache(cacheName);
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.store.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.store.datasource.DataSourceRoute;
+import com.store.repository.CategoryRepository;
+
+/**
+ * Caches the result of the category count query for the paged listing.
+ * Entries expire after {@code store.categories.count-ttl-ms} and are dropped
+ * by the {@link CategoryCacheInvalidator} once a category creation or
+ * deletion has committed: dropped any earlier, a count read before the commit
+ * would be cached with the new generation.
+ * <p>
+ * The count is read in a short read-only transaction of its own, started
+ * after the generation is read. The listing's transaction may hold a snapshot
+ * older than the last invalidation, and a count taken in it would be cached
+ * under the new generation. It is always read from the primary, so a lagging
+ * replica never caches an old total for every client either.
+ */
+@Component
+public class CategoryCountCache {
+
+	@Autowired
+	@Qualifier("categoryRepository")
+	private CategoryRepository categoryRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${store.categories.count-ttl-ms:30000}")
+	private long ttlMillis = 30000;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private volatile Snapshot snapshot;
+
+	public long count() {
+		long now = System.currentTimeMillis();
+		Snapshot current = snapshot;
+		if (current != null && current.generation == generation.get()
+				&& now < current.expiresAt) {
+			return current.value;
+		}
+
+		// a concurrent invalidate() bumps the generation, so a count read
+		// before the commit it follows is never served afterwards
+		long gen = generation.get();
+		long value = countInOwnTransaction();
+		snapshot = new Snapshot(value, gen, now + ttlMillis);
+		return value;
+	}
+
+	private long countInOwnTransaction() {
+		DataSourceRoute previous = DataSourceRoute.bind(DataSourceRoute.PRIMARY);
+		try {
+			// the connection of the listing is kept meanwhile
+			TransactionTemplate template = new TransactionTemplate(
+					transactionManager);
+			template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+			template.setReadOnly(true);
+			return template.execute(status -> categoryRepository.count());
+		} finally {
+			DataSourceRoute.restore(previous);
+		}
+	}
+
+	public void invalidate() {
+		generation.incrementAndGet();
+	}
+
+	private static final class Snapshot {
+
+		private final long value;
+		private final long generation;
+		private final long expiresAt;
+
+		private Snapshot(long value, long generation, long expiresAt) {
+			this.value = value;
+			this.generation = generation;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
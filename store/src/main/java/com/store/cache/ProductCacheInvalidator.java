@@ -0,0 +1,56 @@
+package com.store.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.store.config.CacheConfig;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
+
+/**
+ * Evicts the entries of a changed product once the change has committed:
+ * evicted before, they would be filled again from the old row until the
+ * commit. This does not close the race entirely. A read that started before
+ * the commit can still put the old row back just after the eviction, and it
+ * is then served until the product changes again or its entry expires
+ * ({@code store.cache.products.spec}, {@code store.cache.versions.spec}).
+ * <p>
+ * The entity and its version are cached by id only; the SKU cache just maps a
+ * SKU to an id, and is evicted for every SKU the event names. A SKU left
+ * behind by an update that did not name it still resolves to the right id,
+ * and the lookup rejects it because the product's SKU no longer matches.
+ */
+@Component
+public class ProductCacheInvalidator {
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onCatalogChange(CatalogChangeEvent event) {
+		if (!event.isProduct()) {
+			return;
+		}
+
+		// a new product may take over a SKU whose mapping is still cached
+		evict(CacheConfig.PRODUCT_IDS_BY_SKU, event.getKey());
+		if (event.getChangeType() == ChangeType.CREATED) {
+			return;
+		}
+
+		evict(CacheConfig.PRODUCTS_BY_ID, event.getEntityId());
+		evict(CacheConfig.PRODUCT_VERSIONS, event.getEntityId());
+		evict(CacheConfig.PRODUCT_IDS_BY_SKU, event.getPreviousKey());
+	}
+
+	private void evict(String cacheName, Object key) {
+		Cache cache = cacheManager.getCache(cacheName);
+		if (cache != null && key != null) {
+			cache.evict(key);
+		}
+	}
+
+}
@@ -0,0 +1,270 @@
+package com.store.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
+import com.store.exception.ProductNotFoundException;
+import com.store.repository.ProductRepository;
+import com.store.util.BloomFilter;
+
+/**
+ * Answers lookups of product ids and SKUs that do not exist without touching
+ * the database. Two layers:
+ * <ul>
+ * <li>Bloom filters over every existing id and SKU, loaded once the
+ * application is ready and extended as products are created or renamed
+ * through this instance. A key the filter has never seen is missing, as far
+ * as this instance knows.</li>
+ * <li>A short-TTL cache of recent misses, which also covers the keys the
+ * filter lets through: false positives and deleted products, whose bits can
+ * not be cleared.</li>
+ * </ul>
+ * Products created by another instance, or written to the database
+ * directly, are not seen by the filters until they are rebuilt from the
+ * database, every {@code store.products.lookup.rebuild-ms}: that is how long
+ * such a product may be answered as missing. The rebuild also drops the bits
+ * of deleted products.
+ * Both layers hand out a cached, stackless {@link ProductNotFoundException}
+ * per key, so a burst of requests for the same missing key allocates almost
+ * nothing.
+ */
+@Component
+public class ProductLookupGuard {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(ProductLookupGuard.class);
+
+	@Autowired
+	@Qualifier("productRepository")
+	private ProductRepository productRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${store.products.lookup.expected-products:1000000}")
+	private long expectedProducts = 1000000;
+
+	@Value("${store.products.lookup.false-positive-rate:0.01}")
+	private double falsePositiveRate = 0.01;
+
+	@Value("${store.products.lookup.negative-cache.spec:maximumSize=100000,expireAfterWrite=30s,recordStats}")
+	private String negativeCacheSpec = "maximumSize=100000,expireAfterWrite=30s,recordStats";
+
+	@Value("${store.products.lookup.rebuild-ms:60000}")
+	private long rebuildMillis = 60000;
+
+	private volatile Filters filters;
+
+	// being filled from the database, guarded by this for the writes
+	private Filters building;
+
+	// the filters only reject keys once they hold the whole catalog
+	private volatile boolean loaded;
+
+	private ScheduledExecutorService rebuilds;
+
+	private Cache<Long, ProductNotFoundException> missingIds;
+	private Cache<String, ProductNotFoundException> missingSkus;
+
+	@PostConstruct
+	public void init() {
+		filters = new Filters();
+		missingIds = Caffeine.from(negativeCacheSpec).build();
+		missingSkus = Caffeine.from(negativeCacheSpec).build();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		load();
+		if (rebuildMillis > 0) {
+			rebuilds = Executors.newSingleThreadScheduledExecutor(task -> {
+				Thread thread = new Thread(task, "store-product-lookup-rebuild");
+				thread.setDaemon(true);
+				return thread;
+			});
+			rebuilds.scheduleWithFixedDelay(this::rebuild, rebuildMillis,
+					rebuildMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (rebuilds != null) {
+			rebuilds.shutdownNow();
+		}
+	}
+
+	/**
+	 * Fills new filters from the database and swaps them in. Products created
+	 * meanwhile are added by {@link #onProductWrite(CatalogChangeEvent)} to
+	 * the filters being filled as well, so none is lost. The recorded misses
+	 * are dropped with the old filters, as some may be products the new ones
+	 * know.
+	 */
+	public void load() {
+		Filters fresh = new Filters();
+		synchronized (this) {
+			building = fresh;
+		}
+		try {
+			new TransactionTemplate(transactionManager).execute(status -> {
+				try (Stream<Object[]> keys = productRepository
+						.streamProductKeys()) {
+					Iterator<Object[]> iterator = keys.iterator();
+					while (iterator.hasNext()) {
+						Object[] key = iterator.next();
+						fresh.ids.put((Long) key[0]);
+						fresh.skus.put((String) key[1]);
+					}
+				}
+				return null;
+			});
+			synchronized (this) {
+				filters = fresh;
+			}
+		} finally {
+			synchronized (this) {
+				building = null;
+			}
+		}
+		missingIds.invalidateAll();
+		missingSkus.invalidateAll();
+		loaded = true;
+	}
+
+	private void rebuild() {
+		try {
+			load();
+		} catch (RuntimeException e) {
+			// the current filters stay, until the next attempt
+			logger.warn("rebuilding the product lookup filters failed", e);
+		}
+	}
+
+	/**
+	 * A prebuilt exception if the id is known to be missing, otherwise
+	 * {@code null} and the caller has to ask the database.
+	 */
+	public ProductNotFoundException missingId(long productId) {
+		if (loaded && !filters.ids.mightContain(productId)) {
+			return missingIds.get(productId, ProductNotFoundException::forId);
+		}
+		return missingIds.getIfPresent(productId);
+	}
+
+	/**
+	 * A prebuilt exception if the SKU is known to be missing, otherwise
+	 * {@code null} and the caller has to ask the database.
+	 */
+	public ProductNotFoundException missingSku(String productSku) {
+		if (loaded && !filters.skus.mightContain(productSku)) {
+			return missingSkus.get(productSku, ProductNotFoundException::forSku);
+		}
+		return missingSkus.getIfPresent(productSku);
+	}
+
+	public void recordMissingId(long productId,
+			ProductNotFoundException exception) {
+		missingIds.put(productId, exception);
+	}
+
+	public void recordMissingSku(String productSku,
+			ProductNotFoundException exception) {
+		missingSkus.put(productSku, exception);
+	}
+
+	/**
+	 * Makes a new or renamed product visible to the filters right away, while
+	 * its transaction is still open: if it rolls back the filters only gain a
+	 * false positive.
+	 */
+	@EventListener
+	public void onProductWrite(CatalogChangeEvent event) {
+		if (!isProductWrite(event)) {
+			return;
+		}
+		synchronized (this) {
+			filters.put(event);
+			if (building != null) {
+				building.put(event);
+			}
+		}
+		forget(event);
+	}
+
+	/**
+	 * Drops the misses recorded by readers that ran while the write was not
+	 * yet committed.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void afterProductWrite(CatalogChangeEvent event) {
+		if (isProductWrite(event)) {
+			forget(event);
+		}
+	}
+
+	public Map<String, Object> statistics() {
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		statistics.put("loaded", loaded);
+		Filters current = filters;
+		statistics.put("idFilterFillRatio", current.ids.fillRatio());
+		statistics.put("skuFilterFillRatio", current.skus.fillRatio());
+		statistics.put("missingIds", missingIds.estimatedSize());
+		statistics.put("missingIdHits", missingIds.stats().hitCount());
+		statistics.put("missingSkus", missingSkus.estimatedSize());
+		statistics.put("missingSkuHits", missingSkus.stats().hitCount());
+		return statistics;
+	}
+
+	private void forget(CatalogChangeEvent event) {
+		missingIds.invalidate(event.getEntityId());
+		if (event.getKey() != null) {
+			missingSkus.invalidate(event.getKey());
+		}
+	}
+
+	private static boolean isProductWrite(CatalogChangeEvent event) {
+		return event.isProduct()
+				&& event.getChangeType() != ChangeType.DELETED;
+	}
+
+	private final class Filters {
+
+		private final BloomFilter ids = new BloomFilter(expectedProducts,
+				falsePositiveRate);
+		private final BloomFilter skus = new BloomFilter(expectedProducts,
+				falsePositiveRate);
+
+		void put(CatalogChangeEvent event) {
+			ids.put(event.getEntityId());
+			if (event.getKey() != null) {
+				skus.put(event.getKey());
+			}
+		}
+	}
+
+}
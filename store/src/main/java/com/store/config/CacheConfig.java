@@ -0,0 +1,66 @@
+package com.store.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+	public static final String PRODUCTS_BY_ID = "productsById";
+	public static final String PRODUCT_IDS_BY_SKU = "productIdsBySku";
+	public static final String CATEGORIES_BY_ID = "categoriesById";
+	public static final String CATEGORIES_BY_NAME = "categoriesByName";
+	public static final String PRODUCT_VERSIONS = "productVersions";
+	public static final String CATEGORY_VERSIONS = "categoryVersions";
+	public static final String CATEGORY_VERSIONS_BY_NAME = "categoryVersionsByName";
+
+	@Value("${store.cache.enabled:true}")
+	private boolean enabled;
+
+	@Value("${store.cache.products.spec:maximumSize=10000,expireAfterWrite=10m,recordStats}")
+	private String productsSpec;
+
+	@Value("${store.cache.categories.spec:maximumSize=2000,expireAfterWrite=10m,recordStats}")
+	private String categoriesSpec;
+
+	@Value("${store.cache.versions.spec:maximumSize=100000,expireAfterWrite=10m,recordStats}")
+	private String versionsSpec;
+
+	@Bean
+	public CacheManager cacheManager() {
+		if (!enabled) {
+			return new NoOpCacheManager();
+		}
+
+		List<Cache> caches = new ArrayList<Cache>();
+		caches.add(caffeineCache(PRODUCTS_BY_ID, productsSpec));
+		caches.add(caffeineCache(PRODUCT_IDS_BY_SKU, productsSpec));
+		caches.add(caffeineCache(CATEGORIES_BY_ID, categoriesSpec));
+		caches.add(caffeineCache(CATEGORIES_BY_NAME, categoriesSpec));
+		caches.add(caffeineCache(PRODUCT_VERSIONS, versionsSpec));
+		caches.add(caffeineCache(CATEGORY_VERSIONS, versionsSpec));
+		caches.add(caffeineCache(CATEGORY_VERSIONS_BY_NAME, versionsSpec));
+
+		SimpleCacheManager cacheManager = new SimpleCacheManager();
+		cacheManager.setCaches(caches);
+		return cacheManager;
+	}
+
+	private static Cache caffeineCache(String name, String spec) {
+		return new CaffeineCache(name, Caffeine.from(spec).build());
+	}
+
+}
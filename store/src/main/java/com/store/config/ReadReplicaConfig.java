@@ -0,0 +1,94 @@
+package com.store.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.store.datasource.DataSourceRouteTaskDecorator;
+import com.store.datasource.ReadWriteRoutingDataSource;
+import com.store.datasource.ReadWriteRoutingInterceptor;
+
+/**
+ * With {@code store.datasource.replica.url} set, the store reads from a
+ * replica: GET requests to {@code /store/**} go to the replica and all other
+ * requests to the primary ({@code spring.datasource.*}), except that a client
+ * reads from the primary for {@code store.datasource.read-your-writes-ms}
+ * after each of its writes. The GET endpoints that fill the shared caches
+ * ({@link com.store.datasource.ReadsFromPrimary}) and the cached category
+ * count read from the primary too. Work outside a request, such as the
+ * startup loads, goes to the primary.
+ * <p>
+ * Both pools are Tomcat JDBC pools, tuned through
+ * {@code spring.datasource.tomcat.*} and
+ * {@code store.datasource.replica.tomcat.*}. The application sees one
+ * {@link DataSource}, lazy so that a request answered from the caches takes
+ * no connection at all.
+ */
+@Configuration
+@ConditionalOnProperty(name = "store.datasource.replica.url")
+public class ReadReplicaConfig extends WebMvcConfigurerAdapter {
+
+	@Value("${store.datasource.read-your-writes-ms:5000}")
+	private long readYourWritesMillis;
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.tomcat")
+	public DataSource primaryDataSource(DataSourceProperties properties) {
+		return DataSourceBuilder.create(properties.getClassLoader())
+				.type(properties.getType())
+				.driverClassName(properties.determineDriverClassName())
+				.url(properties.determineUrl())
+				.username(properties.determineUsername())
+				.password(properties.determinePassword()).build();
+	}
+
+	@Bean
+	@ConfigurationProperties("store.datasource.replica.tomcat")
+	public DataSource replicaDataSource(
+			@Value("${store.datasource.replica.url}") String url,
+			@Value("${store.datasource.replica.username:${spring.datasource.username:}}") String username,
+			@Value("${store.datasource.replica.password:${spring.datasource.password:}}") String password,
+			@Value("${store.datasource.replica.driver-class-name:${spring.datasource.driver-class-name:}}") String driverClassName) {
+		DataSourceBuilder builder = DataSourceBuilder.create().url(url)
+				.username(username).password(password);
+		if (!driverClassName.isEmpty()) {
+			builder.driverClassName(driverClassName);
+		}
+		return builder.build();
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(
+			@Qualifier("primaryDataSource") DataSource primaryDataSource,
+			@Qualifier("replicaDataSource") DataSource replicaDataSource) {
+		return new LazyConnectionDataSourceProxy(
+				new ReadWriteRoutingDataSource(primaryDataSource,
+						replicaDataSource));
+	}
+
+	@Bean
+	public TaskDecorator dataSourceRouteTaskDecorator() {
+		return new DataSourceRouteTaskDecorator();
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(
+				new ReadWriteRoutingInterceptor(readYourWritesMillis))
+				.addPathPatterns("/store/**");
+	}
+
+}
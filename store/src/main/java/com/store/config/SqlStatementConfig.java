@@ -0,0 +1,51 @@
+package com.store.config;
+
+import javax.servlet.DispatcherType;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.store.metrics.SqlStatementHeaderFilter;
+import com.store.metrics.SqlStatementInterceptor;
+import com.store.metrics.SqlStatementTaskDecorator;
+
+/**
+ * Per request SQL statement counting: the statistics are opened by an MVC
+ * interceptor, follow the work onto the repository executor and are filled in
+ * by the Hibernate session listener named in
+ * {@code spring.jpa.properties.hibernate.session.events.auto}. A filter
+ * reports them in the response headers, on the async dispatch as well.
+ */
+@Configuration
+@ConditionalOnProperty(name = "store.metrics.sql.enabled", matchIfMissing = true)
+public class SqlStatementConfig extends WebMvcConfigurerAdapter {
+
+	@Value("${store.metrics.sql.warn-threshold:20}")
+	private int warnThreshold;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new SqlStatementInterceptor(warnThreshold));
+	}
+
+	@Bean
+	public FilterRegistrationBean sqlStatementHeaderFilter() {
+		FilterRegistrationBean registration = new FilterRegistrationBean(
+				new SqlStatementHeaderFilter());
+		registration.setDispatcherTypes(DispatcherType.REQUEST,
+				DispatcherType.ASYNC);
+		return registration;
+	}
+
+	@Bean
+	public TaskDecorator sqlStatementTaskDecorator() {
+		return new SqlStatementTaskDecorator();
+	}
+
+}
@@ -2,8 +2,11 @@ package com.store.config;
 
 import static springfox.documentation.builders.PathSelectors.regex;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.ResponseEntity;
 
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -25,7 +28,9 @@ public class SwaggerConfig {
                 .apis(RequestHandlerSelectors.any())              
                 //.paths(PathSelectors.any())
                 .paths(regex("/store/.*"))
-                .build();
+                .build()
+                // document the payload the futures complete with
+                .genericModelSubstitutes(CompletableFuture.class, ResponseEntity.class);
 
     }
         
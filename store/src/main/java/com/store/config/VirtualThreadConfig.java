@@ -0,0 +1,50 @@
+package com.store.config;
+
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.store.async.VirtualThreads;
+
+/**
+ * {@code store.threads.virtual=true} hands Tomcat an executor that starts a
+ * virtual thread per request instead of its bounded worker pool, so a request
+ * blocked on JDBC no longer holds one of {@code server.tomcat.max-threads}
+ * platform threads. Concurrency is then bounded by the connector's
+ * {@code maxConnections} and, for the database, by the JDBC pool. Needs the
+ * store built with the {@code java21} profile; the application refuses to
+ * start otherwise.
+ * <p>
+ * A virtual thread blocked inside a {@code synchronized} block keeps its
+ * carrier thread, so the profile also moves to a Tomcat and a MySQL driver
+ * that lock with {@code ReentrantLock} around the request and the statement.
+ * Run with {@code -Djdk.tracePinnedThreads=short} to see what still pins.
+ */
+@Configuration
+@ConditionalOnProperty(name = "store.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+	@Bean
+	public EmbeddedServletContainerCustomizer virtualThreadContainerCustomizer() {
+		VirtualThreads.requireSupported("store.threads.virtual");
+		return container -> {
+			if (container instanceof TomcatEmbeddedServletContainerFactory) {
+				((TomcatEmbeddedServletContainerFactory) container)
+						.addConnectorCustomizers(connector -> {
+							ProtocolHandler handler = connector
+									.getProtocolHandler();
+							if (handler instanceof AbstractProtocol) {
+								((AbstractProtocol<?>) handler)
+										.setExecutor(VirtualThreads
+												.newThreadPerTaskExecutor("http-virtual-"));
+							}
+						});
+			}
+		};
+	}
+
+}
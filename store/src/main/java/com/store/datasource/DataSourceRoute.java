@@ -0,0 +1,38 @@
+package com.store.datasource;
+
+/**
+ * The database a unit of work goes to. Bound to the thread doing the work,
+ * the request thread or a {@link com.store.async.RepositoryExecutor} thread,
+ * and read by {@link ReadWriteRoutingDataSource} when a connection is taken.
+ * Work with no route bound goes to the primary.
+ */
+public enum DataSourceRoute {
+
+	PRIMARY, REPLICA;
+
+	private static final ThreadLocal<DataSourceRoute> CURRENT = new ThreadLocal<DataSourceRoute>();
+
+	public static DataSourceRoute current() {
+		DataSourceRoute route = CURRENT.get();
+		return route != null ? route : PRIMARY;
+	}
+
+	/**
+	 * Binds {@code route} to the calling thread and returns the route it
+	 * replaces, to be handed back to {@link #restore(DataSourceRoute)}.
+	 */
+	public static DataSourceRoute bind(DataSourceRoute route) {
+		DataSourceRoute previous = CURRENT.get();
+		CURRENT.set(route);
+		return previous;
+	}
+
+	public static void restore(DataSourceRoute previous) {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.store.datasource;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Carries the {@link DataSourceRoute} of the submitting request over to the
+ * thread that runs its repository work.
+ */
+public class DataSourceRouteTaskDecorator implements TaskDecorator {
+
+	@Override
+	public Runnable decorate(Runnable runnable) {
+		DataSourceRoute route = DataSourceRoute.current();
+		return () -> {
+			DataSourceRoute previous = DataSourceRoute.bind(route);
+			try {
+				runnable.run();
+			} finally {
+				DataSourceRoute.restore(previous);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.store.datasource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out connections of the primary or of the replica, as the
+ * {@link DataSourceRoute} bound to the thread says. Meant to sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * so the connection is only taken, and the route only read, once a statement
+ * runs.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+	private final DataSource primary;
+
+	public ReadWriteRoutingDataSource(DataSource primary, DataSource replica) {
+		this.primary = primary;
+		Map<Object, Object> targets = new HashMap<Object, Object>();
+		targets.put(DataSourceRoute.PRIMARY, primary);
+		targets.put(DataSourceRoute.REPLICA, replica);
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+		afterPropertiesSet();
+	}
+
+	public DataSource getPrimary() {
+		return primary;
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		return DataSourceRoute.current();
+	}
+
+}
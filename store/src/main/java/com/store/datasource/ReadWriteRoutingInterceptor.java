@@ -0,0 +1,98 @@
+package com.store.datasource;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Routes GET and HEAD requests to the replica and every other request to the
+ * primary, except the handlers marked {@link ReadsFromPrimary}.
+ * <p>
+ * A write also sets the {@value #COOKIE} cookie to the time its
+ * read-your-writes window ends. Until then the client's reads stay on the
+ * primary, so replication lag never hides its own changes from it. An
+ * asynchronous request keeps the route it started with across its
+ * dispatches.
+ */
+public class ReadWriteRoutingInterceptor extends HandlerInterceptorAdapter {
+
+	public static final String COOKIE = "store-primary-until";
+
+	private static final String ROUTE_ATTRIBUTE = DataSourceRoute.class
+			.getName();
+
+	private final long readYourWritesMillis;
+
+	public ReadWriteRoutingInterceptor(long readYourWritesMillis) {
+		this.readYourWritesMillis = readYourWritesMillis;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) {
+		DataSourceRoute route = (DataSourceRoute) request
+				.getAttribute(ROUTE_ATTRIBUTE);
+		if (route == null) {
+			route = route(request, response, handler);
+			request.setAttribute(ROUTE_ATTRIBUTE, route);
+		}
+		DataSourceRoute.bind(route);
+		return true;
+	}
+
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request,
+			HttpServletResponse response, Object handler) {
+		DataSourceRoute.restore(null);
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request,
+			HttpServletResponse response, Object handler, Exception ex) {
+		DataSourceRoute.restore(null);
+	}
+
+	private DataSourceRoute route(HttpServletRequest request,
+			HttpServletResponse response, Object handler) {
+		long now = System.currentTimeMillis();
+		String method = request.getMethod();
+		if (!"GET".equals(method) && !"HEAD".equals(method)) {
+			if (readYourWritesMillis > 0) {
+				Cookie cookie = new Cookie(COOKIE, Long.toString(now
+						+ readYourWritesMillis));
+				cookie.setPath("/");
+				cookie.setMaxAge((int) ((readYourWritesMillis + 999) / 1000));
+				cookie.setHttpOnly(true);
+				response.addCookie(cookie);
+			}
+			return DataSourceRoute.PRIMARY;
+		}
+		if (handler instanceof HandlerMethod
+				&& ((HandlerMethod) handler)
+						.hasMethodAnnotation(ReadsFromPrimary.class)) {
+			return DataSourceRoute.PRIMARY;
+		}
+		return primaryUntil(request) > now ? DataSourceRoute.PRIMARY
+				: DataSourceRoute.REPLICA;
+	}
+
+	private static long primaryUntil(HttpServletRequest request) {
+		Cookie[] cookies = request.getCookies();
+		if (cookies != null) {
+			for (Cookie cookie : cookies) {
+				if (COOKIE.equals(cookie.getName())) {
+					try {
+						return Long.parseLong(cookie.getValue());
+					} catch (NumberFormatException e) {
+						return 0L;
+					}
+				}
+			}
+		}
+		return 0L;
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.store.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET handler whose reads fill the shared caches: the entity caches,
+ * the version caches behind the ETags, or the misses of the
+ * {@link com.store.cache.ProductLookupGuard}. The
+ * {@link ReadWriteRoutingInterceptor} sends it to the primary whatever the
+ * client, since a row read from a lagging replica would be served from the
+ * cache, to every client and for the whole TTL. Such handlers are mostly
+ * answered from the caches, so the replica loses little of its load.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadsFromPrimary {
+
+}
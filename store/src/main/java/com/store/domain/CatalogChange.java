@@ -0,0 +1,163 @@
+package com.store.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
+import com.store.event.CatalogChangeEvent.EntityType;
+import com.store.util.InstantConverter;
+
+/**
+ * One row of the catalog outbox: a {@link CatalogChangeEvent} as written in
+ * the transaction that made the change, numbered by {@code sequence} as it
+ * commits. Rows are only ever inserted, and read back in sequence order by
+ * the change feed.
+ */
+@Entity
+@Table(name="catalog_change")
+@XmlRootElement(name="change")
+public class CatalogChange implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// assigned by the outbox from CatalogChangeCounter, in commit order
+	@Id
+	@Column(name = "change_sequence")
+	private long sequence;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "entity_type", nullable=false, length=16)
+	private EntityType entityType;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "change_type", nullable=false, length=16)
+	private ChangeType changeType;
+
+	@Column(name = "entity_id", nullable=false)
+	private long entityId;
+
+	@Column(name = "entity_key", length=45)
+	private String key;
+
+	@Column(name = "previous_key", length=45)
+	private String previousKey;
+
+	@Column(name = "entity_name", length=45)
+	private String name;
+
+	@Column(name = "changed_at", nullable=false)
+	@Convert(converter = InstantConverter.class)
+	private Instant changedAt;
+
+	public CatalogChange() {
+
+	}
+
+	public CatalogChange(CatalogChangeEvent event, Instant changedAt) {
+		this.entityType = event.getEntityType();
+		this.changeType = event.getChangeType();
+		this.entityId = event.getEntityId();
+		this.key = event.getKey();
+		this.previousKey = event.getPreviousKey();
+		this.name = event.getName();
+		this.changedAt = changedAt;
+	}
+
+	/**
+	 * Position of the change in the feed, to pass as {@code after} to read
+	 * the changes that follow it.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	public EntityType getEntityType() {
+		return entityType;
+	}
+
+	public void setEntityType(EntityType entityType) {
+		this.entityType = entityType;
+	}
+
+	public ChangeType getChangeType() {
+		return changeType;
+	}
+
+	public void setChangeType(ChangeType changeType) {
+		this.changeType = changeType;
+	}
+
+	public long getEntityId() {
+		return entityId;
+	}
+
+	public void setEntityId(long entityId) {
+		this.entityId = entityId;
+	}
+
+	/**
+	 * The SKU of a product or the name of a category, after the change.
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * The key before the change when an update modified it.
+	 */
+	public String getPreviousKey() {
+		return previousKey;
+	}
+
+	public void setPreviousKey(String previousKey) {
+		this.previousKey = previousKey;
+	}
+
+	/**
+	 * The product name after the change, when the change set it.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * The time of the change, in ISO-8601 and UTC.
+	 */
+	public String getChangedAt() {
+		return changedAt != null ? changedAt.toString() : null;
+	}
+
+	public void setChangedAt(String changedAt) {
+		this.changedAt = changedAt != null ? Instant.parse(changedAt) : null;
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogChange [sequence=" + sequence + ", entityType="
+				+ entityType + ", changeType=" + changeType + ", entityId="
+				+ entityId + ", key=" + key + "]";
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.store.domain;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The single row numbering the {@link CatalogChange} outbox: the sequence of
+ * the last change written. A transaction takes the next numbers by locking
+ * the row and bumping it, and holds the lock until it completes, so changes
+ * commit in the order of their numbers and a rolled back transaction leaves
+ * no gap, whichever instance of the application writes them.
+ */
+@Entity
+@Table(name="catalog_change_counter")
+public class CatalogChangeCounter implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int ID = 1;
+
+	// db/mysql/catalog_change_counter.sql seeds the row above the existing changes
+	@Id
+	@Column(name = "counter_id")
+	private int counterId = ID;
+
+	@Column(name = "last_sequence", nullable=false)
+	private long lastSequence;
+
+	public CatalogChangeCounter() {
+
+	}
+
+	public int getCounterId() {
+		return counterId;
+	}
+
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Reserves {@code count} numbers and returns the first of them. Only
+	 * valid on the row locked for update.
+	 */
+	public long next(int count) {
+		long first = lastSequence + 1;
+		lastSequence += count;
+		return first;
+	}
+
+}
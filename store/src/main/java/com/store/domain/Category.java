@@ -1,6 +1,7 @@
 package com.store.domain;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.Set;
@@ -12,19 +13,26 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotEmpty;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.store.util.InstantConverter;
 import com.store.util.LocalDateConverter;
 import com.store.util.LocalDateDeserializer;
 import com.store.util.LocalDateSerializer;
@@ -51,7 +59,8 @@ public class Category implements Serializable {
 	private String categoryName;
 	
 	@ManyToMany(cascade=CascadeType.ALL)  
-    @JoinTable(name="category_product", joinColumns=@JoinColumn(name="category_id"), inverseJoinColumns=@JoinColumn(name="product_id"))
+    @JoinTable(name="category_product", joinColumns=@JoinColumn(name="category_id"), inverseJoinColumns=@JoinColumn(name="product_id"),
+    		indexes=@Index(name="idx_category_product_product_id", columnList="product_id"))
 	private Set<Product> products;
 	
 	@Column(name = "category_created")
@@ -66,6 +75,16 @@ public class Category implements Serializable {
 	@JsonSerialize(using = LocalDateSerializer.class)
 	@JsonDeserialize(using = LocalDateDeserializer.class)
 	private LocalDate categoryUpdated;
+
+	// bumped on every change, including product membership changes made
+	// with SQL against category_product
+	@Version
+	@Column(name = "category_version", nullable=false)
+	private long categoryVersion;
+
+	@Column(name = "category_modified")
+	@Convert(converter = InstantConverter.class)
+	private Instant categoryModified;
 	
 
 	public Category() {
@@ -140,6 +159,32 @@ public class Category implements Serializable {
 		this.categoryUpdated = categoryUpdated;
 	}
 
+	@JsonIgnore
+	@XmlTransient
+	public long getCategoryVersion() {
+		return categoryVersion;
+	}
+
+	public void setCategoryVersion(long categoryVersion) {
+		this.categoryVersion = categoryVersion;
+	}
+
+	@JsonIgnore
+	@XmlTransient
+	public Instant getCategoryModified() {
+		return categoryModified;
+	}
+
+	public void setCategoryModified(Instant categoryModified) {
+		this.categoryModified = categoryModified;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void touch() {
+		categoryModified = Instant.now();
+	}
+
 	
 	@Override
 	public int hashCode() {
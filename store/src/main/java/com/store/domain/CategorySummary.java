@@ -0,0 +1,150 @@
+package com.store.domain;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.store.util.FieldSelection;
+import com.store.util.LocalDateDeserializer;
+import com.store.util.LocalDateSerializer;
+
+/**
+ * Read model of a {@link Category}: its own columns plus the number of
+ * products it holds, selected by a JPQL constructor expression so the product
+ * set is never hydrated. The products are only attached when a client asks for
+ * them with {@code ?expand=products}.
+ */
+@XmlRootElement(name="category")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CategorySummary implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private Long categoryId;
+
+	private String categoryName;
+
+	@JsonSerialize(using = LocalDateSerializer.class)
+	@JsonDeserialize(using = LocalDateDeserializer.class)
+	private LocalDate categoryCreated;
+
+	@JsonSerialize(using = LocalDateSerializer.class)
+	@JsonDeserialize(using = LocalDateDeserializer.class)
+	private LocalDate categoryUpdated;
+
+	private Long productCount;
+
+	private List<Product> products;
+
+	public CategorySummary() {
+
+	}
+
+	public CategorySummary(Long categoryId, String categoryName,
+			LocalDate categoryCreated, LocalDate categoryUpdated,
+			Long productCount) {
+		this.categoryId = categoryId;
+		this.categoryName = categoryName;
+		this.categoryCreated = categoryCreated;
+		this.categoryUpdated = categoryUpdated;
+		this.productCount = productCount;
+	}
+
+	/**
+	 * Copies the header of another summary, without its products, so a cached
+	 * instance can be shaped for one response without being changed.
+	 */
+	public CategorySummary(CategorySummary other) {
+		this(other.categoryId, other.categoryName, other.categoryCreated,
+				other.categoryUpdated, other.productCount);
+	}
+
+	/**
+	 * Drops every field the selection does not ask for.
+	 */
+	public CategorySummary restrictTo(FieldSelection selection) {
+		if (!selection.includes("categoryId")) {
+			categoryId = null;
+		}
+		if (!selection.includes("categoryName")) {
+			categoryName = null;
+		}
+		if (!selection.includes("categoryCreated")) {
+			categoryCreated = null;
+		}
+		if (!selection.includes("categoryUpdated")) {
+			categoryUpdated = null;
+		}
+		if (!selection.includes("productCount")) {
+			productCount = null;
+		}
+		if (!selection.expands("products")) {
+			products = null;
+		}
+		return this;
+	}
+
+	public Long getCategoryId() {
+		return categoryId;
+	}
+
+	public void setCategoryId(Long categoryId) {
+		this.categoryId = categoryId;
+	}
+
+	public String getCategoryName() {
+		return categoryName;
+	}
+
+	public void setCategoryName(String categoryName) {
+		this.categoryName = categoryName;
+	}
+
+	public LocalDate getCategoryCreated() {
+		return categoryCreated;
+	}
+
+	public void setCategoryCreated(LocalDate categoryCreated) {
+		this.categoryCreated = categoryCreated;
+	}
+
+	public LocalDate getCategoryUpdated() {
+		return categoryUpdated;
+	}
+
+	public void setCategoryUpdated(LocalDate categoryUpdated) {
+		this.categoryUpdated = categoryUpdated;
+	}
+
+	public Long getProductCount() {
+		return productCount;
+	}
+
+	public void setProductCount(Long productCount) {
+		this.productCount = productCount;
+	}
+
+	@XmlElement(name="product")
+	public List<Product> getProducts() {
+		return products;
+	}
+
+	public void setProducts(List<Product> products) {
+		this.products = products;
+	}
+
+	@Override
+	public String toString() {
+		return "CategorySummary [categoryId=" + categoryId + ", categoryName="
+				+ categoryName + ", categoryCreated=" + categoryCreated
+				+ ", categoryUpdated=" + categoryUpdated + ", productCount="
+				+ productCount + "]";
+	}
+
+}
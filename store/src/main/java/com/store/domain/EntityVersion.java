@@ -0,0 +1,78 @@
+package com.store.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * The version and modification instant of a product or a category, read with
+ * a scalar query so conditional requests can be answered without loading the
+ * entity.
+ */
+public class EntityVersion implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long version;
+
+	private final Instant modified;
+
+	public EntityVersion(long version, Instant modified) {
+		this.version = version;
+		this.modified = modified;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public Instant getModified() {
+		return modified;
+	}
+
+	/**
+	 * The modification instant in epoch milliseconds, or -1 when the row
+	 * predates the column.
+	 */
+	public long getModifiedMillis() {
+		return modified != null ? modified.toEpochMilli() : -1;
+	}
+
+	/**
+	 * A strong entity tag for one representation of this version. Everything
+	 * that changes the response body for the same version (media type,
+	 * selected fields, expansions) has to be passed as the variant.
+	 */
+	public String eTag(String... variant) {
+		int hash = 0;
+		for (String part : variant) {
+			hash = 31 * hash + (part != null ? part.hashCode() : 0);
+		}
+		return "\"" + version + "-" + Integer.toHexString(hash) + "\"";
+	}
+
+	/**
+	 * The version encoded in an entity tag made by {@link #eTag(String...)},
+	 * or {@code null} if the value is missing, weak or not one of ours.
+	 */
+	public static Long parseETag(String eTag) {
+		if (eTag == null || eTag.length() < 3 || eTag.charAt(0) != '"') {
+			return null;
+		}
+		int end = eTag.indexOf('-');
+		if (end < 2) {
+			return null;
+		}
+		try {
+			return Long.valueOf(eTag.substring(1, end));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "EntityVersion [version=" + version + ", modified=" + modified
+				+ "]";
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.store.domain;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.Set;
@@ -10,18 +11,24 @@ import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToMany;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.store.util.InstantConverter;
 import com.store.util.LocalDateConverter;
 import com.store.util.LocalDateDeserializer;
 import com.store.util.LocalDateSerializer;
@@ -34,8 +41,15 @@ public class Product implements Serializable{
 	
 	private static final long serialVersionUID = 1L;
 		
+	// pooled ids are handed out in blocks, so inserts can be JDBC batched;
+	// db/mysql/product_seq.sql seeds the sequence above the existing ids
 	@Id
-	@GeneratedValue(strategy=GenerationType.AUTO)
+	@GeneratedValue(generator="product_id_generator")
+	@GenericGenerator(name="product_id_generator", strategy="org.hibernate.id.enhanced.SequenceStyleGenerator", parameters={
+			@Parameter(name="sequence_name", value="product_seq"),
+			@Parameter(name="initial_value", value="1"),
+			@Parameter(name="increment_size", value="50"),
+			@Parameter(name="optimizer", value="pooled") })
 	@Column(name = "product_id")
 	private long productId;
 	
@@ -61,6 +75,15 @@ public class Product implements Serializable{
 	@JsonSerialize(using = LocalDateSerializer.class)
 	@JsonDeserialize(using = LocalDateDeserializer.class)
 	private LocalDate productLastUpdated;
+
+	// served as ETag and Last-Modified rather than in the body
+	@Version
+	@Column(name = "product_version", nullable=false)
+	private long productVersion;
+
+	@Column(name = "product_modified")
+	@Convert(converter = InstantConverter.class)
+	private Instant productModified;
 	
 	public Product(){
 		
@@ -88,6 +111,18 @@ public class Product implements Serializable{
 		this.productLastUpdated = updatedDate;
 	}
 
+	/**
+	 * Copies another product, version included, into a new instance that no
+	 * persistence context manages, so a cached copy never sees the changes of
+	 * a transaction in progress.
+	 */
+	public Product(Product other){
+		this(other.productId, other.productSku, other.productName,
+				other.productCreated, other.productLastUpdated);
+		this.productVersion = other.productVersion;
+		this.productModified = other.productModified;
+	}
+
 	public long getProductId() {
 		return productId;
 	}
@@ -129,6 +164,32 @@ public class Product implements Serializable{
 		this.productLastUpdated = productLastUpdated;
 	}
 
+	@JsonIgnore
+	@XmlTransient
+	public long getProductVersion() {
+		return productVersion;
+	}
+
+	public void setProductVersion(long productVersion) {
+		this.productVersion = productVersion;
+	}
+
+	@JsonIgnore
+	@XmlTransient
+	public Instant getProductModified() {
+		return productModified;
+	}
+
+	public void setProductModified(Instant productModified) {
+		this.productModified = productModified;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void touch() {
+		productModified = Instant.now();
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,14 @@
+/**
+ * Entities and read models of the store, serialized as JSON by Jackson and as
+ * XML by JAXB.
+ */
+@XmlJavaTypeAdapters({
+	@XmlJavaTypeAdapter(type = LocalDate.class, value = LocalDateXmlAdapter.class) })
+package com.store.domain;
+
+import java.time.LocalDate;
+
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapters;
+
+import com.store.util.LocalDateXmlAdapter;
@@ -0,0 +1,135 @@
+package com.store.event;
+
+import com.store.domain.Category;
+import com.store.domain.Product;
+
+/**
+ * Published by the controllers whenever a product or a category is changed.
+ * Listeners that keep derived state (caches, indexes) in step with the
+ * database subscribe to it, usually after the surrounding transaction has
+ * committed.
+ */
+public class CatalogChangeEvent {
+
+	public enum EntityType {
+		PRODUCT, CATEGORY
+	}
+
+	public enum ChangeType {
+		CREATED, UPDATED, DELETED
+	}
+
+	private final EntityType entityType;
+	private final ChangeType changeType;
+	private final long entityId;
+	private final String key;
+	private final String previousKey;
+	private final String name;
+
+	public CatalogChangeEvent(EntityType entityType, ChangeType changeType,
+			long entityId, String key, String previousKey) {
+		this(entityType, changeType, entityId, key, previousKey, null);
+	}
+
+	public CatalogChangeEvent(EntityType entityType, ChangeType changeType,
+			long entityId, String key, String previousKey, String name) {
+		this.entityType = entityType;
+		this.changeType = changeType;
+		this.entityId = entityId;
+		this.key = key;
+		this.previousKey = previousKey;
+		this.name = name;
+	}
+
+	public static CatalogChangeEvent productCreated(Product product) {
+		return new CatalogChangeEvent(EntityType.PRODUCT, ChangeType.CREATED,
+				product.getProductId(), product.getProductSku(), null,
+				product.getProductName());
+	}
+
+	public static CatalogChangeEvent productUpdated(Product product,
+			String previousSku) {
+		String sku = product.getProductSku();
+		return new CatalogChangeEvent(EntityType.PRODUCT, ChangeType.UPDATED,
+				product.getProductId(), sku,
+				sku != null && sku.equals(previousSku) ? null : previousSku,
+				product.getProductName());
+	}
+
+	public static CatalogChangeEvent productDeleted(Product product) {
+		return new CatalogChangeEvent(EntityType.PRODUCT, ChangeType.DELETED,
+				product.getProductId(), product.getProductSku(), null,
+				product.getProductName());
+	}
+
+	public static CatalogChangeEvent categoryCreated(Category category) {
+		return new CatalogChangeEvent(EntityType.CATEGORY, ChangeType.CREATED,
+				category.getCategoryId(), category.getCategoryName(), null);
+	}
+
+	/**
+	 * A change to the category row or to the set of products it holds.
+	 */
+	public static CatalogChangeEvent categoryUpdated(Category category) {
+		return new CatalogChangeEvent(EntityType.CATEGORY, ChangeType.UPDATED,
+				category.getCategoryId(), category.getCategoryName(), null);
+	}
+
+	public static CatalogChangeEvent categoryDeleted(Category category) {
+		return new CatalogChangeEvent(EntityType.CATEGORY, ChangeType.DELETED,
+				category.getCategoryId(), category.getCategoryName(), null);
+	}
+
+	public EntityType getEntityType() {
+		return entityType;
+	}
+
+	public ChangeType getChangeType() {
+		return changeType;
+	}
+
+	public long getEntityId() {
+		return entityId;
+	}
+
+	/**
+	 * The natural key of the entity after the change: the SKU of a product or
+	 * the name of a category.
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * The natural key before the change when an update modified it, otherwise
+	 * {@code null}.
+	 */
+	public String getPreviousKey() {
+		return previousKey;
+	}
+
+	/**
+	 * The product name after the change, or {@code null} when the change did
+	 * not set it (a patch of the SKU alone) or the entity is a category.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public boolean isProduct() {
+		return entityType == EntityType.PRODUCT;
+	}
+
+	public boolean isCategory() {
+		return entityType == EntityType.CATEGORY;
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogChangeEvent [entityType=" + entityType
+				+ ", changeType=" + changeType + ", entityId=" + entityId
+				+ ", key=" + key + ", previousKey=" + previousKey + ", name="
+				+ name + "]";
+	}
+
+}
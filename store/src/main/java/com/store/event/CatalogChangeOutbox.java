@@ -0,0 +1,100 @@
+package com.store.event;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.store.domain.CatalogChange;
+import com.store.domain.CatalogChangeCounter;
+
+/**
+ * Writes every {@link CatalogChangeEvent} to the {@code catalog_change}
+ * outbox table, in the transaction publishing it, so the row commits or rolls
+ * back with the change itself. Publishing a change outside a transaction is a
+ * programming error and fails.
+ * <p>
+ * The changes of a transaction are numbered and inserted just before it
+ * commits, from the {@link CatalogChangeCounter} row locked for update. The
+ * lock is held until the commit, so a transaction numbering changes waits
+ * for the one before it to complete: numbers commit in order and a rollback
+ * gives its numbers back, across all instances of the application. Every
+ * change up to the highest committed number is therefore visible, and a
+ * reader resuming after the last number it saw never skips one. Taking the
+ * lock at commit keeps the wait to the commit itself.
+ */
+@Component
+public class CatalogChangeOutbox {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@EventListener
+	public void record(CatalogChangeEvent event) {
+		if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new IllegalStateException(
+					"catalog changes must be published in the transaction making them: "
+							+ event);
+		}
+		Pending pending = (Pending) TransactionSynchronizationManager
+				.getResource(this);
+		if (pending == null) {
+			pending = new Pending();
+			TransactionSynchronizationManager.bindResource(this, pending);
+			TransactionSynchronizationManager.registerSynchronization(pending);
+		}
+		pending.changes.add(new CatalogChange(event, Instant.now()));
+	}
+
+	/**
+	 * The highest sequence number committed. Every change up to it is
+	 * visible, to a reader in the same transaction as this call and to any
+	 * later one.
+	 */
+	public long visibleUpTo() {
+		// not find(): a counter left managed would not be re-read by the locking find
+		List<Long> lastSequence = entityManager
+				.createQuery(
+						"SELECT counter.lastSequence FROM CatalogChangeCounter counter "
+								+ "WHERE counter.counterId = :id", Long.class)
+				.setParameter("id", CatalogChangeCounter.ID).getResultList();
+		return lastSequence.isEmpty() ? 0L : lastSequence.get(0);
+	}
+
+	private final class Pending extends TransactionSynchronizationAdapter {
+
+		private final List<CatalogChange> changes = new ArrayList<CatalogChange>();
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			CatalogChangeCounter counter = entityManager.find(
+					CatalogChangeCounter.class, CatalogChangeCounter.ID,
+					LockModeType.PESSIMISTIC_WRITE);
+			if (counter == null) {
+				// first change of a new schema: a concurrent first one fails on the key
+				counter = new CatalogChangeCounter();
+				entityManager.persist(counter);
+			}
+			long sequence = counter.next(changes.size());
+			for (CatalogChange change : changes) {
+				change.setSequence(sequence++);
+				entityManager.persist(change);
+			}
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager
+					.unbindResourceIfPossible(CatalogChangeOutbox.this);
+		}
+	}
+
+}
@@ -1,13 +1,13 @@
 package com.store.exception;
 
-public class CategoryNotFoundException extends RuntimeException {
+public class CategoryNotFoundException extends NotFoundException {
 	
 	public CategoryNotFoundException(){
-		super();		
+		super(null);		
 	}
 	
 	public CategoryNotFoundException(String message){
 		super(message);		
 	}
 
-}
\ No newline at end of file
+}
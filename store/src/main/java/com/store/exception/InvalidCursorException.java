@@ -0,0 +1,13 @@
+package com.store.exception;
+
+public class InvalidCursorException extends RuntimeException {
+	
+	public InvalidCursorException(){
+		super();		
+	}
+	
+	public InvalidCursorException(String message){
+		super(message);		
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.store.exception;
+
+/**
+ * Base of the exceptions mapped to 404. They are thrown for ordinary client
+ * input, often in bursts, so no stack trace is captured, and the error body is
+ * built once per instance: a cached instance thrown again for the same URL
+ * answers without allocating a new one.
+ */
+public abstract class NotFoundException extends RuntimeException {
+
+	private volatile ClientErrorInformation errorInformation;
+
+	protected NotFoundException(String message) {
+		super(message, null, false, false);
+	}
+
+	public ClientErrorInformation getErrorInformation(String url) {
+		ClientErrorInformation information = errorInformation;
+		if (information == null || !url.equals(information.getUrl())) {
+			information = new ClientErrorInformation(getMessage(), url);
+			errorInformation = information;
+		}
+		return information;
+	}
+
+}
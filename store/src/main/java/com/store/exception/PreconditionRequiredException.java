@@ -0,0 +1,13 @@
+package com.store.exception;
+
+public class PreconditionRequiredException extends RuntimeException {
+	
+	public PreconditionRequiredException(){
+		super();		
+	}
+	
+	public PreconditionRequiredException(String message){
+		super(message);		
+	}
+
+}
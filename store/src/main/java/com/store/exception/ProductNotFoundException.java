@@ -1,13 +1,23 @@
 package com.store.exception;
 
-public class ProductNotFoundException extends RuntimeException {
+public class ProductNotFoundException extends NotFoundException {
 	
 	public ProductNotFoundException(){
-		super();		
+		super(null);		
 	}
 	
 	public ProductNotFoundException(String message){
 		super(message);		
 	}
 
+	public static ProductNotFoundException forId(long productId) {
+		return new ProductNotFoundException("the product id " + productId
+				+ " is not existed");
+	}
+
+	public static ProductNotFoundException forSku(String productSku) {
+		return new ProductNotFoundException("the product sku " + productSku
+				+ " is not existed");
+	}
+
 }
@@ -0,0 +1,22 @@
+package com.store.exception;
+
+/**
+ * Thrown when the store cannot take more work right now, mapped to 503 with a
+ * {@code Retry-After} header. It is raised precisely when the server is
+ * overloaded, so no stack trace is captured and a single instance can be
+ * thrown again and again.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+	private final int retryAfterSeconds;
+
+	public ServiceUnavailableException(String message, int retryAfterSeconds) {
+		super(message, null, false, false);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+}
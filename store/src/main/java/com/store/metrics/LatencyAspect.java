@@ -0,0 +1,77 @@
+package com.store.metrics;
+
+import java.util.concurrent.CompletionStage;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.store.repository.CategoryRepository;
+import com.store.repository.ProductRepository;
+
+/**
+ * Times every request mapping of the controllers and every call on the
+ * product and category repositories into the {@link LatencyRecorder}.
+ * <p>
+ * A controller method returning a {@link CompletionStage} is timed until the
+ * stage completes, so the figure includes the time spent queued on and
+ * running in the {@link com.store.async.RepositoryExecutor}. A stream returned
+ * by a repository is timed until its query is open, not until it has been
+ * read. The aspect is the outermost advice, so repository timings include
+ * cache hits.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "store.metrics.latency.enabled", matchIfMissing = true)
+public class LatencyAspect {
+
+	@Autowired
+	private LatencyRecorder latencyRecorder;
+
+	@Around("execution(@org.springframework.web.bind.annotation.RequestMapping * com.store.rest.controller..*.*(..))")
+	public Object timeRequestMapping(ProceedingJoinPoint joinPoint)
+			throws Throwable {
+		return time(joinPoint, joinPoint.getSignature().getDeclaringType());
+	}
+
+	@Around("this(com.store.repository.ProductRepository)")
+	public Object timeProductRepository(ProceedingJoinPoint joinPoint)
+			throws Throwable {
+		return time(joinPoint, ProductRepository.class);
+	}
+
+	@Around("this(com.store.repository.CategoryRepository)")
+	public Object timeCategoryRepository(ProceedingJoinPoint joinPoint)
+			throws Throwable {
+		return time(joinPoint, CategoryRepository.class);
+	}
+
+	private Object time(ProceedingJoinPoint joinPoint, Class<?> group)
+			throws Throwable {
+		LatencyHistogram histogram = latencyRecorder.histogram(group,
+				((MethodSignature) joinPoint.getSignature()).getMethod());
+		long start = System.nanoTime();
+		Object result;
+		try {
+			result = joinPoint.proceed();
+		} catch (Throwable e) {
+			histogram.record(System.nanoTime() - start, true);
+			throw e;
+		}
+		if (result instanceof CompletionStage) {
+			((CompletionStage<?>) result).whenComplete((value, failure) -> histogram
+					.record(System.nanoTime() - start, failure != null));
+		} else {
+			histogram.record(System.nanoTime() - start, false);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.store.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency distribution of one operation, kept to three significant digits in
+ * microseconds.
+ * <p>
+ * Recording goes through an HdrHistogram {@link Recorder}, which is wait-free
+ * for the recording threads. Only {@link #statistics()} takes a lock: it swaps
+ * out the interval the recorder has collected since the last call and adds it
+ * to the running total.
+ */
+public class LatencyHistogram {
+
+	private static final int SIGNIFICANT_DIGITS = 3;
+
+	private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+
+	private final LongAdder failures = new LongAdder();
+
+	private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+
+	private Histogram interval;
+
+	public void record(long nanos, boolean failed) {
+		recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0L)));
+		if (failed) {
+			failures.increment();
+		}
+	}
+
+	public long count() {
+		return snapshot().getTotalCount();
+	}
+
+	/**
+	 * Call count, failures and the mean, p50, p99, p99.9 and maximum latency
+	 * in milliseconds since startup.
+	 */
+	public synchronized Map<String, Object> statistics() {
+		Histogram histogram = snapshot();
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		statistics.put("count", histogram.getTotalCount());
+		statistics.put("failures", failures.sum());
+		statistics.put("meanMs", histogram.getMean() / 1000.0);
+		statistics.put("p50Ms", millis(histogram.getValueAtPercentile(50.0)));
+		statistics.put("p99Ms", millis(histogram.getValueAtPercentile(99.0)));
+		statistics.put("p999Ms", millis(histogram.getValueAtPercentile(99.9)));
+		statistics.put("maxMs", millis(histogram.getMaxValue()));
+		return statistics;
+	}
+
+	private synchronized Histogram snapshot() {
+		interval = recorder.getIntervalHistogram(interval);
+		total.add(interval);
+		return total;
+	}
+
+	private static double millis(long micros) {
+		return micros / 1000.0;
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.store.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@link LatencyHistogram}s of the store, one per operation, grouped by
+ * the controller or repository the operation belongs to.
+ * <p>
+ * The histogram of an operation is looked up by its {@link Method} in a
+ * concurrent map, so a call that has been seen before reads without locking.
+ * It is named after the parameter types as the group sees them, so the
+ * {@code findOne(ID)} a repository inherits is {@code findOne(Long)}.
+ */
+@Component
+public class LatencyRecorder {
+
+	private final ConcurrentMap<String, ConcurrentMap<Method, Operation>> groups = new ConcurrentHashMap<String, ConcurrentMap<Method, Operation>>();
+
+	public LatencyHistogram histogram(Class<?> group, Method method) {
+		ConcurrentMap<Method, Operation> operations = groups.get(group
+				.getSimpleName());
+		if (operations == null) {
+			operations = groups.computeIfAbsent(group.getSimpleName(),
+					key -> new ConcurrentHashMap<Method, Operation>());
+		}
+		Operation operation = operations.get(method);
+		if (operation == null) {
+			operation = operations.computeIfAbsent(method,
+					key -> new Operation(group, key));
+		}
+		return operation.histogram;
+	}
+
+	/**
+	 * The statistics of every operation called at least once, keyed by
+	 * {@code Group.method(ParameterType,...)}.
+	 */
+	public Map<String, Object> statistics() {
+		Map<String, Object> statistics = new TreeMap<String, Object>();
+		for (Map.Entry<String, ConcurrentMap<Method, Operation>> group : groups
+				.entrySet()) {
+			for (Operation operation : group.getValue().values()) {
+				if (operation.histogram.count() > 0) {
+					statistics.put(group.getKey() + "." + operation.name,
+							operation.histogram.statistics());
+				}
+			}
+		}
+		return statistics;
+	}
+
+	private static class Operation {
+
+		private final String name;
+
+		private final LatencyHistogram histogram = new LatencyHistogram();
+
+		Operation(Class<?> group, Method method) {
+			StringJoiner parameters = new StringJoiner(",",
+					method.getName() + "(", ")");
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			for (int i = 0; i < parameterTypes.length; i++) {
+				parameters.add(ResolvableType
+						.forMethodParameter(method, i, group)
+						.resolve(parameterTypes[i]).getSimpleName());
+			}
+			this.name = parameters.toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.store.metrics;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint ({@code /latencystats}) reporting the call count and
+ * the p50, p99 and p99.9 latency of every controller request mapping and
+ * repository method called since startup.
+ */
+@Component
+public class LatencyStatisticsEndpoint extends
+		AbstractEndpoint<Map<String, Object>> {
+
+	@Autowired
+	private LatencyRecorder latencyRecorder;
+
+	public LatencyStatisticsEndpoint() {
+		super("latencystats", false);
+	}
+
+	@Override
+	public Map<String, Object> invoke() {
+		return latencyRecorder.statistics();
+	}
+
+}
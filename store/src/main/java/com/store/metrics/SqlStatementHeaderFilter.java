@@ -0,0 +1,113 @@
+package com.store.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Reports the {@link SqlStatementStatistics} of a request in the
+ * {@value #STATEMENTS_HEADER} and {@value #MILLIS_HEADER} response headers.
+ * The response is wrapped so the headers are written just before it is
+ * committed: when the body is first opened, the buffer flushed or an error or
+ * redirect sent, or at the end of the last dispatch for a response without a
+ * body, such as a 204 or a 304. A streamed body reports the statements run
+ * before it started.
+ */
+public class SqlStatementHeaderFilter extends OncePerRequestFilter {
+
+	public static final String STATEMENTS_HEADER = "X-SQL-Statements";
+
+	public static final String MILLIS_HEADER = "X-SQL-Time-Millis";
+
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request,
+			HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		SqlStatementHeaderResponse wrapped = new SqlStatementHeaderResponse(
+				request, response);
+		filterChain.doFilter(request, wrapped);
+		if (!request.isAsyncStarted()) {
+			wrapped.writeHeaders();
+		}
+	}
+
+	private static final class SqlStatementHeaderResponse extends
+			HttpServletResponseWrapper {
+
+		private final HttpServletRequest request;
+
+		private boolean written;
+
+		SqlStatementHeaderResponse(HttpServletRequest request,
+				HttpServletResponse response) {
+			super(response);
+			this.request = request;
+		}
+
+		void writeHeaders() {
+			if (written || isCommitted()) {
+				return;
+			}
+			written = true;
+			SqlStatementStatistics statistics = (SqlStatementStatistics) request
+					.getAttribute(SqlStatementStatistics.ATTRIBUTE);
+			if (statistics != null) {
+				setHeader(STATEMENTS_HEADER,
+						Long.toString(statistics.getStatements()));
+				setHeader(MILLIS_HEADER,
+						String.format(Locale.ROOT, "%.3f", statistics.getMillis()));
+			}
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			writeHeaders();
+			return super.getOutputStream();
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			writeHeaders();
+			return super.getWriter();
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			writeHeaders();
+			super.flushBuffer();
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			writeHeaders();
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			writeHeaders();
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			writeHeaders();
+			super.sendRedirect(location);
+		}
+	}
+
+}
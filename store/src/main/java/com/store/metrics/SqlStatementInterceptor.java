@@ -0,0 +1,60 @@
+package com.store.metrics;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Opens the {@link SqlStatementStatistics} of a request and binds them to the
+ * request thread. An asynchronous request keeps the statistics it started
+ * with across its dispatches. Once the request is complete a warning is
+ * logged when it ran more than {@code warnThreshold} statements, the usual
+ * sign of an N+1 query.
+ */
+public class SqlStatementInterceptor extends HandlerInterceptorAdapter {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(SqlStatementInterceptor.class);
+
+	private final int warnThreshold;
+
+	public SqlStatementInterceptor(int warnThreshold) {
+		this.warnThreshold = warnThreshold;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) {
+		SqlStatementStatistics statistics = (SqlStatementStatistics) request
+				.getAttribute(SqlStatementStatistics.ATTRIBUTE);
+		if (statistics == null) {
+			statistics = new SqlStatementStatistics();
+			request.setAttribute(SqlStatementStatistics.ATTRIBUTE, statistics);
+		}
+		SqlStatementStatistics.bind(statistics);
+		return true;
+	}
+
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request,
+			HttpServletResponse response, Object handler) {
+		SqlStatementStatistics.restore(null);
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request,
+			HttpServletResponse response, Object handler, Exception ex) {
+		SqlStatementStatistics.restore(null);
+		SqlStatementStatistics statistics = (SqlStatementStatistics) request
+				.getAttribute(SqlStatementStatistics.ATTRIBUTE);
+		if (statistics != null && statistics.getStatements() > warnThreshold) {
+			logger.warn("{} {} ran {} SQL statements in {} ms",
+					request.getMethod(), request.getRequestURI(),
+					statistics.getStatements(), statistics.getMillis());
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.store.metrics;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Counts every statement and batch a Hibernate session executes into the
+ * {@link SqlStatementStatistics} bound to the thread, if any. Registered for
+ * every session through {@code hibernate.session.events.auto}; a session is
+ * used by one thread at a time, so the start time needs no guarding.
+ */
+public class SqlStatementListener extends BaseSessionEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private long started;
+
+	@Override
+	public void jdbcExecuteStatementStart() {
+		started = System.nanoTime();
+	}
+
+	@Override
+	public void jdbcExecuteStatementEnd() {
+		record();
+	}
+
+	@Override
+	public void jdbcExecuteBatchStart() {
+		started = System.nanoTime();
+	}
+
+	@Override
+	public void jdbcExecuteBatchEnd() {
+		record();
+	}
+
+	private void record() {
+		SqlStatementStatistics statistics = SqlStatementStatistics.current();
+		if (statistics != null) {
+			statistics.record(System.nanoTime() - started);
+		}
+	}
+
+}
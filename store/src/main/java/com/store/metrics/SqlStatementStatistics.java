@@ -0,0 +1,57 @@
+package com.store.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The JDBC statements one HTTP request has executed and the time spent in
+ * them. The statistics of the current request are bound to the thread doing
+ * its work, the request thread or a {@link com.store.async.RepositoryExecutor}
+ * thread, and counted by {@link SqlStatementListener}.
+ */
+public class SqlStatementStatistics {
+
+	public static final String ATTRIBUTE = SqlStatementStatistics.class
+			.getName();
+
+	private static final ThreadLocal<SqlStatementStatistics> CURRENT = new ThreadLocal<SqlStatementStatistics>();
+
+	private final LongAdder statements = new LongAdder();
+
+	private final LongAdder nanos = new LongAdder();
+
+	public static SqlStatementStatistics current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Binds {@code statistics} to the calling thread and returns the ones it
+	 * replaces, to be handed back to {@link #restore(SqlStatementStatistics)}.
+	 */
+	public static SqlStatementStatistics bind(SqlStatementStatistics statistics) {
+		SqlStatementStatistics previous = CURRENT.get();
+		CURRENT.set(statistics);
+		return previous;
+	}
+
+	public static void restore(SqlStatementStatistics previous) {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+
+	public void record(long statementNanos) {
+		statements.increment();
+		nanos.add(statementNanos);
+	}
+
+	public long getStatements() {
+		return statements.sum();
+	}
+
+	public double getMillis() {
+		return nanos.sum() / 1e6;
+	}
+
+}
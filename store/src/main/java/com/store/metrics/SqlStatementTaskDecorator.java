@@ -0,0 +1,28 @@
+package com.store.metrics;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Carries the {@link SqlStatementStatistics} of the submitting request over
+ * to the thread that runs its repository work.
+ */
+public class SqlStatementTaskDecorator implements TaskDecorator {
+
+	@Override
+	public Runnable decorate(Runnable runnable) {
+		SqlStatementStatistics statistics = SqlStatementStatistics.current();
+		if (statistics == null) {
+			return runnable;
+		}
+		return () -> {
+			SqlStatementStatistics previous = SqlStatementStatistics
+					.bind(statistics);
+			try {
+				runnable.run();
+			} finally {
+				SqlStatementStatistics.restore(previous);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.store.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.store.domain.CatalogChange;
+
+@Repository("catalogChangeRepository")
+public interface CatalogChangeRepository extends
+		JpaRepository<CatalogChange, Long> {
+
+	/**
+	 * The changes numbered above {@code after} and up to {@code upTo}, in
+	 * sequence order, a page at a time.
+	 */
+	@Query("SELECT change FROM CatalogChange change WHERE change.sequence > :after "
+			+ "AND change.sequence <= :upTo ORDER BY change.sequence")
+	public List<CatalogChange> findChanges(@Param("after") long after,
+			@Param("upTo") long upTo, Pageable pageable);
+
+}
@@ -1,15 +1,23 @@
 package com.store.repository;
 
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.store.config.CacheConfig;
 import com.store.domain.Category;
+import com.store.domain.CategorySummary;
+import com.store.domain.EntityVersion;
 import com.store.domain.Product;
 
 
@@ -21,4 +29,116 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
 	 @Query("SELECT category FROM Category category where :product in elements(category.products)")
 	 public List<Category> findCategoriesByProducts(@Param("product") Product product);
 
+	 @Query("SELECT category FROM Category category ORDER BY category.categoryId")
+	 public List<Category> findCategoriesOrderedById(Pageable pageable);
+
+	 public static final String SUMMARY_SELECT = "SELECT new com.store.domain.CategorySummary("
+	 		+ "category.categoryId, category.categoryName, category.categoryCreated, category.categoryUpdated, COUNT(product)) "
+	 		+ "FROM Category category LEFT JOIN category.products product ";
+
+	 public static final String SUMMARY_GROUP_BY = " GROUP BY category.categoryId, category.categoryName, "
+	 		+ "category.categoryCreated, category.categoryUpdated";
+
+	 /**
+	  * The category header with its product count. Cached: callers must copy
+	  * the result before changing it.
+	  */
+	 @Cacheable(cacheNames = CacheConfig.CATEGORIES_BY_ID, unless = "#result == null")
+	 @Query(SUMMARY_SELECT + "WHERE category.categoryId = :categoryId" + SUMMARY_GROUP_BY)
+	 public CategorySummary findCategorySummaryById(@Param("categoryId") long categoryId);
+
+	 /**
+	  * The category header with its product count. Cached: callers must copy
+	  * the result before changing it.
+	  */
+	 @Cacheable(cacheNames = CacheConfig.CATEGORIES_BY_NAME, unless = "#result == null")
+	 @Query(SUMMARY_SELECT + "WHERE category.categoryName = :categoryName" + SUMMARY_GROUP_BY)
+	 public CategorySummary findCategorySummaryByName(@Param("categoryName") String categoryName);
+
+	 @Cacheable(cacheNames = CacheConfig.CATEGORY_VERSIONS, unless = "#result == null")
+	 @Query("SELECT new com.store.domain.EntityVersion(category.categoryVersion, category.categoryModified) "
+	 		+ "FROM Category category WHERE category.categoryId = :categoryId")
+	 public EntityVersion findVersionById(@Param("categoryId") long categoryId);
+
+	 @Cacheable(cacheNames = CacheConfig.CATEGORY_VERSIONS_BY_NAME, unless = "#result == null")
+	 @Query("SELECT new com.store.domain.EntityVersion(category.categoryVersion, category.categoryModified) "
+	 		+ "FROM Category category WHERE category.categoryName = :categoryName")
+	 public EntityVersion findVersionByName(@Param("categoryName") String categoryName);
+
+	 /**
+	  * Bumps the version of a category whose product set was changed with SQL
+	  * on category_product, which Hibernate does not see.
+	  */
+	 @Modifying
+	 @Query(value = "UPDATE category SET category_version = category_version + 1, category_modified = :modified "
+	 		+ "WHERE category_id = :categoryId", nativeQuery = true)
+	 public int touchCategory(@Param("categoryId") long categoryId,
+			 @Param("modified") Timestamp modified);
+
+	 /**
+	  * Bumps the version of every category holding the product; run before
+	  * {@link #removeProductFromAllCategories(long)}.
+	  */
+	 @Modifying
+	 @Query(value = "UPDATE category SET category_version = category_version + 1, category_modified = :modified "
+	 		+ "WHERE category_id IN (SELECT link.category_id FROM category_product link WHERE link.product_id = :productId)", nativeQuery = true)
+	 public int touchCategoriesOfProduct(@Param("productId") long productId,
+			 @Param("modified") Timestamp modified);
+
+	 @Query(SUMMARY_SELECT + SUMMARY_GROUP_BY + " ORDER BY category.categoryId")
+	 public List<CategorySummary> findCategorySummaries(Pageable pageable);
+
+	 @Query("SELECT product FROM Category category JOIN category.products product "
+	 		+ "WHERE category.categoryId = :categoryId ORDER BY product.productId")
+	 public List<Product> findProductsByCategoryId(@Param("categoryId") long categoryId);
+
+	 /**
+	  * The products of several categories in one query, as
+	  * {@code [categoryId, product]} pairs.
+	  */
+	 @Query("SELECT category.categoryId, product FROM Category category JOIN category.products product "
+	 		+ "WHERE category.categoryId IN :categoryIds ORDER BY product.productId")
+	 public List<Object[]> findProductsByCategoryIds(@Param("categoryIds") Collection<Long> categoryIds);
+
+	 /**
+	  * Links the given products to the category with one INSERT ... SELECT,
+	  * skipping the pairs already in category_product. The category's product
+	  * collection is never loaded. Returns the number of rows inserted.
+	  */
+	 @Modifying
+	 @Query(value = "INSERT INTO category_product (category_id, product_id) "
+	 		+ "SELECT category.category_id, product.product_id FROM category category, product product "
+	 		+ "WHERE category.category_id = :categoryId AND product.product_id IN (:productIds) "
+	 		+ "AND NOT EXISTS (SELECT 1 FROM category_product link "
+	 		+ "WHERE link.category_id = category.category_id AND link.product_id = product.product_id)", nativeQuery = true)
+	 public int addProductsToCategory(@Param("categoryId") long categoryId,
+			 @Param("productIds") Collection<Long> productIds);
+
+	 /**
+	  * The subset of {@code productIds} linked to the category, read from the
+	  * join table in one query.
+	  */
+	 @Query("SELECT product.productId FROM Category category JOIN category.products product "
+	 		+ "WHERE category.categoryId = :categoryId AND product.productId IN :productIds")
+	 public List<Long> findProductIdsInCategory(@Param("categoryId") long categoryId,
+			 @Param("productIds") Collection<Long> productIds);
+
+	 /**
+	  * Unlinks the given products from the category with a single DELETE on
+	  * category_product. Returns the number of rows removed.
+	  */
+	 @Modifying
+	 @Query(value = "DELETE FROM category_product WHERE category_id = :categoryId AND product_id IN (:productIds)", nativeQuery = true)
+	 public int removeProductsFromCategory(@Param("categoryId") long categoryId,
+			 @Param("productIds") Collection<Long> productIds);
+
+	 /**
+	  * Removes the product from every category it belongs to with one DELETE
+	  * on category_product (served by the product_id index), so no category
+	  * or product set has to be loaded before the product is deleted.
+	  */
+	 @Modifying
+	 @Query(value = "DELETE FROM category_product WHERE product_id = :productId", nativeQuery = true)
+	 public int removeProductFromAllCategories(@Param("productId") long productId);
+
 }
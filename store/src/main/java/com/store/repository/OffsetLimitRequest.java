@@ -0,0 +1,109 @@
+package com.store.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * A {@link Pageable} addressed by a raw row offset and a limit instead of a
+ * page number, so that arbitrary windows (e.g. rows 7 to 19) can be pushed
+ * into the SQL query as LIMIT/OFFSET.
+ */
+public class OffsetLimitRequest implements Pageable {
+
+	private final int offset;
+	private final int limit;
+	private final Sort sort;
+
+	public OffsetLimitRequest(int offset, int limit) {
+		this(offset, limit, null);
+	}
+
+	public OffsetLimitRequest(int offset, int limit, Sort sort) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("offset must not be negative");
+		}
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+		this.offset = offset;
+		this.limit = limit;
+		this.sort = sort;
+	}
+
+	@Override
+	public int getPageNumber() {
+		return offset / limit;
+	}
+
+	@Override
+	public int getPageSize() {
+		return limit;
+	}
+
+	@Override
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public Sort getSort() {
+		return sort;
+	}
+
+	@Override
+	public Pageable next() {
+		return new OffsetLimitRequest(offset + limit, limit, sort);
+	}
+
+	@Override
+	public Pageable previousOrFirst() {
+		return hasPrevious() ? new OffsetLimitRequest(Math.max(offset - limit,
+				0), limit, sort) : first();
+	}
+
+	@Override
+	public Pageable first() {
+		return new OffsetLimitRequest(0, limit, sort);
+	}
+
+	@Override
+	public boolean hasPrevious() {
+		return offset > 0;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + limit;
+		result = prime * result + offset;
+		result = prime * result + ((sort == null) ? 0 : sort.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		OffsetLimitRequest other = (OffsetLimitRequest) obj;
+		if (limit != other.limit || offset != other.offset)
+			return false;
+		if (sort == null) {
+			if (other.sort != null)
+				return false;
+		} else if (!sort.equals(other.sort))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "OffsetLimitRequest [offset=" + offset + ", limit=" + limit
+				+ ", sort=" + sort + "]";
+	}
+
+}
@@ -1,18 +1,103 @@
 package com.store.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.store.config.CacheConfig;
+import com.store.domain.EntityVersion;
 import com.store.domain.Product;
 import com.store.exception.ProductNotFoundException;
 
 @Repository("productRepository")
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>,
+		ProductRepositoryCustom {
 
 	public Product findByProductSku(String productSku)
 			throws ProductNotFoundException;
 
+	/**
+	 * Resolves a SKU to the product id. Cached: SKU lookups then go through
+	 * the id caches, so an update addressed by id only never leaves a stale
+	 * product behind a SKU key.
+	 */
+	@Cacheable(cacheNames = CacheConfig.PRODUCT_IDS_BY_SKU, unless = "#result == null")
+	@Query("SELECT product.productId FROM Product product WHERE product.productSku = :productSku")
+	public Long findIdBySku(@Param("productSku") String productSku);
+
+	@Cacheable(cacheNames = CacheConfig.PRODUCT_VERSIONS, unless = "#result == null")
+	@Query("SELECT new com.store.domain.EntityVersion(product.productVersion, product.productModified) "
+			+ "FROM Product product WHERE product.productId = :productId")
+	public EntityVersion findVersionById(@Param("productId") long productId);
+
 	public Product findByProductName(String productName)
 			throws ProductNotFoundException;
 
+	/**
+	 * Keyset page: the products whose id is greater than {@code after}, in id
+	 * order. Only {@code pageable.getPageSize()} rows are read.
+	 */
+	@Query("SELECT product FROM Product product WHERE product.productId > :after ORDER BY product.productId")
+	public List<Product> findProductsAfter(@Param("after") long after,
+			Pageable pageable);
+
+	/**
+	 * Offset page in id order, used for the legacy first/last window.
+	 */
+	@Query("SELECT product FROM Product product ORDER BY product.productId")
+	public List<Product> findProductsOrderedById(Pageable pageable);
+
+	/**
+	 * Streams the whole catalog in id order through a JDBC cursor. Must be
+	 * consumed (and closed) inside a transaction; entities are read-only.
+	 */
+	@QueryHints({ @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+			@QueryHint(name = "org.hibernate.readOnly", value = "true") })
+	@Query("SELECT product FROM Product product ORDER BY product.productId")
+	public Stream<Product> streamAllProducts();
+
+	/**
+	 * Streams the id and SKU of every product as {@code [productId,
+	 * productSku]} pairs without hydrating entities. Must be consumed (and
+	 * closed) inside a transaction.
+	 */
+	@QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+	@Query("SELECT product.productId, product.productSku FROM Product product")
+	public Stream<Object[]> streamProductKeys();
+
+	/**
+	 * Streams the id, SKU and name of every product as {@code [productId,
+	 * productSku, productName]} without hydrating entities. Must be consumed
+	 * (and closed) inside a transaction.
+	 */
+	@QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+	@Query("SELECT product.productId, product.productSku, product.productName FROM Product product")
+	public Stream<Object[]> streamProductNames();
+
+	/**
+	 * The subset of {@code skus} already present in the store, resolved with
+	 * a single IN query.
+	 */
+	@Query("SELECT product.productSku FROM Product product WHERE product.productSku IN :skus")
+	public List<String> findExistingProductSkus(
+			@Param("skus") Collection<String> skus);
+
+	/**
+	 * The subset of {@code productIds} present in the store, resolved with a
+	 * single IN query.
+	 */
+	@Query("SELECT product.productId FROM Product product WHERE product.productId IN :productIds")
+	public List<Long> findExistingProductIds(
+			@Param("productIds") Collection<Long> productIds);
+
 }
@@ -0,0 +1,34 @@
+package com.store.repository;
+
+import java.time.Instant;
+
+import org.springframework.cache.annotation.Cacheable;
+
+import com.store.config.CacheConfig;
+import com.store.domain.Product;
+
+/**
+ * Product queries that can not be declared with {@code @Query}; implemented by
+ * {@link ProductRepositoryImpl}.
+ */
+public interface ProductRepositoryCustom {
+
+	/**
+	 * A detached copy of the product, cached by id, for the read endpoints.
+	 * Writes load the managed entity with {@code findOne} instead: merging
+	 * into a cached instance would show uncommitted state to every reader, and
+	 * keep it after a rollback.
+	 */
+	@Cacheable(cacheNames = CacheConfig.PRODUCTS_BY_ID, unless = "#result == null")
+	public Product findDetachedById(long productId);
+
+	/**
+	 * Applies the non-null fields to the product with one UPDATE, guarded by
+	 * the version the client read. The version is bumped and the modification
+	 * instant set to {@code modified} in the same statement. Returns 0 when
+	 * the product does not exist or has been changed since {@code version}.
+	 */
+	public int patchProduct(long productId, long version, String productSku,
+			String productName, Instant modified);
+
+}
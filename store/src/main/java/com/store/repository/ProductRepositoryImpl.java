@@ -0,0 +1,54 @@
+package com.store.repository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+import com.store.domain.Product;
+
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public Product findDetachedById(long productId) {
+		Product product = entityManager.find(Product.class, productId);
+		return product != null ? new Product(product) : null;
+	}
+
+	@Override
+	public int patchProduct(long productId, long version, String productSku,
+			String productName, Instant modified) {
+
+		// only the supplied columns are written, so the statement never
+		// overwrites a column another request changed
+		StringBuilder jpql = new StringBuilder(
+				"UPDATE Product product SET product.productVersion = product.productVersion + 1, "
+						+ "product.productModified = :modified, product.productLastUpdated = :lastUpdated");
+		if (productSku != null) {
+			jpql.append(", product.productSku = :productSku");
+		}
+		if (productName != null) {
+			jpql.append(", product.productName = :productName");
+		}
+		jpql.append(" WHERE product.productId = :productId AND product.productVersion = :version");
+
+		Query query = entityManager.createQuery(jpql.toString())
+				.setParameter("modified", modified)
+				.setParameter("lastUpdated", LocalDate.now())
+				.setParameter("productId", productId)
+				.setParameter("version", version);
+		if (productSku != null) {
+			query.setParameter("productSku", productSku);
+		}
+		if (productName != null) {
+			query.setParameter("productName", productName);
+		}
+		return query.executeUpdate();
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.store.rest.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.store.async.RepositoryExecutor;
+import com.store.datasource.DataSourceRoute;
+import com.store.domain.CatalogChange;
+import com.store.event.CatalogChangeOutbox;
+import com.store.repository.CatalogChangeRepository;
+import com.store.repository.OffsetLimitRequest;
+import com.store.rest.representation.CatalogChangeFeedRepresentation;
+import com.store.stream.CatalogChangeBroadcaster;
+
+/**
+ * The change feed: the product and category changes recorded by the
+ * {@link CatalogChangeOutbox}, in the order of their sequence numbers, for
+ * consumers keeping a copy of the catalog in sync without re-reading it.
+ * Polled in batches, or pushed live by the {@link CatalogChangeBroadcaster}.
+ * The changes commit in the order of their numbers, whichever instance of
+ * the application makes them, so a consumer never skips one.
+ */
+@RestController
+@RequestMapping("/store")
+public class CatalogChangeController {
+
+	public static final String EVENT_STREAM_VALUE = "text/event-stream";
+
+	@Autowired
+	@Qualifier("catalogChangeRepository")
+	private CatalogChangeRepository catalogChangeRepository;
+
+	@Autowired
+	private CatalogChangeOutbox catalogChangeOutbox;
+
+	@Autowired
+	private CatalogChangeBroadcaster catalogChangeBroadcaster;
+
+	@Autowired
+	private RepositoryExecutor repositoryExecutor;
+
+	@Value("${store.changes.page-size:100}")
+	private int defaultPageSize = 100;
+
+	@Value("${store.changes.max-page-size:1000}")
+	private int maxPageSize = 1000;
+
+	/**
+	 * Up to {@code limit} changes numbered above {@code after}, oldest first.
+	 * A consumer starts from 0 and passes the {@code next} of each batch to
+	 * the following request. Read from the primary even with a replica, whose
+	 * lag could otherwise leave a gap behind the consumer's position.
+	 */
+	@RequestMapping(value = "/changes", method = RequestMethod.GET)
+	public CompletableFuture<CatalogChangeFeedRepresentation> getChanges(
+			@RequestParam(required = false) Long after,
+			@RequestParam(required = false) Integer limit) {
+		long from = (after != null && after > 0) ? after : 0L;
+		int pageSize = (limit != null && limit > 0) ? Math.min(limit,
+				maxPageSize) : defaultPageSize;
+
+		return repositoryExecutor.submitReadOnly(() -> {
+			DataSourceRoute previous = DataSourceRoute
+					.bind(DataSourceRoute.PRIMARY);
+			try {
+				// one more than asked, to tell whether another batch follows
+				List<CatalogChange> changes = catalogChangeRepository
+						.findChanges(from, catalogChangeOutbox.visibleUpTo(),
+								new OffsetLimitRequest(0, pageSize + 1));
+				boolean more = changes.size() > pageSize;
+				if (more) {
+					changes = new ArrayList<CatalogChange>(changes.subList(0,
+							pageSize));
+				}
+				long next = changes.isEmpty() ? from : changes.get(
+						changes.size() - 1).getSequence();
+				return new CatalogChangeFeedRepresentation(changes, next, more);
+			} finally {
+				DataSourceRoute.restore(previous);
+			}
+		});
+	}
+
+	/**
+	 * Streams the changes as Server-Sent Events as they commit, each with its
+	 * sequence number as event id. A consumer resumes with {@code after}, or
+	 * with the {@code Last-Event-ID} header an {@code EventSource} sends when
+	 * it reconnects, which wins over it.
+	 */
+	@RequestMapping(value = "/changes/stream", method = RequestMethod.GET, produces = EVENT_STREAM_VALUE)
+	public SseEmitter streamChanges(
+			@RequestParam(required = false) Long after,
+			@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+		Long from = after;
+		if (lastEventId != null) {
+			try {
+				from = Long.valueOf(lastEventId.trim());
+			} catch (NumberFormatException e) {
+				// not one of ours, keep after
+			}
+		}
+		if (from != null && from < 0) {
+			from = 0L;
+		}
+		return catalogChangeBroadcaster.subscribe(from);
+	}
+
+}
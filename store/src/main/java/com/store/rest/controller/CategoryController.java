@@ -5,15 +5,26 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
-import javax.transaction.Transactional;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -23,16 +34,28 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.store.async.RepositoryExecutor;
+import com.store.cache.CategoryCountCache;
+import com.store.datasource.ReadsFromPrimary;
 import com.store.domain.Category;
+import com.store.domain.CategorySummary;
+import com.store.domain.EntityVersion;
 import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
 import com.store.exception.CategoryNotFoundException;
 import com.store.exception.ProductNotFoundException;
 import com.store.repository.CategoryRepository;
+import com.store.repository.OffsetLimitRequest;
 import com.store.repository.ProductRepository;
 import com.store.rest.representation.CategoryCollectionRepresentation;
+import com.store.util.FieldSelection;
 
+/**
+ * Category endpoints. Their repository work runs on the
+ * {@link RepositoryExecutor}, in a transaction of its own, and is answered
+ * asynchronously.
+ */
 @RestController
-@Transactional
 @RequestMapping("/store")
 public class CategoryController {
 
@@ -44,198 +67,353 @@ public class CategoryController {
 	@Qualifier("productRepository")
 	private ProductRepository productRepository;
 
-	@ApiOperation(value = "get Category By Id", notes = "Returns a single category", response = Category.class)
+	@Autowired
+	private CategoryCountCache categoryCountCache;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private RepositoryExecutor repositoryExecutor;
+
+	@Value("${store.categories.page-size:50}")
+	private int defaultPageSize = 50;
+
+	@Value("${store.categories.max-page-size:200}")
+	private int maxPageSize = 200;
+
+	@ApiOperation(value = "get Category By Id", notes = "Returns a single category with its product count; "
+			+ "use fields to select columns and expand=products to embed the products", response = CategorySummary.class)
 	@RequestMapping(value = "/category/id/{id}", method = RequestMethod.GET)
+	@ReadsFromPrimary
 	@ApiResponses(value = {
-			@ApiResponse(code = 200, message = "Success", response = Category.class),
+			@ApiResponse(code = 200, message = "Success", response = CategorySummary.class),
 			@ApiResponse(code = 401, message = "Unauthorized"),
 			@ApiResponse(code = 403, message = "Forbidden"),
 			@ApiResponse(code = 404, message = "Not Found"),
 			@ApiResponse(code = 500, message = "Failure") })
-	public Category getCategoryById(@ApiParam(value = "ID of Category to return", required = true) 
-									@PathVariable("id") long categoryId) {
+	public CompletableFuture<ResponseEntity<CategorySummary>> getCategoryById(@ApiParam(value = "ID of Category to return", required = true) 
+									@PathVariable("id") long categoryId,
+			@ApiParam(value = "comma separated fields to return", required = false) @RequestParam(required = false) String fields,
+			@ApiParam(value = "associations to embed (products)", required = false) @RequestParam(required = false) String expand,
+			HttpServletRequest request) {
+
+		return repositoryExecutor.submitReadOnly(() -> {
+			EntityVersion version = categoryRepository
+					.findVersionById(categoryId);
+			if (version == null) {
+				throw new CategoryNotFoundException("the category id "
+						+ categoryId + " is not existed");
+			}
 
-		Category category = categoryRepository.findOne(categoryId);
-		if (category == null) {
-			throw new CategoryNotFoundException("the category id " + categoryId
-					+ " is not existed");
-		}
-		return category;
+			return ConditionalResponses.ifModified(request, version,
+					eTag(request, version, fields, expand), () -> {
+						CategorySummary category = categoryRepository
+								.findCategorySummaryById(categoryId);
+						if (category == null) {
+							throw new CategoryNotFoundException(
+									"the category id " + categoryId
+											+ " is not existed");
+						}
+						return shape(category,
+								FieldSelection.parse(fields, expand));
+					});
+		});
 	}
 
 	@RequestMapping(value = "/category/name/{name}", method = RequestMethod.GET)
-	public Category getCategoryByName(@PathVariable("name") String CategoryName) {
-
-		Category category = categoryRepository
-				.getCategoryByCategoryName(CategoryName);
-		if (category == null) {
-			throw new CategoryNotFoundException("the category name "
-					+ CategoryName + " is not existed");
-		}
+	@ReadsFromPrimary
+	public CompletableFuture<ResponseEntity<CategorySummary>> getCategoryByName(@PathVariable("name") String CategoryName,
+			@RequestParam(required = false) String fields,
+			@RequestParam(required = false) String expand,
+			HttpServletRequest request) {
+
+		return repositoryExecutor.submitReadOnly(() -> {
+			EntityVersion version = categoryRepository
+					.findVersionByName(CategoryName);
+			if (version == null) {
+				throw new CategoryNotFoundException("the category name "
+						+ CategoryName + " is not existed");
+			}
 
-		return category;
+			return ConditionalResponses.ifModified(request, version,
+					eTag(request, version, fields, expand), () -> {
+						CategorySummary category = categoryRepository
+								.findCategorySummaryByName(CategoryName);
+						if (category == null) {
+							throw new CategoryNotFoundException(
+									"the category name " + CategoryName
+											+ " is not existed");
+						}
+						return shape(category,
+								FieldSelection.parse(fields, expand));
+					});
+		});
 	}
 	
-	@ApiOperation(value = "get all the categories", notes = "Returns all the categories", response = CategoryCollectionRepresentation.class)
+	@ApiOperation(value = "get all the categories", notes = "Returns a page of the categories", response = CategoryCollectionRepresentation.class)
 	@RequestMapping(value = "/categories", method = RequestMethod.GET)
-	public CategoryCollectionRepresentation getAllCategories(
+	public CompletableFuture<CategoryCollectionRepresentation> getAllCategories(
 			@ApiParam(value = "first Category to return", required = false) @RequestParam(required = false) Integer first,
-			@ApiParam(value = "last Category to return", required = false) @RequestParam(required = false) Integer last) {
+			@ApiParam(value = "last Category to return", required = false) @RequestParam(required = false) Integer last,
+			@ApiParam(value = "number of Categories to skip", required = false) @RequestParam(required = false) Integer offset,
+			@ApiParam(value = "maximum number of Categories to return", required = false) @RequestParam(required = false) Integer limit,
+			@ApiParam(value = "comma separated fields to return", required = false) @RequestParam(required = false) String fields,
+			@ApiParam(value = "associations to embed (products)", required = false) @RequestParam(required = false) String expand) {
+		return repositoryExecutor.submitReadOnly(() -> {
+			int pageOffset = (offset != null && offset > 0) ? offset : 0;
+			int pageSize = (limit != null && limit > 0) ? Math.min(limit,
+					maxPageSize) : defaultPageSize;
+
+			if (first != null && first > 0) {
+				pageOffset = first - 1;
+				if (last != null && !(first > last)) {
+					pageSize = Math.min(last - first + 1, maxPageSize);
+				}
+			}
 
-		List<Category> categories = categoryRepository.findAll();
+			List<CategorySummary> categories = categoryRepository
+					.findCategorySummaries(new OffsetLimitRequest(pageOffset,
+							pageSize));
 
-		if (categories == null) {
-			throw new CategoryNotFoundException(
-					"no Categories are available in the store");
-		}
+			if (categories == null) {
+				throw new CategoryNotFoundException(
+						"no Categories are available in the store");
+			}
 
-		if (first != null
-				&& ((last != null && !(first > last) && last < categories
-						.size()))) {
-			return new CategoryCollectionRepresentation(categories.subList(
-					first - 1, last));
-		} else if (first != null && first <= categories.size()
-				&& (last == null || last > categories.size())) {
-			return new CategoryCollectionRepresentation(categories.subList(
-					first - 1, categories.size()));
-		} else {
-			return new CategoryCollectionRepresentation(categories);
-		}
+			FieldSelection selection = FieldSelection.parse(fields, expand);
+			if (selection.expands("products") && !categories.isEmpty()) {
+				Map<Long, CategorySummary> byId = new HashMap<Long, CategorySummary>();
+				for (CategorySummary category : categories) {
+					category.setProducts(new ArrayList<Product>());
+					byId.put(category.getCategoryId(), category);
+				}
+				for (Object[] row : categoryRepository
+						.findProductsByCategoryIds(byId.keySet())) {
+					byId.get(row[0]).getProducts().add((Product) row[1]);
+				}
+			}
+			for (CategorySummary category : categories) {
+				category.restrictTo(selection);
+			}
+
+			return new CategoryCollectionRepresentation(categories,
+					categoryCountCache.count(), pageOffset, pageSize);
+		});
 	}
 
 	@RequestMapping(value = "/categories", method = RequestMethod.POST)
-	public ResponseEntity<Category> createNewCategory(
+	public CompletableFuture<ResponseEntity<Category>> createNewCategory(
 			@RequestBody @Valid Category category) {
+		return repositoryExecutor.submit(() -> {
+			if (category.getCategoryCreated() == null) {
+				category.setCategoryCreated(LocalDate.now());
+			}
 
-		if (category.getCategoryCreated() == null) {
-			category.setCategoryCreated(LocalDate.now());
-		}
-
-		if (category.getCategoryUpdated() == null) {
-			category.setCategoryUpdated(LocalDate.now());
-		}
-
-		categoryRepository.save(category);
+			if (category.getCategoryUpdated() == null) {
+				category.setCategoryUpdated(LocalDate.now());
+			}
 
-		return new ResponseEntity<Category>(category, null, HttpStatus.CREATED);
+			categoryRepository.save(category);
+			eventPublisher.publishEvent(CatalogChangeEvent.categoryCreated(category));
 
+			return new ResponseEntity<Category>(category, null, HttpStatus.CREATED);
+		});
 	}
 
 	@RequestMapping(value = "/category/{id}", method = RequestMethod.DELETE)
-	public ResponseEntity<Category> deleteCategory(
+	public CompletableFuture<ResponseEntity<Category>> deleteCategory(
 			@PathVariable("id") long categoryId) {
+		return repositoryExecutor.submit(() -> {
+			Category deletedCategory = categoryRepository.findOne(categoryId);
 
-		Category deletedCategory = categoryRepository.findOne(categoryId);
-
-		if (deletedCategory == null) {
-			throw new CategoryNotFoundException("the category id " + categoryId
-					+ " is not existed to be deleted");
-		}
+			if (deletedCategory == null) {
+				throw new CategoryNotFoundException("the category id " + categoryId
+						+ " is not existed to be deleted");
+			}
 		
-		deletedCategory.setProducts(null);
+			deletedCategory.setProducts(null);
 		
-		categoryRepository.delete(deletedCategory);
-
-		return new ResponseEntity<Category>(HttpStatus.NO_CONTENT);
+			categoryRepository.delete(deletedCategory);
+			eventPublisher.publishEvent(CatalogChangeEvent
+					.categoryDeleted(deletedCategory));
 
+			return new ResponseEntity<Category>(HttpStatus.NO_CONTENT);
+		});
 	}
 
+	/**
+	 * Links existing products to the category with set-based SQL, and answers
+	 * with the category and its products, as it always has. The answer is an
+	 * unmanaged copy whose products are read with one join: the category's
+	 * own product set is never loaded, nor rewritten at flush.
+	 */
 	@RequestMapping(value = "/category/{categoryId}/products/{productIds}", method = RequestMethod.PUT)
-	public ResponseEntity<Category> addExistedProductToCategory(
+	public CompletableFuture<ResponseEntity<Category>> addExistedProductToCategory(
 			@PathVariable("categoryId") long catId,
 			@PathVariable("productIds") List<String> productIds) {
-
-		Category foundCategory = categoryRepository.findOne(catId);
-		if (foundCategory == null) {
-			throw new CategoryNotFoundException("the category id " + catId
-					+ " is not existed");
-		}
-
-		Set<Product> foundCategoryProducts = foundCategory.getProducts();
-
-		for (String productId : productIds) {
-			Product foundProduct = productRepository.findOne(Long
-					.parseLong(productId));
-			if (foundProduct == null) {
-				throw new ProductNotFoundException("the product id "
-						+ productId + " is not existed");
+		return repositoryExecutor.submit(() -> {
+			Category foundCategory = categoryRepository.findOne(catId);
+			if (foundCategory == null) {
+				throw new CategoryNotFoundException("the category id " + catId
+						+ " is not existed");
 			}
-			foundCategoryProducts.add(foundProduct);
-		}
 
-		foundCategory.setProducts(foundCategoryProducts);
+			Set<Long> ids = toProductIds(productIds);
 
-		return new ResponseEntity<Category>(foundCategory, null, HttpStatus.OK);
+			Set<Long> missingIds = new LinkedHashSet<Long>(ids);
+			missingIds.removeAll(productRepository.findExistingProductIds(ids));
+			if (!missingIds.isEmpty()) {
+				throw new ProductNotFoundException(describeProductIds(missingIds)
+						+ " not existed");
+			}
 
+			Set<Long> attachedIds = new LinkedHashSet<Long>(ids);
+			attachedIds.removeAll(categoryRepository.findProductIdsInCategory(
+					catId, ids));
+			if (!attachedIds.isEmpty()
+					&& categoryRepository.addProductsToCategory(catId,
+							attachedIds) > 0) {
+				categoryRepository.touchCategory(catId,
+						Timestamp.from(Instant.now()));
+			}
+			eventPublisher.publishEvent(CatalogChangeEvent
+					.categoryUpdated(foundCategory));
+
+			Category attached = new Category(foundCategory.getCategoryName(),
+					new LinkedHashSet<Product>(categoryRepository
+							.findProductsByCategoryId(catId)),
+					foundCategory.getCategoryCreated());
+			attached.setCategoryId(catId);
+			attached.setCategoryUpdated(foundCategory.getCategoryUpdated());
+			return new ResponseEntity<Category>(attached, null, HttpStatus.OK);
+		});
 	}
 
 	@RequestMapping(value = "/category/{categoryId}/products", method = RequestMethod.PUT)
-	public ResponseEntity<Category> addNewProductsToCategory(
+	public CompletableFuture<ResponseEntity<Category>> addNewProductsToCategory(
 			@PathVariable("categoryId") long catId,
 			@RequestBody List<Product> products) {
+		return repositoryExecutor.submit(() -> {
+			Category foundCategory = categoryRepository.findOne(catId);
+			if (foundCategory == null) {
+				throw new CategoryNotFoundException("the category id " + catId
+						+ " is not existed");
+			}
 
-		Category foundCategory = categoryRepository.findOne(catId);
-		if (foundCategory == null) {
-			throw new CategoryNotFoundException("the category id " + catId
-					+ " is not existed");
-		}
-
-		if (products == null) {
-			return new ResponseEntity<Category>(foundCategory, null);
-		}
-
-		Set<Product> foundCategoryProducts = foundCategory.getProducts();
-		for (Product product : products) {
-			if (product.getProductCreated() == null) {
-				product.setProductCreated(LocalDate.now());
+			if (products == null) {
+				return new ResponseEntity<Category>(foundCategory, null);
 			}
 
-			if (product.getProductLastUpdated() == null) {
-				product.setProductLastUpdated(LocalDate.now());
+			Set<Product> foundCategoryProducts = foundCategory.getProducts();
+			for (Product product : products) {
+				if (product.getProductCreated() == null) {
+					product.setProductCreated(LocalDate.now());
+				}
+
+				if (product.getProductLastUpdated() == null) {
+					product.setProductLastUpdated(LocalDate.now());
+				}
+				productRepository.save(product);
+				foundCategoryProducts.add(product);
 			}
-			foundCategoryProducts.add(product);
-		}
 
-		foundCategory.setProducts(foundCategoryProducts);
+			foundCategory.setProducts(foundCategoryProducts);
+			categoryRepository.saveAndFlush(foundCategory);
 
-		return new ResponseEntity<Category>(foundCategory, null, HttpStatus.OK);
+			// the products have their ids now, so listeners can index them
+			for (Product product : products) {
+				eventPublisher.publishEvent(CatalogChangeEvent
+						.productCreated(product));
+			}
+			eventPublisher.publishEvent(CatalogChangeEvent
+					.categoryUpdated(foundCategory));
 
+			return new ResponseEntity<Category>(foundCategory, null, HttpStatus.OK);
+		});
 	}
 
 	@RequestMapping(value = "/category/{categoryId}/products/{productIds}", method = RequestMethod.DELETE)
-	public ResponseEntity<Category> deleteProductsFromCategory(
+	public CompletableFuture<ResponseEntity<Category>> deleteProductsFromCategory(
 			@PathVariable("categoryId") long categoryId,
 			@PathVariable("productIds") List<String> productIds) {
-
-		Category foundCategory = categoryRepository.findOne(categoryId);
-		if (foundCategory == null) {
-			throw new CategoryNotFoundException("the category id " + categoryId
-					+ " is not existed");
-		}
-		Set<Product> categoriesProducts = foundCategory.getProducts();
-
-		for (String productId : productIds) {
-
-			long prdId = Long.parseLong(productId);
-			Product product = productRepository.findOne(prdId);
-			if (product == null) {
-				throw new ProductNotFoundException("the product id "
-						+ productId + " is not existed in the store");
+		return repositoryExecutor.submit(() -> {
+			Category foundCategory = categoryRepository.findOne(categoryId);
+			if (foundCategory == null) {
+				throw new CategoryNotFoundException("the category id " + categoryId
+						+ " is not existed");
 			}
-			if (!categoriesProducts.contains(product)) {
-				throw new ProductNotFoundException("the product id "
-						+ productId
-						+ " is not existed in the category whose name "
+
+			Set<Long> ids = toProductIds(productIds);
+
+			Set<Long> nonMemberIds = new LinkedHashSet<Long>(ids);
+			nonMemberIds.removeAll(categoryRepository.findProductIdsInCategory(
+					categoryId, ids));
+			if (!nonMemberIds.isEmpty()) {
+				Set<Long> missingIds = new LinkedHashSet<Long>(nonMemberIds);
+				missingIds.removeAll(productRepository
+						.findExistingProductIds(nonMemberIds));
+				if (!missingIds.isEmpty()) {
+					throw new ProductNotFoundException(
+							describeProductIds(missingIds)
+									+ " not existed in the store");
+				}
+				throw new ProductNotFoundException(describeProductIds(nonMemberIds)
+						+ " not existed in the category whose name "
 						+ foundCategory.getCategoryName());
 			}
 
-			categoriesProducts.remove(product);
-		}
+			categoryRepository.removeProductsFromCategory(categoryId, ids);
+			categoryRepository.touchCategory(categoryId,
+					Timestamp.from(Instant.now()));
+			eventPublisher.publishEvent(CatalogChangeEvent
+					.categoryUpdated(foundCategory));
+
+			return new ResponseEntity<Category>(HttpStatus.NO_CONTENT);
+		});
+	}
+
+	/**
+	 * ETag of the category version for this representation. The version is
+	 * read from a cache, so a 304 costs no query at all.
+	 */
+	private static String eTag(HttpServletRequest request,
+			EntityVersion version, String fields, String expand) {
+		return version.eTag(request.getHeader(HttpHeaders.ACCEPT), fields,
+				expand);
+	}
 
-		foundCategory.setProducts(categoriesProducts);
+	private CategorySummary shape(CategorySummary cached,
+			FieldSelection selection) {
+		CategorySummary category = new CategorySummary(cached);
+		if (selection.expands("products")) {
+			category.setProducts(categoryRepository
+					.findProductsByCategoryId(category.getCategoryId()));
+		}
+		return category.restrictTo(selection);
+	}
 
-		return new ResponseEntity<Category>(HttpStatus.NO_CONTENT);
+	private static Set<Long> toProductIds(List<String> productIds) {
+		Set<Long> ids = new LinkedHashSet<Long>();
+		for (String productId : productIds) {
+			ids.add(Long.parseLong(productId.trim()));
+		}
+		return ids;
+	}
 
+	private static String describeProductIds(Set<Long> ids) {
+		if (ids.size() == 1) {
+			return "the product id " + ids.iterator().next() + " is";
+		}
+		StringBuilder description = new StringBuilder("the product ids ");
+		Iterator<Long> iterator = ids.iterator();
+		while (iterator.hasNext()) {
+			description.append(iterator.next());
+			if (iterator.hasNext()) {
+				description.append(',');
+			}
+		}
+		return description.append(" are").toString();
 	}
 
 }
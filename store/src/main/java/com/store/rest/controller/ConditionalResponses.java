@@ -0,0 +1,45 @@
+package com.store.rest.controller;
+
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.store.domain.EntityVersion;
+
+/**
+ * Conditional GET answers built from an {@link EntityVersion}. The outcome is
+ * returned as a {@link ResponseEntity} carrying its own validators instead of
+ * being written to the servlet response, so it can be decided on a
+ * {@code RepositoryExecutor} thread and rendered after the async dispatch.
+ */
+final class ConditionalResponses {
+
+	private ConditionalResponses() {
+
+	}
+
+	/**
+	 * 304 with the validators when the client's copy is current, otherwise
+	 * 200 with the body, which is only loaded in that case.
+	 */
+	static <T> ResponseEntity<T> ifModified(HttpServletRequest request,
+			EntityVersion version, String eTag, Supplier<T> body) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag(eTag);
+		if (version.getModifiedMillis() >= 0) {
+			headers.setLastModified(version.getModifiedMillis());
+		}
+		// no response given, so only the request headers are evaluated
+		if (new ServletWebRequest(request).checkNotModified(eTag,
+				version.getModifiedMillis())) {
+			return new ResponseEntity<T>(headers, HttpStatus.NOT_MODIFIED);
+		}
+		return new ResponseEntity<T>(body.get(), headers, HttpStatus.OK);
+	}
+
+}
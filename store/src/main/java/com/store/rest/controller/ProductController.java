@@ -1,36 +1,89 @@
 package com.store.rest.controller;
 
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-
-import javax.transaction.Transactional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.Validator;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.store.domain.Category;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.store.async.RepositoryExecutor;
+import com.store.cache.ProductLookupGuard;
+import com.store.datasource.ReadsFromPrimary;
+import com.store.domain.EntityVersion;
 import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
+import com.store.event.CatalogChangeEvent.EntityType;
+import com.store.exception.PreconditionRequiredException;
 import com.store.exception.ProductNotFoundException;
 import com.store.repository.CategoryRepository;
+import com.store.repository.OffsetLimitRequest;
 import com.store.repository.ProductRepository;
+import com.store.rest.representation.ProductBulkResultRepresentation;
 import com.store.rest.representation.ProductCollectionRepresentation;
-
+import com.store.rest.representation.ProductPatchRepresentation;
+import com.store.rest.representation.ProductSearchResultRepresentation;
+import com.store.rest.representation.ProductSuggestionRepresentation;
+import com.store.search.ProductSearchIndex;
+import com.store.util.KeysetCursor;
+
+/**
+ * Product endpoints. The repository work of every endpoint but the export runs
+ * on the {@link RepositoryExecutor}, in a transaction of its own, and is
+ * answered asynchronously. Search and suggestions need no repository work and
+ * are answered directly.
+ */
 @RestController
-@Transactional
 @RequestMapping("/store")
 public class ProductController {
 
+	public static final String NDJSON_VALUE = "application/x-ndjson";
+
+	private static final Validator VALIDATOR = Validation
+			.buildDefaultValidatorFactory().getValidator();
+
 	@Autowired
 	@Qualifier("productRepository")
 	private ProductRepository productRepository;
@@ -39,159 +92,545 @@ public class ProductController {
 	@Qualifier("categoryRepository")
 	private CategoryRepository categoryRepository;
 
+	@Value("${store.products.page-size:100}")
+	private int defaultPageSize = 100;
+
+	@Value("${store.products.max-page-size:1000}")
+	private int maxPageSize = 1000;
+
+	@Value("${store.products.search.page-size:20}")
+	private int defaultSearchPageSize = 20;
+
+	@Value("${store.products.search.max-page-size:100}")
+	private int maxSearchPageSize = 100;
+
+	@Value("${store.products.suggest.limit:10}")
+	private int defaultSuggestions = 10;
+
+	@Value("${store.products.suggest.max-limit:50}")
+	private int maxSuggestions = 50;
+
+	@Value("${store.products.export-clear-interval:500}")
+	private int exportClearInterval = 500;
+
+	@Value("${store.products.bulk-batch-size:50}")
+	private int bulkBatchSize = 50;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private ProductLookupGuard productLookupGuard;
+
+	@Autowired
+	private ProductSearchIndex productSearchIndex;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private RepositoryExecutor repositoryExecutor;
+
+	/**
+	 * Answers {@code If-None-Match} and {@code If-Modified-Since} with 304
+	 * from the product's cached version, before the entity is loaded.
+	 */
 	@RequestMapping(value = "/product/id/{id}", method = RequestMethod.GET)
-	public Product getProductById(@PathVariable("id") Long productId)
+	@ReadsFromPrimary
+	public CompletableFuture<ResponseEntity<Product>> getProductById(
+			@PathVariable("id") Long productId, HttpServletRequest request)
 			throws ProductNotFoundException {
-		Product product = productRepository.findOne(productId);
-		if (product == null) {
-			throw new ProductNotFoundException("the product id " + productId
-					+ " is not existed");
+		ProductNotFoundException missing = productLookupGuard
+				.missingId(productId);
+		if (missing != null) {
+			throw missing;
 		}
-		return product;
+
+		return repositoryExecutor.submitReadOnly(() -> {
+			EntityVersion version = productRepository
+					.findVersionById(productId);
+			if (version == null) {
+				ProductNotFoundException notFound = ProductNotFoundException
+						.forId(productId);
+				productLookupGuard.recordMissingId(productId, notFound);
+				throw notFound;
+			}
+
+			return ConditionalResponses.ifModified(request, version,
+					version.eTag(request.getHeader(HttpHeaders.ACCEPT)), () -> {
+						Product product = productRepository
+								.findDetachedById(productId);
+						if (product == null) {
+							throw ProductNotFoundException.forId(productId);
+						}
+						return product;
+					});
+		});
 	}
 
 	@RequestMapping(value = "/product/sku/{sku}", method = RequestMethod.GET)
-	public Product getProductBySKU(@PathVariable("sku") String productSKU)
+	@ReadsFromPrimary
+	public CompletableFuture<ResponseEntity<Product>> getProductBySKU(
+			@PathVariable("sku") String productSKU, HttpServletRequest request)
 			throws ProductNotFoundException {
 
-		Product product = productRepository.findByProductSku(productSKU);
-		if (product == null) {
-			throw new ProductNotFoundException("the product Sku" + productSKU
-					+ " is not existed");
+		ProductNotFoundException missing = productLookupGuard
+				.missingSku(productSKU);
+		if (missing != null) {
+			throw missing;
 		}
-		return product;
+
+		return repositoryExecutor.submitReadOnly(() -> {
+			Long productId = productRepository.findIdBySku(productSKU);
+			EntityVersion version = productId == null ? null
+					: productRepository.findVersionById(productId);
+			if (version == null) {
+				ProductNotFoundException notFound = ProductNotFoundException
+						.forSku(productSKU);
+				productLookupGuard.recordMissingSku(productSKU, notFound);
+				throw notFound;
+			}
+
+			return ConditionalResponses.ifModified(request, version,
+					version.eTag(request.getHeader(HttpHeaders.ACCEPT)), () -> {
+						// the SKU to id mapping may predate a rename made by id
+						Product product = productRepository
+								.findDetachedById(productId);
+						if (product == null
+								|| !productSKU.equals(product.getProductSku())) {
+							throw ProductNotFoundException.forSku(productSKU);
+						}
+						return product;
+					});
+		});
 	}
 
+	/**
+	 * A page of products in id order: the first one, or the one after
+	 * {@code cursor}, of {@code size} products at most. The legacy
+	 * {@code first}/{@code last} window still works, but is bounded by
+	 * {@code store.products.max-page-size} like any page: {@code first}
+	 * without {@code last}, or with a {@code last} below it, no longer returns
+	 * the rest of the table but a page of {@code size} products from
+	 * {@code first}, and a {@code nextCursor} when more may follow.
+	 */
 	@RequestMapping(value = "/products", method = RequestMethod.GET)
-	public ProductCollectionRepresentation getAllProducts(
+	public CompletableFuture<ProductCollectionRepresentation> getAllProducts(
 			@RequestParam(required = false) Integer first,
-			@RequestParam(required = false) Integer last) {
+			@RequestParam(required = false) Integer last,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer size) {
+		return repositoryExecutor.submitReadOnly(() -> {
+			int pageSize = (size != null && size > 0) ? Math.min(size,
+					maxPageSize) : defaultPageSize;
+			List<Product> products;
+
+			if (first != null && first > 0) {
+				// legacy 1-based window, pushed down as OFFSET/LIMIT
+				if (last != null && !(first > last)) {
+					pageSize = Math.min(last - first + 1, maxPageSize);
+				}
+				products = productRepository
+						.findProductsOrderedById(new OffsetLimitRequest(first - 1,
+								pageSize));
+			} else {
+				long after = cursor != null ? KeysetCursor.decode(cursor) : 0L;
+				products = productRepository.findProductsAfter(after,
+						new OffsetLimitRequest(0, pageSize));
+			}
+
+			if (products == null) {
+				throw new ProductNotFoundException(
+						"no Products are available in the store");
+			}
+
+			String nextCursor = null;
+			if (!products.isEmpty() && products.size() == pageSize) {
+				nextCursor = KeysetCursor.encode(products.get(products.size() - 1)
+						.getProductId());
+			}
+
+			return new ProductCollectionRepresentation(products, nextCursor);
+		});
+	}
 
-		List<Product> products = productRepository.findAll();
+	/**
+	 * Ranks the products whose SKU or name tokens start with the tokens of
+	 * {@code q}, best match first. Served from the {@link ProductSearchIndex}
+	 * on the request thread, without any database work.
+	 */
+	@RequestMapping(value = "/products/search", method = RequestMethod.GET)
+	public ProductSearchResultRepresentation searchProducts(
+			@RequestParam("q") String query,
+			@RequestParam(required = false) Integer offset,
+			@RequestParam(required = false) Integer size) {
+		int pageSize = (size != null && size > 0) ? Math.min(size,
+				maxSearchPageSize) : defaultSearchPageSize;
+		return productSearchIndex.search(query, offset != null && offset > 0
+				? offset : 0, pageSize);
+	}
 
-		if (products == null) {
-			throw new ProductNotFoundException(
-					"no Products are available in the store");
-		}
+	/**
+	 * Completes the start of a SKU or product name for a search box, from the
+	 * trie of the {@link ProductSearchIndex}, on the request thread.
+	 */
+	@RequestMapping(value = "/products/suggest", method = RequestMethod.GET)
+	public ProductSuggestionRepresentation suggestProducts(
+			@RequestParam("prefix") String prefix,
+			@RequestParam(required = false) Integer limit) {
+		int count = (limit != null && limit > 0) ? Math.min(limit,
+				maxSuggestions) : defaultSuggestions;
+		return new ProductSuggestionRepresentation(prefix,
+				productSearchIndex.suggest(prefix, count));
+	}
 
-		if (first != null
-				&& ((last != null && !(first > last) && last < products.size()))) {
-			return new ProductCollectionRepresentation(products.subList(
-					first - 1, last));
-		} else if (first != null && first <= products.size()
-				&& (last == null || last > products.size())) {
-			return new ProductCollectionRepresentation(products.subList(
-					first - 1, products.size()));
-		} else {
-
-			return new ProductCollectionRepresentation(products);
+	/**
+	 * Writes the whole catalog as newline-delimited JSON, one product per
+	 * line, straight from a database cursor. The persistence context is
+	 * cleared every {@code store.products.export-clear-interval} rows so heap
+	 * use stays flat whatever the catalog size, and the transaction is
+	 * read-only so no snapshot is kept meanwhile. The cursor writes straight
+	 * to the response, so this endpoint stays on the request thread.
+	 */
+	@RequestMapping(value = "/products/export", method = RequestMethod.GET, produces = NDJSON_VALUE)
+	@Transactional(readOnly = true)
+	public void exportProducts(HttpServletResponse response) throws IOException {
+
+		response.setContentType(NDJSON_VALUE);
+		response.setCharacterEncoding("UTF-8");
+
+		ObjectWriter writer = objectMapper.writerFor(Product.class).without(
+				SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+		try (Stream<Product> products = productRepository.streamAllProducts();
+				JsonGenerator generator = objectMapper.getFactory()
+						.createGenerator(response.getOutputStream(),
+								JsonEncoding.UTF8)) {
+
+			generator.setRootValueSeparator(null);
+			int written = 0;
+			Iterator<Product> iterator = products.iterator();
+			while (iterator.hasNext()) {
+				writer.writeValue(generator, iterator.next());
+				generator.writeRaw('\n');
+				if (++written % exportClearInterval == 0) {
+					entityManager.clear();
+				}
+			}
+			generator.flush();
 		}
 	}
 
 	@RequestMapping(value = "/product/id/{id}", method = RequestMethod.PUT)
-	public Product updateProductById(@RequestBody @Valid Product product,
+	public CompletableFuture<Product> updateProductById(@RequestBody @Valid Product product,
 			@PathVariable("id") long productId) {
-
-		Product foundProduct = productRepository.findOne(productId);
-		if (foundProduct == null) {
-			throw new ProductNotFoundException("the product Id " + productId
-					+ " is not existed to update it");
-		}
-
-		String productSku = product.getProductSku() != null ? product
-				.getProductSku() : foundProduct.getProductSku();
-		String productName = product.getProductName() != null ? product
-				.getProductName() : foundProduct.getProductName();
-		LocalDate CreatedDate = foundProduct.getProductCreated();
-
-		Product UpdatedProduct = new Product(foundProduct.getProductId(),
-				productSku, productName, CreatedDate, LocalDate.now());
-
-		UpdatedProduct = productRepository.saveAndFlush(UpdatedProduct);
-
-		return UpdatedProduct;
+		return repositoryExecutor.submit(() -> {
+			Product foundProduct = productRepository.findOne(productId);
+			if (foundProduct == null) {
+				throw new ProductNotFoundException("the product Id " + productId
+						+ " is not existed to update it");
+			}
+
+			String productSku = product.getProductSku() != null ? product
+					.getProductSku() : foundProduct.getProductSku();
+			String productName = product.getProductName() != null ? product
+					.getProductName() : foundProduct.getProductName();
+			LocalDate CreatedDate = foundProduct.getProductCreated();
+			// read before the save, which merges the new state into foundProduct
+			String previousSku = foundProduct.getProductSku();
+
+			Product UpdatedProduct = new Product(foundProduct.getProductId(),
+					productSku, productName, CreatedDate, LocalDate.now());
+
+			// the version read is the one the update is checked against
+			UpdatedProduct.setProductVersion(foundProduct.getProductVersion());
+			UpdatedProduct = productRepository.saveAndFlush(UpdatedProduct);
+			eventPublisher.publishEvent(CatalogChangeEvent.productUpdated(
+					UpdatedProduct, previousSku));
+
+			return UpdatedProduct;
+		});
 	}
 
 	@RequestMapping(value = "/product/sku/{sku}", method = RequestMethod.PUT)
-	public Product updateProductBySku(@RequestBody Product product,
+	public CompletableFuture<Product> updateProductBySku(@RequestBody Product product,
 			@PathVariable("sku") String sku) {
+		return repositoryExecutor.submit(() -> {
+			Product foundProduct = productRepository.findByProductSku(sku);
+			if (foundProduct == null) {
+				throw new ProductNotFoundException("the product sku " + sku
+						+ " is not existed to update it");
+			}
+
+			String productSku = product.getProductSku() != null ? product
+					.getProductSku() : foundProduct.getProductSku();
+			String productName = product.getProductName() != null ? product
+					.getProductName() : foundProduct.getProductName();
+			LocalDate CreatedDate = foundProduct.getProductCreated();
+			// read before the save, which merges the new state into foundProduct
+			String previousSku = foundProduct.getProductSku();
+
+			Product UpdatedProduct = new Product(foundProduct.getProductId(),
+					productSku, productName, CreatedDate, LocalDate.now());
+
+			// the version read is the one the update is checked against
+			UpdatedProduct.setProductVersion(foundProduct.getProductVersion());
+			UpdatedProduct = productRepository.saveAndFlush(UpdatedProduct);
+			eventPublisher.publishEvent(CatalogChangeEvent.productUpdated(
+					UpdatedProduct, previousSku));
+
+			return UpdatedProduct;
+		});
+	}
 
-		Product foundProduct = productRepository.findByProductSku(sku);
-		if (foundProduct == null) {
-			throw new ProductNotFoundException("the product sku " + sku
-					+ " is not existed to update it");
+	/**
+	 * Changes the supplied fields with a single {@code UPDATE ... WHERE
+	 * product_id = ? AND version = ?}. The version comes from the
+	 * {@code If-Match} header, as sent by a previous GET. Answers 204 with the
+	 * new ETag, 409 when the product changed meanwhile and 428 without
+	 * {@code If-Match}.
+	 */
+	@RequestMapping(value = "/product/id/{id}", method = RequestMethod.PATCH)
+	public CompletableFuture<ResponseEntity<Void>> patchProductById(
+			@RequestBody @Valid ProductPatchRepresentation patch,
+			@PathVariable("id") long productId,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+			@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+		Long version = EntityVersion.parseETag(ifMatch);
+		if (version == null) {
+			throw new PreconditionRequiredException(
+					"an If-Match header with the ETag of the product id "
+							+ productId + " is required to patch it");
 		}
 
-		String productSku = product.getProductSku() != null ? product
-				.getProductSku() : foundProduct.getProductSku();
-		String productName = product.getProductName() != null ? product
-				.getProductName() : foundProduct.getProductName();
-		LocalDate CreatedDate = foundProduct.getProductCreated();
-
-		Product UpdatedProduct = new Product(foundProduct.getProductId(),
-				productSku, productName, CreatedDate, LocalDate.now());
-
-		UpdatedProduct = productRepository.saveAndFlush(UpdatedProduct);
-
-		return UpdatedProduct;
+		return repositoryExecutor.submit(() -> {
+			Instant modified = Instant.now();
+			if (productRepository.patchProduct(productId, version,
+					patch.getProductSku(), patch.getProductName(), modified) == 0) {
+				if (productRepository.findVersionById(productId) == null) {
+					throw new ProductNotFoundException("the product Id "
+							+ productId + " is not existed to update it");
+				}
+				throw new ObjectOptimisticLockingFailureException(
+						Product.class, productId);
+			}
+
+			// the SKU is only known when it is the patched field; the id
+			// caches are evicted either way
+			eventPublisher.publishEvent(new CatalogChangeEvent(
+					EntityType.PRODUCT, ChangeType.UPDATED, productId, patch
+							.getProductSku(), null, patch.getProductName()));
+
+			EntityVersion patched = new EntityVersion(version + 1, modified);
+			HttpHeaders headers = new HttpHeaders();
+			headers.setETag(patched.eTag(accept));
+			headers.setLastModified(patched.getModifiedMillis());
+			return new ResponseEntity<Void>(headers, HttpStatus.NO_CONTENT);
+		});
 	}
 
 	@RequestMapping(value = "/products", method = RequestMethod.POST)
-	public ResponseEntity<Product> createNewProduct(
+	public CompletableFuture<ResponseEntity<Product>> createNewProduct(
 			@RequestBody @Valid Product product) {
+		return repositoryExecutor.submit(() -> {
+			if (product.getProductCreated() == null) {
+				product.setProductCreated(LocalDate.now());
+			}
 
-		if (product.getProductCreated() == null) {
-			product.setProductCreated(LocalDate.now());
-		}
-
-		if (product.getProductLastUpdated() == null) {
-			product.setProductLastUpdated(LocalDate.now());
-		}
-
-		productRepository.save(product);
+			if (product.getProductLastUpdated() == null) {
+				product.setProductLastUpdated(LocalDate.now());
+			}
 
-		return new ResponseEntity<Product>(product, null, HttpStatus.CREATED);
+			productRepository.save(product);
+			eventPublisher.publishEvent(CatalogChangeEvent.productCreated(product));
 
+			return new ResponseEntity<Product>(product, null, HttpStatus.CREATED);
+		});
 	}
 
-	@RequestMapping(value = "/product/id/{id}", method = RequestMethod.DELETE)
-	public ResponseEntity<Product> deleteProductById(
-			@PathVariable("id") Long productId) {
+	/**
+	 * Creates many products at once. Products are screened for validation
+	 * errors and duplicate SKUs (within the request and against the store, one
+	 * IN query per batch), then inserted in JDBC batches of
+	 * {@code store.products.bulk-batch-size}, each batch in its own
+	 * transaction. A batch rejected by the database is retried row by row so
+	 * every product gets its own outcome.
+	 */
+	@RequestMapping(value = "/products/bulk", method = RequestMethod.POST)
+	public CompletableFuture<ResponseEntity<ProductBulkResultRepresentation>> createProductsInBulk(
+			@RequestBody List<Product> products) {
+		return repositoryExecutor.submitWithoutTransaction(() -> {
+			ProductBulkResultRepresentation result = new ProductBulkResultRepresentation();
+			if (products == null) {
+				return new ResponseEntity<ProductBulkResultRepresentation>(result,
+						null, HttpStatus.CREATED);
+			}
+
+			Set<String> requestSkus = new HashSet<String>();
+
+			for (int start = 0; start < products.size(); start += bulkBatchSize) {
+				List<Product> batch = products.subList(start,
+						Math.min(start + bulkBatchSize, products.size()));
+				String[] failures = new String[batch.size()];
+
+				List<String> candidateSkus = new ArrayList<String>();
+				for (int i = 0; i < batch.size(); i++) {
+					Product product = batch.get(i);
+					Set<ConstraintViolation<Product>> violations = VALIDATOR
+							.validate(product);
+					if (!violations.isEmpty()) {
+						ConstraintViolation<Product> violation = violations
+								.iterator().next();
+						failures[i] = violation.getPropertyPath() + " "
+								+ violation.getMessage();
+					} else if (!requestSkus.add(product.getProductSku())) {
+						failures[i] = "the product sku " + product.getProductSku()
+								+ " is duplicated in the request";
+					} else {
+						candidateSkus.add(product.getProductSku());
+					}
+				}
+
+				Set<String> existingSkus = candidateSkus.isEmpty() ? Collections
+						.<String> emptySet() : new HashSet<String>(
+						productRepository.findExistingProductSkus(candidateSkus));
+
+				List<Product> accepted = new ArrayList<Product>();
+				for (int i = 0; i < batch.size(); i++) {
+					Product product = batch.get(i);
+					if (failures[i] != null) {
+						continue;
+					}
+					if (existingSkus.contains(product.getProductSku())) {
+						failures[i] = "the product sku " + product.getProductSku()
+								+ " is already existed";
+						continue;
+					}
+					product.setProductId(0);
+					if (product.getProductCreated() == null) {
+						product.setProductCreated(LocalDate.now());
+					}
+					if (product.getProductLastUpdated() == null) {
+						product.setProductLastUpdated(LocalDate.now());
+					}
+					accepted.add(product);
+				}
+
+				if (!insertBatch(accepted)) {
+					for (int i = 0; i < batch.size(); i++) {
+						if (failures[i] == null) {
+							failures[i] = insertOne(batch.get(i));
+						}
+					}
+				}
+
+				for (int i = 0; i < batch.size(); i++) {
+					Product product = batch.get(i);
+					if (failures[i] == null) {
+						result.addCreated(start + i, product.getProductSku(),
+								product.getProductId());
+					} else {
+						result.addFailed(start + i, product.getProductSku(),
+								failures[i]);
+					}
+				}
+			}
+
+			HttpStatus status = result.getFailed() == 0 ? HttpStatus.CREATED
+					: HttpStatus.MULTI_STATUS;
+			return new ResponseEntity<ProductBulkResultRepresentation>(result,
+					null, status);
+		});
+	}
 
-		Product deletedProduct = productRepository.findOne(productId);
-		if (deletedProduct == null) {
-			throw new ProductNotFoundException("the product Id " + productId
-					+ " is not existed to delete it it");
+	private boolean insertBatch(final List<Product> batch) {
+		if (batch.isEmpty()) {
+			return true;
 		}
-		
-		List<Category> categories = categoryRepository.findCategoriesByProducts(deletedProduct);
-		for(Category category:categories){
-			category.getProducts().remove(deletedProduct);
+		try {
+			new TransactionTemplate(transactionManager).execute(status -> {
+				productRepository.save(batch);
+				// in the batch transaction, so the outbox rows roll back with it
+				for (Product product : batch) {
+					eventPublisher.publishEvent(CatalogChangeEvent
+							.productCreated(product));
+				}
+				productRepository.flush();
+				entityManager.clear();
+				return null;
+			});
+			return true;
+		} catch (DataAccessException | TransactionException e) {
+			return false;
 		}
-		
-		productRepository.delete(deletedProduct);
-
-		return new ResponseEntity<Product>(HttpStatus.NO_CONTENT);
 	}
 
-	@RequestMapping(value = "/product/sku/{sku}", method = RequestMethod.DELETE)
-	public ResponseEntity<Product> deleteProductBySKU(
-			@PathVariable("sku") String sku) {
-
-		Product deletedProduct = productRepository.findByProductSku(sku);
-		if (deletedProduct == null) {
-			throw new ProductNotFoundException("the product sku " + sku
-					+ " is not existed to delete it it");
-		}
-		
-		List<Category> categories = categoryRepository.findCategoriesByProducts(deletedProduct);
-		for(Category category:categories){
-			category.getProducts().remove(deletedProduct);
+	private String insertOne(final Product product) {
+		product.setProductId(0);
+		try {
+			new TransactionTemplate(transactionManager).execute(status -> {
+				productRepository.saveAndFlush(product);
+				eventPublisher.publishEvent(CatalogChangeEvent
+						.productCreated(product));
+				return null;
+			});
+			return null;
+		} catch (DataAccessException | TransactionException e) {
+			return "the product sku " + product.getProductSku()
+					+ " could not be created: "
+					+ e.getMostSpecificCause().getMessage();
 		}
+	}
 
-		productRepository.delete(deletedProduct);
+	@RequestMapping(value = "/product/id/{id}", method = RequestMethod.DELETE)
+	public CompletableFuture<ResponseEntity<Product>> deleteProductById(
+			@PathVariable("id") Long productId) {
+		return repositoryExecutor.submit(() -> {
+			Product deletedProduct = productRepository.findOne(productId);
+			if (deletedProduct == null) {
+				throw new ProductNotFoundException("the product Id " + productId
+						+ " is not existed to delete it it");
+			}
+
+			categoryRepository.touchCategoriesOfProduct(
+					deletedProduct.getProductId(), Timestamp.from(Instant.now()));
+			categoryRepository.removeProductFromAllCategories(deletedProduct
+					.getProductId());
+			productRepository.delete(deletedProduct);
+			eventPublisher.publishEvent(CatalogChangeEvent
+					.productDeleted(deletedProduct));
+
+			return new ResponseEntity<Product>(HttpStatus.NO_CONTENT);
+		});
+	}
 
-		return new ResponseEntity<Product>(HttpStatus.NO_CONTENT);
+	@RequestMapping(value = "/product/sku/{sku}", method = RequestMethod.DELETE)
+	public CompletableFuture<ResponseEntity<Product>> deleteProductBySKU(
+			@PathVariable("sku") String sku) {
+		return repositoryExecutor.submit(() -> {
+			Product deletedProduct = productRepository.findByProductSku(sku);
+			if (deletedProduct == null) {
+				throw new ProductNotFoundException("the product sku " + sku
+						+ " is not existed to delete it it");
+			}
+
+			categoryRepository.touchCategoriesOfProduct(
+					deletedProduct.getProductId(), Timestamp.from(Instant.now()));
+			categoryRepository.removeProductFromAllCategories(deletedProduct
+					.getProductId());
+			productRepository.delete(deletedProduct);
+			eventPublisher.publishEvent(CatalogChangeEvent
+					.productDeleted(deletedProduct));
+
+			return new ResponseEntity<Product>(HttpStatus.NO_CONTENT);
+		});
 	}
 
 }
@@ -8,6 +8,9 @@ import javax.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -18,7 +21,11 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import com.store.exception.CategoryNotFoundException;
 import com.store.exception.ClientErrorInformation;
+import com.store.exception.InvalidCursorException;
+import com.store.exception.NotFoundException;
+import com.store.exception.PreconditionRequiredException;
 import com.store.exception.ProductNotFoundException;
+import com.store.exception.ServiceUnavailableException;
 
 @ControllerAdvice
 public class RestErrorHandlerAdvice {
@@ -29,15 +36,66 @@ public class RestErrorHandlerAdvice {
 	@ExceptionHandler({ ProductNotFoundException.class,
 			CategoryNotFoundException.class })
 	public ResponseEntity<ClientErrorInformation> rulesForProductOrCategoryNotFoundException(
-			Exception e, HttpServletRequest req) {
+			NotFoundException e, HttpServletRequest req) {
 
-		String url = req.getRequestURI();
-		String errorMessage = e.toString().split(":")[1].trim();
+		return new ResponseEntity<ClientErrorInformation>(
+				e.getErrorInformation(req.getRequestURI()),
+				HttpStatus.NOT_FOUND);
+	}
+
+	@ExceptionHandler(InvalidCursorException.class)
+	public ResponseEntity<ClientErrorInformation> rulesForInvalidCursorException(
+			InvalidCursorException e, HttpServletRequest req) {
+
+		ClientErrorInformation clientErrorInformation = new ClientErrorInformation(
+				e.getMessage(), req.getRequestURI());
+		return new ResponseEntity<ClientErrorInformation>(
+				clientErrorInformation, HttpStatus.BAD_REQUEST);
+	}
+
+	@ExceptionHandler(PreconditionRequiredException.class)
+	public ResponseEntity<ClientErrorInformation> rulesForPreconditionRequiredException(
+			PreconditionRequiredException e, HttpServletRequest req) {
+
+		ClientErrorInformation clientErrorInformation = new ClientErrorInformation(
+				e.getMessage(), req.getRequestURI());
+		return new ResponseEntity<ClientErrorInformation>(
+				clientErrorInformation, HttpStatus.PRECONDITION_REQUIRED);
+	}
+
+	@ExceptionHandler(DataIntegrityViolationException.class)
+	public ResponseEntity<ClientErrorInformation> rulesForDataIntegrityViolationException(
+			DataIntegrityViolationException e, HttpServletRequest req) {
+
+		ClientErrorInformation clientErrorInformation = new ClientErrorInformation(
+				"the request conflicts with an existing resource, e.g. a duplicated sku",
+				req.getRequestURI());
+		return new ResponseEntity<ClientErrorInformation>(
+				clientErrorInformation, HttpStatus.CONFLICT);
+	}
+
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	public ResponseEntity<ClientErrorInformation> rulesForOptimisticLockingFailureException(
+			OptimisticLockingFailureException e, HttpServletRequest req) {
+
+		ClientErrorInformation clientErrorInformation = new ClientErrorInformation(
+				"the resource was changed by another request, reload it and retry",
+				req.getRequestURI());
+		return new ResponseEntity<ClientErrorInformation>(
+				clientErrorInformation, HttpStatus.CONFLICT);
+	}
+
+	@ExceptionHandler(ServiceUnavailableException.class)
+	public ResponseEntity<ClientErrorInformation> rulesForServiceUnavailableException(
+			ServiceUnavailableException e, HttpServletRequest req) {
 
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER,
+				Integer.toString(e.getRetryAfterSeconds()));
 		ClientErrorInformation clientErrorInformation = new ClientErrorInformation(
-				errorMessage, url);
+				e.getMessage(), req.getRequestURI());
 		return new ResponseEntity<ClientErrorInformation>(
-				clientErrorInformation, HttpStatus.NOT_FOUND);
+				clientErrorInformation, headers, HttpStatus.SERVICE_UNAVAILABLE);
 	}
 
 	@ExceptionHandler(MethodArgumentNotValidException.class)
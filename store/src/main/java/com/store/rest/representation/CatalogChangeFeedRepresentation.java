@@ -0,0 +1,68 @@
+package com.store.rest.representation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import com.store.domain.CatalogChange;
+
+/**
+ * One batch of the change feed, oldest change first.
+ */
+@XmlRootElement(name="changes")
+public class CatalogChangeFeedRepresentation {
+
+	private List<CatalogChange> changes = new ArrayList<CatalogChange>();
+
+	private long next;
+
+	private boolean more;
+
+	public CatalogChangeFeedRepresentation() {
+
+	}
+
+	public CatalogChangeFeedRepresentation(List<CatalogChange> changes,
+			long next, boolean more) {
+		this.changes = changes;
+		this.next = next;
+		this.more = more;
+	}
+
+	@XmlElement(name="change")
+	public List<CatalogChange> getChanges() {
+		return changes;
+	}
+
+	public void setChanges(List<CatalogChange> changes) {
+		this.changes = changes;
+	}
+
+	/**
+	 * The sequence to pass as {@code after} for the next batch: that of the
+	 * last change here, or the {@code after} of the request when there is
+	 * none.
+	 */
+	public long getNext() {
+		return next;
+	}
+
+	public void setNext(long next) {
+		this.next = next;
+	}
+
+	/**
+	 * Whether the batch was cut at its size, so the next one can be read at
+	 * once rather than after the usual polling interval.
+	 */
+	public boolean isMore() {
+		return more;
+	}
+
+	public void setMore(boolean more) {
+		this.more = more;
+	}
+
+}
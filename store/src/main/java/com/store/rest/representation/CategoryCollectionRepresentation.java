@@ -5,32 +5,71 @@ import java.util.List;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
-import com.store.domain.Category;
+import com.store.domain.CategorySummary;
 
 
 @XmlRootElement(name="categories")
 public class CategoryCollectionRepresentation {
 	
-	private List<Category> categories;
+	private List<CategorySummary> categories;
+	
+	private Long totalCount;
+	
+	private Integer offset;
+	
+	private Integer limit;
 	
 	public CategoryCollectionRepresentation() {
 
 	}
 		
-	public CategoryCollectionRepresentation(List<Category> categories) {
+	public CategoryCollectionRepresentation(List<CategorySummary> categories) {
+		super();
+		this.categories = categories;
+	}
+	
+	public CategoryCollectionRepresentation(List<CategorySummary> categories,
+			long totalCount, int offset, int limit) {
 		super();
 		this.categories = categories;
+		this.totalCount = totalCount;
+		this.offset = offset;
+		this.limit = limit;
 	}
 	
 	@XmlElement(name="category")
-	public List<Category> getCategories() {
+	public List<CategorySummary> getCategories() {
 		return categories;
 	}
 
-	public void setCategories(List<Category> categories) {
+	public void setCategories(List<CategorySummary> categories) {
 		this.categories = categories;
 	}
 
+	public Long getTotalCount() {
+		return totalCount;
+	}
+
+	public void setTotalCount(Long totalCount) {
+		this.totalCount = totalCount;
+	}
+
+	public Integer getOffset() {
+		return offset;
+	}
+
+	public void setOffset(Integer offset) {
+		this.offset = offset;
+	}
+
+	public Integer getLimit() {
+		return limit;
+	}
+
+	public void setLimit(Integer limit) {
+		this.limit = limit;
+	}
+
 
 	
 	
@@ -0,0 +1,127 @@
+package com.store.rest.representation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Outcome of a bulk product creation, one entry per submitted product in
+ * submission order.
+ */
+@XmlRootElement(name="bulkResult")
+public class ProductBulkResultRepresentation {
+	
+	public static final String CREATED = "CREATED";
+	public static final String FAILED = "FAILED";
+
+	private int created;
+	
+	private int failed;
+	
+	private List<ItemResult> items = new ArrayList<ItemResult>();
+	
+	public ProductBulkResultRepresentation() {
+
+	}
+	
+	public void addCreated(int index, String productSku, long productId) {
+		items.add(new ItemResult(index, productSku, productId, CREATED, null));
+		created++;
+	}
+	
+	public void addFailed(int index, String productSku, String message) {
+		items.add(new ItemResult(index, productSku, null, FAILED, message));
+		failed++;
+	}
+
+	public int getCreated() {
+		return created;
+	}
+
+	public void setCreated(int created) {
+		this.created = created;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+
+	@XmlElement(name="item")
+	public List<ItemResult> getItems() {
+		return items;
+	}
+
+	public void setItems(List<ItemResult> items) {
+		this.items = items;
+	}
+
+	public static class ItemResult {
+		
+		private int index;
+		private String productSku;
+		private Long productId;
+		private String status;
+		private String message;
+		
+		public ItemResult() {
+
+		}
+		
+		public ItemResult(int index, String productSku, Long productId,
+				String status, String message) {
+			this.index = index;
+			this.productSku = productSku;
+			this.productId = productId;
+			this.status = status;
+			this.message = message;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public void setIndex(int index) {
+			this.index = index;
+		}
+
+		public String getProductSku() {
+			return productSku;
+		}
+
+		public void setProductSku(String productSku) {
+			this.productSku = productSku;
+		}
+
+		public Long getProductId() {
+			return productId;
+		}
+
+		public void setProductId(Long productId) {
+			this.productId = productId;
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public void setStatus(String status) {
+			this.status = status;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public void setMessage(String message) {
+			this.message = message;
+		}
+		
+	}
+
+}
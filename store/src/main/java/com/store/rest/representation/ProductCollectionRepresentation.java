@@ -12,6 +12,8 @@ public class ProductCollectionRepresentation {
 	
 	private List<Product> products;
 	
+	private String nextCursor;
+	
 	public ProductCollectionRepresentation() {
 
 	}
@@ -21,6 +23,12 @@ public class ProductCollectionRepresentation {
 		this.products = products;
 	}
 	
+	public ProductCollectionRepresentation(List<Product> products, String nextCursor) {
+
+		this.products = products;
+		this.nextCursor = nextCursor;
+	}
+	
 	@XmlElement(name="product")
 	public List<Product> getProducts() {
 		return products;
@@ -30,6 +38,18 @@ public class ProductCollectionRepresentation {
 		this.products = products;
 	}
 
+	/**
+	 * Token to pass as {@code cursor} to read the next page, or {@code null}
+	 * when this page is the last one.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
 	
 
 }
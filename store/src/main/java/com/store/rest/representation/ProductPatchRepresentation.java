@@ -0,0 +1,45 @@
+package com.store.rest.representation;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.hibernate.validator.constraints.Length;
+
+/**
+ * Body of a product PATCH: the fields to change, absent ones are left as
+ * they are. Same limits as the {@code Product} columns.
+ */
+@XmlRootElement(name="productPatch")
+public class ProductPatchRepresentation {
+
+	@Length(min=1,max=45)
+	private String productSku;
+
+	@Length(min=1,max=45)
+	private String productName;
+
+	public ProductPatchRepresentation() {
+
+	}
+
+	public ProductPatchRepresentation(String productSku, String productName) {
+		this.productSku = productSku;
+		this.productName = productName;
+	}
+
+	public String getProductSku() {
+		return productSku;
+	}
+
+	public void setProductSku(String productSku) {
+		this.productSku = productSku;
+	}
+
+	public String getProductName() {
+		return productName;
+	}
+
+	public void setProductName(String productName) {
+		this.productName = productName;
+	}
+
+}
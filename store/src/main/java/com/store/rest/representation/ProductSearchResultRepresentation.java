@@ -0,0 +1,125 @@
+package com.store.rest.representation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * One page of product search results, best match first. The hits carry the
+ * indexed fields only; the full product is read from the product endpoints.
+ */
+@XmlRootElement(name="searchResult")
+public class ProductSearchResultRepresentation {
+
+	private String query;
+
+	private int total;
+
+	private int offset;
+
+	private List<Hit> hits = new ArrayList<Hit>();
+
+	public ProductSearchResultRepresentation() {
+
+	}
+
+	public ProductSearchResultRepresentation(String query, int total,
+			int offset, List<Hit> hits) {
+		this.query = query;
+		this.total = total;
+		this.offset = offset;
+		this.hits = hits;
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	public void setQuery(String query) {
+		this.query = query;
+	}
+
+	/**
+	 * The number of products matching the query, on every page.
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	public void setTotal(int total) {
+		this.total = total;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+
+	@XmlElement(name="hit")
+	public List<Hit> getHits() {
+		return hits;
+	}
+
+	public void setHits(List<Hit> hits) {
+		this.hits = hits;
+	}
+
+	public static class Hit {
+
+		private long productId;
+		private String productSku;
+		private String productName;
+		private int score;
+
+		public Hit() {
+
+		}
+
+		public Hit(long productId, String productSku, String productName,
+				int score) {
+			this.productId = productId;
+			this.productSku = productSku;
+			this.productName = productName;
+			this.score = score;
+		}
+
+		public long getProductId() {
+			return productId;
+		}
+
+		public void setProductId(long productId) {
+			this.productId = productId;
+		}
+
+		public String getProductSku() {
+			return productSku;
+		}
+
+		public void setProductSku(String productSku) {
+			this.productSku = productSku;
+		}
+
+		public String getProductName() {
+			return productName;
+		}
+
+		public void setProductName(String productName) {
+			this.productName = productName;
+		}
+
+		public int getScore() {
+			return score;
+		}
+
+		public void setScore(int score) {
+			this.score = score;
+		}
+
+	}
+
+}
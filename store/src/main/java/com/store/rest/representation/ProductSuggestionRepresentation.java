@@ -0,0 +1,46 @@
+package com.store.rest.representation;
+
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Typeahead completions of a prefix: SKUs and product names, the most common
+ * first.
+ */
+@XmlRootElement(name="suggestions")
+public class ProductSuggestionRepresentation {
+
+	private String prefix;
+
+	private List<String> suggestions;
+
+	public ProductSuggestionRepresentation() {
+
+	}
+
+	public ProductSuggestionRepresentation(String prefix,
+			List<String> suggestions) {
+		this.prefix = prefix;
+		this.suggestions = suggestions;
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	public void setPrefix(String prefix) {
+		this.prefix = prefix;
+	}
+
+	@XmlElement(name="suggestion")
+	public List<String> getSuggestions() {
+		return suggestions;
+	}
+
+	public void setSuggestions(List<String> suggestions) {
+		this.suggestions = suggestions;
+	}
+
+}
@@ -0,0 +1,397 @@
+package com.store.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
+import com.store.exception.ServiceUnavailableException;
+import com.store.repository.ProductRepository;
+import com.store.rest.representation.ProductSearchResultRepresentation;
+import com.store.rest.representation.ProductSearchResultRepresentation.Hit;
+import com.store.util.RadixTrie;
+
+/**
+ * In-memory inverted index over the SKU and name of every product, answering
+ * product searches and typeahead suggestions without touching the database.
+ * <p>
+ * Both fields are split into lower-cased runs of letters and digits. A
+ * product matches a query when, for every token of the query, it holds a
+ * token starting with it; the products of all the tokens sharing a prefix are
+ * read as one range of a sorted map. Matches are ranked by score: a query
+ * equal to the whole SKU first, then per query token an exact SKU token, an
+ * exact name token and a mere prefix. Ties go to the lower product id.
+ * <p>
+ * Suggestions complete the start of a whole SKU or name from a
+ * {@link RadixTrie} of both, held beside the postings and kept in step with
+ * them. A name shared by several products weighs more and comes first.
+ * <p>
+ * The index is loaded once the application is ready, then follows the
+ * product changes as they commit. Changes committed during the load are held
+ * back and replayed over it, so a product deleted or renamed meanwhile is not
+ * brought back by a stale row. Searches and suggestions are refused with a
+ * 503 until then.
+ */
+@Component
+public class ProductSearchIndex {
+
+	private static final int WHOLE_SKU = 10;
+	private static final int EXACT_SKU_TOKEN = 4;
+	private static final int EXACT_NAME_TOKEN = 3;
+	private static final int PREFIX = 1;
+
+	private static final String[] NO_TOKENS = new String[0];
+
+	private static final Comparator<Hit> RANKING = Comparator
+			.comparingInt(Hit::getScore).reversed()
+			.thenComparingLong(Hit::getProductId);
+
+	private static final ServiceUnavailableException LOADING = new ServiceUnavailableException(
+			"the search index is loading, retry in 1 s", 1);
+
+	@Autowired
+	@Qualifier("productRepository")
+	private ProductRepository productRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// guarded by lock
+	private final Map<Long, Document> documents = new HashMap<Long, Document>();
+	private final NavigableMap<String, Set<Long>> postings = new TreeMap<String, Set<Long>>();
+	private final RadixTrie suggestions = new RadixTrie();
+	private List<CatalogChangeEvent> pending = new ArrayList<CatalogChangeEvent>();
+
+	private volatile boolean loaded;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		new TransactionTemplate(transactionManager).execute(status -> {
+			try (Stream<Object[]> rows = productRepository.streamProductNames()) {
+				Iterator<Object[]> iterator = rows.iterator();
+				while (iterator.hasNext()) {
+					Object[] row = iterator.next();
+					lock.writeLock().lock();
+					try {
+						put((Long) row[0], (String) row[1], (String) row[2]);
+					} finally {
+						lock.writeLock().unlock();
+					}
+				}
+			}
+			return null;
+		});
+
+		lock.writeLock().lock();
+		try {
+			for (CatalogChangeEvent event : pending) {
+				apply(event);
+			}
+			pending = null;
+			loaded = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChange(CatalogChangeEvent event) {
+		if (!event.isProduct()) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			if (pending != null) {
+				pending.add(event);
+			} else {
+				apply(event);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * The {@code size} best matches of {@code query} from rank {@code offset}
+	 * on, with the total number of matches.
+	 *
+	 * @throws ServiceUnavailableException while the index is loading
+	 */
+	public ProductSearchResultRepresentation search(String query, int offset,
+			int size) {
+		if (!loaded) {
+			throw LOADING;
+		}
+		String[] terms = tokenize(query);
+		if (terms.length == 0) {
+			return new ProductSearchResultRepresentation(query, 0, offset,
+					new ArrayList<Hit>());
+		}
+		String wholeQuery = query.trim().toLowerCase(Locale.ROOT);
+		int wanted = (int) Math.min((long) offset + size, Integer.MAX_VALUE);
+
+		int total;
+		PriorityQueue<Hit> best;
+		lock.readLock().lock();
+		try {
+			Set<Long> candidates = null;
+			for (String term : terms) {
+				Set<Long> matches = matches(term);
+				if (candidates == null || matches.size() < candidates.size()) {
+					if (candidates != null) {
+						matches.retainAll(candidates);
+					}
+					candidates = matches;
+				} else {
+					candidates.retainAll(matches);
+				}
+				if (candidates.isEmpty()) {
+					break;
+				}
+			}
+
+			// only the hits up to the requested page are kept, worst on top
+			total = candidates.size();
+			best = new PriorityQueue<Hit>(Math.min(wanted, total) + 1,
+					RANKING.reversed());
+			for (Long productId : candidates) {
+				Document document = documents.get(productId);
+				best.add(new Hit(productId, document.sku, document.name,
+						document.score(terms, wholeQuery)));
+				if (best.size() > wanted) {
+					best.poll();
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		List<Hit> hits = new ArrayList<Hit>(best);
+		hits.sort(RANKING);
+		return new ProductSearchResultRepresentation(query, total, offset,
+				new ArrayList<Hit>(hits.subList(Math.min(offset, hits.size()),
+						hits.size())));
+	}
+
+	/**
+	 * Up to {@code limit} SKUs and names starting with {@code prefix},
+	 * ignoring case, the most common names first.
+	 *
+	 * @throws ServiceUnavailableException while the index is loading
+	 */
+	public List<String> suggest(String prefix, int limit) {
+		if (!loaded) {
+			throw LOADING;
+		}
+		String key = suggestionPrefix(prefix);
+		if (key.isEmpty()) {
+			return new ArrayList<String>();
+		}
+		lock.readLock().lock();
+		try {
+			return suggestions.complete(key, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public Map<String, Object> statistics() {
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		statistics.put("loaded", loaded);
+		lock.readLock().lock();
+		try {
+			statistics.put("products", documents.size());
+			statistics.put("tokens", postings.size());
+			statistics.put("suggestionKeys", suggestions.size());
+			statistics.put("suggestionNodes", suggestions.nodeCount());
+			statistics.put("suggestionBytes", suggestions.estimatedBytes());
+		} finally {
+			lock.readLock().unlock();
+		}
+		return statistics;
+	}
+
+	/**
+	 * The lower-cased runs of letters and digits of {@code text}, each once.
+	 */
+	public static String[] tokenize(String text) {
+		if (text == null) {
+			return NO_TOKENS;
+		}
+		List<String> tokens = new ArrayList<String>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean inToken = i < text.length()
+					&& Character.isLetterOrDigit(text.charAt(i));
+			if (inToken && start < 0) {
+				start = i;
+			} else if (!inToken && start >= 0) {
+				String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+				if (!tokens.contains(token)) {
+					tokens.add(token);
+				}
+				start = -1;
+			}
+		}
+		return tokens.isEmpty() ? NO_TOKENS : tokens.toArray(new String[tokens
+				.size()]);
+	}
+
+	// suggestion keys are trimmed; a prefix keeps its trailing blanks
+	private static String suggestionKey(String text) {
+		return text != null ? text.trim().toLowerCase(Locale.ROOT) : "";
+	}
+
+	private static String suggestionPrefix(String prefix) {
+		if (prefix == null) {
+			return "";
+		}
+		int start = 0;
+		while (start < prefix.length()
+				&& Character.isWhitespace(prefix.charAt(start))) {
+			start++;
+		}
+		return prefix.substring(start).toLowerCase(Locale.ROOT);
+	}
+
+	private Set<Long> matches(String prefix) {
+		Set<Long> matches = new HashSet<Long>();
+		for (Set<Long> productIds : postings.subMap(prefix, true,
+				prefix + Character.MAX_VALUE, false).values()) {
+			matches.addAll(productIds);
+		}
+		return matches;
+	}
+
+	private void apply(CatalogChangeEvent event) {
+		if (event.getChangeType() == ChangeType.DELETED) {
+			remove(event.getEntityId());
+			return;
+		}
+		// a patch names only the fields it changed
+		Document current = documents.get(event.getEntityId());
+		String sku = event.getKey() != null ? event.getKey()
+				: current != null ? current.sku : null;
+		String name = event.getName() != null ? event.getName()
+				: current != null ? current.name : null;
+		put(event.getEntityId(), sku, name);
+	}
+
+	private void put(long productId, String sku, String name) {
+		remove(productId);
+		Document document = new Document(sku, name);
+		documents.put(productId, document);
+		index(document.skuTokens, productId);
+		index(document.nameTokens, productId);
+		addSuggestion(document.lowerCaseSku, sku);
+		addSuggestion(document.lowerCaseName, name);
+	}
+
+	private void addSuggestion(String key, String value) {
+		if (!key.isEmpty()) {
+			suggestions.add(key, value.trim());
+		}
+	}
+
+	private void index(String[] tokens, long productId) {
+		for (String token : tokens) {
+			Set<Long> productIds = postings.get(token);
+			if (productIds == null) {
+				productIds = new HashSet<Long>();
+				postings.put(token, productIds);
+			}
+			productIds.add(productId);
+		}
+	}
+
+	private void remove(long productId) {
+		Document document = documents.remove(productId);
+		if (document != null) {
+			unindex(document.skuTokens, productId);
+			unindex(document.nameTokens, productId);
+			if (!document.lowerCaseSku.isEmpty()) {
+				suggestions.remove(document.lowerCaseSku);
+			}
+			if (!document.lowerCaseName.isEmpty()) {
+				suggestions.remove(document.lowerCaseName);
+			}
+		}
+	}
+
+	private void unindex(String[] tokens, long productId) {
+		for (String token : tokens) {
+			Set<Long> productIds = postings.get(token);
+			if (productIds != null && productIds.remove(productId)
+					&& productIds.isEmpty()) {
+				postings.remove(token);
+			}
+		}
+	}
+
+	private static class Document {
+
+		private final String sku;
+		private final String name;
+		private final String lowerCaseSku;
+		private final String lowerCaseName;
+		private final String[] skuTokens;
+		private final String[] nameTokens;
+
+		Document(String sku, String name) {
+			this.sku = sku;
+			this.name = name;
+			this.lowerCaseSku = suggestionKey(sku);
+			this.lowerCaseName = suggestionKey(name);
+			this.skuTokens = tokenize(sku);
+			this.nameTokens = tokenize(name);
+		}
+
+		int score(String[] terms, String wholeQuery) {
+			int score = wholeQuery.equals(lowerCaseSku) ? WHOLE_SKU : 0;
+			for (String term : terms) {
+				score += Math.max(score(term, skuTokens, EXACT_SKU_TOKEN),
+						score(term, nameTokens, EXACT_NAME_TOKEN));
+			}
+			return score;
+		}
+
+		private static int score(String term, String[] tokens, int exact) {
+			int best = 0;
+			for (String token : tokens) {
+				if (token.equals(term)) {
+					return exact;
+				}
+				if (token.startsWith(term)) {
+					best = PREFIX;
+				}
+			}
+			return best;
+		}
+
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.store.search;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint ({@code /searchstats}) reporting the size of the
+ * {@link ProductSearchIndex}: products and tokens indexed, and the keys, nodes
+ * and estimated heap footprint of the suggestion trie.
+ */
+@Component
+public class SearchStatisticsEndpoint extends
+		AbstractEndpoint<Map<String, Object>> {
+
+	@Autowired
+	private ProductSearchIndex productSearchIndex;
+
+	public SearchStatisticsEndpoint() {
+		super("searchstats", false);
+	}
+
+	@Override
+	public Map<String, Object> invoke() {
+		return productSearchIndex.statistics();
+	}
+
+}
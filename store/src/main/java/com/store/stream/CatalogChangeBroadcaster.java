@@ -0,0 +1,485 @@
+package com.store.stream;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.store.async.RepositoryExecutor;
+import com.store.datasource.DataSourceRoute;
+import com.store.domain.CatalogChange;
+import com.store.event.CatalogChangeOutbox;
+import com.store.exception.ServiceUnavailableException;
+import com.store.repository.CatalogChangeRepository;
+import com.store.repository.OffsetLimitRequest;
+
+/**
+ * Pushes the catalog changes to Server-Sent Events subscribers as they
+ * commit. Each change is sent as a {@value #CHANGE} event whose id is its
+ * sequence number. The changes are read from the outbox table, every
+ * {@code store.changes.stream.poll-ms}: a poll reads the highest committed
+ * number from the {@link CatalogChangeOutbox} and, when it moved, the changes
+ * up to it, a page at a time. The outbox numbers the changes in commit order
+ * whichever instance makes them, so the stream misses none of them. The first
+ * poll only takes the current number, live subscribers starting from there.
+ * <p>
+ * The poll hands the changes over to a queue. One fan-out thread copies
+ * each into the bounded buffer of every subscriber
+ * ({@code store.changes.stream.buffer-size}) without waiting, and a small
+ * pool ({@code store.changes.stream.writer-threads}) writes each buffer to
+ * its connection, one subscriber at a time, so a slow subscriber costs no
+ * more than a writer thread while its socket is full. A subscriber whose
+ * buffer overflows is sent what it has, then a {@value #RESYNC} event naming
+ * the last sequence it got, and is closed; it reconnects from there.
+ * <p>
+ * A subscriber opening with a sequence number (the {@code Last-Event-ID} of
+ * a reconnecting {@code EventSource}) is first sent the changes after it from
+ * the outbox table, up to {@code store.changes.stream.max-replay} of them,
+ * live changes being buffered meanwhile. The repository executor only reads
+ * the pages, one at a time; the writer pool sends them, as it does the
+ * buffer, and asks for the next page once a page is out. Beyond the
+ * {@code max-replay} changes it gets a {@value #RESYNC} event too, and
+ * resumes by reconnecting or from the change feed. An idle stream gets a comment every
+ * {@code store.changes.stream.heartbeat-ms} to keep proxies from closing it.
+ */
+@Component
+public class CatalogChangeBroadcaster {
+
+	public static final String CHANGE = "change";
+
+	public static final String RESYNC = "resync";
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(CatalogChangeBroadcaster.class);
+
+	private static final Object HEARTBEAT = new Object();
+
+	@Autowired
+	@Qualifier("catalogChangeRepository")
+	private CatalogChangeRepository catalogChangeRepository;
+
+	@Autowired
+	private CatalogChangeOutbox catalogChangeOutbox;
+
+	@Autowired
+	private RepositoryExecutor repositoryExecutor;
+
+	@Value("${store.changes.stream.max-subscribers:10000}")
+	private int maxSubscribers = 10000;
+
+	@Value("${store.changes.stream.buffer-size:256}")
+	private int bufferSize = 256;
+
+	@Value("${store.changes.stream.writer-threads:4}")
+	private int writerThreads = 4;
+
+	@Value("${store.changes.stream.max-replay:1000}")
+	private int maxReplay = 1000;
+
+	@Value("${store.changes.stream.heartbeat-ms:15000}")
+	private long heartbeatMillis = 15000;
+
+	@Value("${store.changes.stream.timeout-ms:1800000}")
+	private long timeoutMillis = 1800000;
+
+	@Value("${store.changes.stream.poll-ms:500}")
+	private long pollMillis = 500;
+
+	@Value("${store.changes.page-size:100}")
+	private int replayPageSize = 100;
+
+	private final Set<Subscriber> subscribers = Collections
+			.newSetFromMap(new ConcurrentHashMap<Subscriber, Boolean>());
+
+	private final BlockingQueue<CatalogChange> released = new LinkedBlockingQueue<CatalogChange>();
+
+	private Thread fanOut;
+
+	private ExecutorService writers;
+
+	private ScheduledExecutorService scheduler;
+
+	// one poll at a time; the last sequence polled, -1 before the first poll
+	private final AtomicBoolean polling = new AtomicBoolean();
+	private volatile long polledUpTo = -1;
+
+	private ServiceUnavailableException full;
+
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder overflows = new LongAdder();
+	private final LongAdder replayed = new LongAdder();
+
+	@PostConstruct
+	public void init() {
+		full = new ServiceUnavailableException(
+				"the change stream is full, retry in 5 s", 5);
+		writers = Executors.newFixedThreadPool(writerThreads,
+				new StreamThreadFactory("store-change-writer-"));
+		scheduler = Executors
+				.newSingleThreadScheduledExecutor(new StreamThreadFactory(
+						"store-change-scheduler-"));
+		scheduler.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis,
+				TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis,
+				heartbeatMillis, TimeUnit.MILLISECONDS);
+		fanOut = new StreamThreadFactory("store-change-fan-out-")
+				.newThread(this::fanOut);
+		fanOut.start();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		fanOut.interrupt();
+		scheduler.shutdownNow();
+		writers.shutdownNow();
+		for (Subscriber subscriber : subscribers) {
+			subscriber.close();
+		}
+	}
+
+	/**
+	 * Reads the changes committed since the last poll and hands them to the
+	 * fan-out, unless a poll is running already. Polls again at once after a
+	 * full page.
+	 */
+	public void poll() {
+		if (!polling.compareAndSet(false, true)) {
+			return;
+		}
+		long after = polledUpTo;
+		int pageSize = replayPageSize;
+		try {
+			readFromPrimary(() -> {
+				long upTo = catalogChangeOutbox.visibleUpTo();
+				if (after < 0 || upTo <= after) {
+					polledUpTo = Math.max(after, upTo);
+					return Collections.<CatalogChange> emptyList();
+				}
+				return catalogChangeRepository.findChanges(after, upTo,
+						new OffsetLimitRequest(0, pageSize));
+			}).whenComplete((page, failure) -> {
+				boolean more = false;
+				if (failure != null) {
+					logger.warn("polling the change stream failed", failure);
+				} else if (!page.isEmpty()) {
+					released.addAll(page);
+					polledUpTo = page.get(page.size() - 1).getSequence();
+					more = page.size() == pageSize;
+				}
+				polling.set(false);
+				if (more) {
+					poll();
+				}
+			});
+		} catch (ServiceUnavailableException e) {
+			// the executor is full: the next tick retries
+			polling.set(false);
+		}
+	}
+
+	/**
+	 * Opens a stream of the changes following {@code after}, or of the
+	 * changes from now on when it is {@code null}.
+	 *
+	 * @throws ServiceUnavailableException with
+	 *             {@code store.changes.stream.max-subscribers} streams open,
+	 *             or when the replay cannot be queued
+	 */
+	public SseEmitter subscribe(Long after) {
+		if (subscribers.size() >= maxSubscribers) {
+			throw full;
+		}
+		SseEmitter emitter = new SseEmitter(timeoutMillis);
+		Subscriber subscriber = new Subscriber(emitter, bufferSize,
+				after != null ? after : Math.max(polledUpTo, 0L));
+		emitter.onCompletion(subscriber::close);
+		emitter.onTimeout(subscriber::close);
+		subscribers.add(subscriber);
+
+		if (after == null) {
+			subscriber.goLive();
+			return emitter;
+		}
+		try {
+			fetch(subscriber);
+		} catch (ServiceUnavailableException e) {
+			subscriber.close();
+			throw e;
+		}
+		return emitter;
+	}
+
+	public Map<String, Object> statistics() {
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		statistics.put("subscribers", subscribers.size());
+		statistics.put("polledUpTo", polledUpTo);
+		statistics.put("pending", released.size());
+		statistics.put("sent", sent.sum());
+		statistics.put("replayed", replayed.sum());
+		statistics.put("overflows", overflows.sum());
+		return statistics;
+	}
+
+	// the next replay page from the outbox table, handed to the writers to send
+	private void fetch(Subscriber subscriber) {
+		int pageSize = Math.min(replayPageSize, maxReplay - subscriber.replayCount);
+		if (pageSize <= 0) {
+			writers.execute(subscriber::resync);
+			return;
+		}
+		long after = subscriber.lastSequence;
+		readFromPrimary(() -> catalogChangeRepository.findChanges(after,
+				catalogChangeOutbox.visibleUpTo(), new OffsetLimitRequest(0,
+						pageSize))).whenComplete((page, failure) -> {
+			if (failure != null) {
+				logger.warn("replay of the change stream failed", failure);
+				subscriber.close();
+			} else {
+				subscriber.replay(page, pageSize);
+			}
+		});
+	}
+
+	// the primary, as for the change feed
+	private <T> CompletableFuture<T> readFromPrimary(Supplier<T> read) {
+		return repositoryExecutor.submitReadOnly(() -> {
+			DataSourceRoute previous = DataSourceRoute
+					.bind(DataSourceRoute.PRIMARY);
+			try {
+				return read.get();
+			} finally {
+				DataSourceRoute.restore(previous);
+			}
+		});
+	}
+
+	private void fanOut() {
+		try {
+			while (true) {
+				CatalogChange change = released.take();
+				for (Subscriber subscriber : subscribers) {
+					subscriber.offer(change);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void heartbeat() {
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber.buffer.isEmpty()) {
+				subscriber.offer(HEARTBEAT);
+			}
+		}
+	}
+
+	private final class Subscriber {
+
+		private final SseEmitter emitter;
+		private final BlockingQueue<Object> buffer;
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		// written by the thread sending, one at a time
+		private volatile long lastSequence;
+
+		// buffered but not sent until the replay is over
+		private volatile boolean live;
+
+		// the page fetched and not sent yet, and the count sent before it
+		private volatile List<CatalogChange> replayPage;
+		private volatile int replayPageSize;
+		private volatile int replayCount;
+
+		private volatile boolean overflowed;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		Subscriber(SseEmitter emitter, int bufferSize, long lastSequence) {
+			this.emitter = emitter;
+			this.buffer = new ArrayBlockingQueue<Object>(bufferSize);
+			this.lastSequence = lastSequence;
+		}
+
+		void offer(Object item) {
+			if (closed.get() || overflowed) {
+				return;
+			}
+			if (!buffer.offer(item)) {
+				if (item == HEARTBEAT) {
+					return;
+				}
+				overflowed = true;
+				overflows.increment();
+			}
+			schedule();
+		}
+
+		void goLive() {
+			live = true;
+			schedule();
+		}
+
+		void replay(List<CatalogChange> page, int pageSize) {
+			replayPageSize = pageSize;
+			replayPage = page;
+			// not live yet, so no drain is scheduled for the buffer
+			if (!closed.get() && scheduled.compareAndSet(false, true)) {
+				writers.execute(this::drain);
+			}
+		}
+
+		// false while the next page is being fetched
+		private boolean sendReplayPage() {
+			List<CatalogChange> page = replayPage;
+			if (page == null) {
+				return true;
+			}
+			replayPage = null;
+			for (CatalogChange change : page) {
+				if (!send(change)) {
+					return false;
+				}
+				replayed.increment();
+			}
+			replayCount += page.size();
+			if (page.size() < replayPageSize) {
+				live = true;
+				return true;
+			}
+			scheduled.set(false);
+			try {
+				fetch(this);
+			} catch (ServiceUnavailableException e) {
+				// the executor is full: the client resumes from here
+				resync();
+			}
+			return false;
+		}
+
+		private void schedule() {
+			if (live && !closed.get() && scheduled.compareAndSet(false, true)) {
+				writers.execute(this::drain);
+			}
+		}
+
+		private void drain() {
+			if (!sendReplayPage()) {
+				return;
+			}
+			do {
+				Object item;
+				while (!closed.get() && (item = buffer.poll()) != null) {
+					if (item == HEARTBEAT) {
+						sendHeartbeat();
+					} else if (!send((CatalogChange) item)) {
+						return;
+					}
+				}
+				if (overflowed && !closed.get()) {
+					resync();
+				}
+				scheduled.set(false);
+				// an offer may have come between the last poll and the reset
+			} while (!closed.get() && !buffer.isEmpty()
+					&& scheduled.compareAndSet(false, true));
+		}
+
+		boolean send(CatalogChange change) {
+			// the replay and the live changes overlap
+			if (change.getSequence() <= lastSequence) {
+				return true;
+			}
+			try {
+				emitter.send(SseEmitter.event()
+						.id(Long.toString(change.getSequence())).name(CHANGE)
+						.data(change, MediaType.APPLICATION_JSON));
+			} catch (IOException | IllegalStateException e) {
+				close();
+				return false;
+			}
+			lastSequence = change.getSequence();
+			sent.increment();
+			return true;
+		}
+
+		private void sendHeartbeat() {
+			try {
+				emitter.send(SseEmitter.event().comment("heartbeat"));
+			} catch (IOException | IllegalStateException e) {
+				close();
+			}
+		}
+
+		void resync() {
+			try {
+				emitter.send(SseEmitter.event()
+						.id(Long.toString(lastSequence)).name(RESYNC)
+						.data(Collections.singletonMap("after", lastSequence),
+								MediaType.APPLICATION_JSON));
+				emitter.complete();
+			} catch (IOException | IllegalStateException e) {
+				// closed below all the same
+			}
+			close();
+		}
+
+		void close() {
+			if (closed.compareAndSet(false, true)) {
+				subscribers.remove(this);
+				buffer.clear();
+				try {
+					emitter.complete();
+				} catch (IllegalStateException e) {
+					// already completed
+				}
+			}
+		}
+
+	}
+
+	private static final class StreamThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		StreamThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.store.stream;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint ({@code /changestreamstats}) reporting the
+ * {@link CatalogChangeBroadcaster}: open streams, the last sequence polled,
+ * changes waiting for the fan-out, changes sent live and replayed, and
+ * subscribers dropped for a full buffer.
+ */
+@Component
+public class ChangeStreamStatisticsEndpoint extends
+		AbstractEndpoint<Map<String, Object>> {
+
+	@Autowired
+	private CatalogChangeBroadcaster catalogChangeBroadcaster;
+
+	public ChangeStreamStatisticsEndpoint() {
+		super("changestreamstats", false);
+	}
+
+	@Override
+	public Map<String, Object> invoke() {
+		return catalogChangeBroadcaster.statistics();
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.store.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size Bloom filter over {@code long} and string keys. It answers
+ * "definitely absent" or "maybe present", never a false "absent". Keys can
+ * only be added; removing one would clear bits shared with other keys.
+ * Adds and lookups are thread-safe and lock-free, and neither allocates.
+ */
+public class BloomFilter {
+
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+
+	public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+		if (expectedInsertions < 1) {
+			expectedInsertions = 1;
+		}
+		double ln2 = Math.log(2);
+		long m = (long) Math.ceil(-expectedInsertions
+				* Math.log(falsePositiveRate) / (ln2 * ln2));
+		int words = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+				(m + 63) >>> 6));
+		this.bits = new AtomicLongArray(words);
+		this.bitCount = (long) words << 6;
+		this.hashCount = Math.max(1,
+				(int) Math.round((double) bitCount / expectedInsertions * ln2));
+	}
+
+	public void put(long key) {
+		set(mix(key));
+	}
+
+	public void put(CharSequence key) {
+		set(hash(key));
+	}
+
+	public boolean mightContain(long key) {
+		return test(mix(key));
+	}
+
+	public boolean mightContain(CharSequence key) {
+		return test(hash(key));
+	}
+
+	public long bitSize() {
+		return bitCount;
+	}
+
+	public int hashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * The fraction of bits set. The false positive rate is roughly this value
+	 * raised to {@link #hashCount()}, which shows when the filter is
+	 * saturated and should be rebuilt larger.
+	 */
+	public double fillRatio() {
+		long set = 0;
+		for (int i = 0; i < bits.length(); i++) {
+			set += Long.bitCount(bits.get(i));
+		}
+		return (double) set / bitCount;
+	}
+
+	private void set(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+			int word = (int) (index >>> 6);
+			long mask = 1L << index;
+			long current;
+			while (((current = bits.get(word)) & mask) == 0
+					&& !bits.compareAndSet(word, current, current | mask)) {
+				// another thread changed the word; retry with its value
+			}
+		}
+	}
+
+	private boolean test(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+			if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long hash(CharSequence key) {
+		// FNV-1a over the chars, finished with the 64 bit mixer
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
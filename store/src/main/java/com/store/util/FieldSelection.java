@@ -0,0 +1,58 @@
+package com.store.util;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The fields a client asked for with {@code ?fields=a,b,c}, plus the
+ * associations it asked to embed with {@code ?expand=x}. An absent
+ * {@code fields} parameter selects every default field; associations are only
+ * selected when named explicitly.
+ */
+public final class FieldSelection {
+
+	private final Set<String> fields;
+	private final Set<String> expansions;
+
+	private FieldSelection(Set<String> fields, Set<String> expansions) {
+		this.fields = fields;
+		this.expansions = expansions;
+	}
+
+	public static FieldSelection parse(String fields, String expand) {
+		Set<String> expansions = split(expand);
+		Set<String> selected = split(fields);
+		if (selected != null && expansions != null) {
+			selected.addAll(expansions);
+		}
+		return new FieldSelection(selected,
+				expansions == null ? Collections.<String> emptySet()
+						: expansions);
+	}
+
+	/** Whether a default (non-association) field should be written. */
+	public boolean includes(String field) {
+		return fields == null || fields.contains(field);
+	}
+
+	/** Whether an association should be fetched and embedded. */
+	public boolean expands(String association) {
+		return expansions.contains(association)
+				|| (fields != null && fields.contains(association));
+	}
+
+	private static Set<String> split(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+		Set<String> names = new HashSet<String>();
+		for (String name : value.split(",")) {
+			if (!name.trim().isEmpty()) {
+				names.add(name.trim());
+			}
+		}
+		return names;
+	}
+
+}
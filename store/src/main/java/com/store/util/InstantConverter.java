@@ -0,0 +1,27 @@
+package com.store.util;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+@Converter
+public class InstantConverter implements AttributeConverter<Instant, Timestamp> {
+
+    @Override
+    public Timestamp convertToDatabaseColumn(Instant entityValue) {
+        if (entityValue == null) {
+            return null;
+        }
+        return Timestamp.from(entityValue);
+    }
+
+    @Override
+    public Instant convertToEntityAttribute(Timestamp databaseValue) {
+        if (databaseValue == null) {
+            return null;
+        }
+        return databaseValue.toInstant();
+    }
+}
@@ -0,0 +1,41 @@
+package com.store.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.store.exception.InvalidCursorException;
+
+/**
+ * Opaque continuation token for keyset pagination. The token wraps the last
+ * primary key a client has seen; the next page is read with
+ * {@code WHERE id > :key ORDER BY id}, so the database never has to skip rows.
+ */
+public final class KeysetCursor {
+
+	private static final String PREFIX = "k:";
+
+	private KeysetCursor() {
+
+	}
+
+	public static String encode(long key) {
+		byte[] raw = (PREFIX + key).getBytes(StandardCharsets.UTF_8);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+	}
+
+	public static long decode(String cursor) {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor),
+					StandardCharsets.UTF_8);
+			if (!raw.startsWith(PREFIX)) {
+				throw new InvalidCursorException("the cursor " + cursor
+						+ " is not valid");
+			}
+			return Long.parseLong(raw.substring(PREFIX.length()));
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursorException("the cursor " + cursor
+					+ " is not valid");
+		}
+	}
+
+}
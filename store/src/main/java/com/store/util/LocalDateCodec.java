@@ -0,0 +1,157 @@
+package com.store.util;
+
+import java.time.LocalDate;
+
+/**
+ * ISO-8601 {@code yyyy-MM-dd} codec for the dates of the catalog. Parsing
+ * reads the digits straight from a character buffer, and both directions go
+ * through a small direct-mapped table of recently seen dates, so a listing
+ * whose dates repeat allocates neither {@link LocalDate}s nor strings for
+ * them. Anything outside the four digit years falls back to {@link LocalDate}
+ * itself, which keeps the output identical to
+ * {@code DateTimeFormatter.ISO_LOCAL_DATE}.
+ */
+public final class LocalDateCodec {
+
+    private static final int TABLE_BITS = 12;
+
+    private static final int ISO_LENGTH = 10;
+
+    private static final Entry[] TABLE = new Entry[1 << TABLE_BITS];
+
+    private LocalDateCodec() {
+
+    }
+
+    public static String format(LocalDate date) {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            return date.toString();
+        }
+        int month = date.getMonthValue();
+        int day = date.getDayOfMonth();
+        int key = key(year, month, day);
+        int slot = slot(key);
+        Entry entry = TABLE[slot];
+        if (entry == null || entry.key != key) {
+            entry = new Entry(key, date, iso(year, month, day));
+            TABLE[slot] = entry;
+        }
+        return entry.iso;
+    }
+
+    public static LocalDate parse(CharSequence text) {
+        if (text.length() == ISO_LENGTH) {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 2);
+            int day = digits(text, 8, 2);
+            if (text.charAt(4) == '-' && text.charAt(7) == '-'
+                    && (year | month | day) >= 0) {
+                return lookup(year, month, day);
+            }
+        }
+        return LocalDate.parse(text);
+    }
+
+    /**
+     * Parses {@code length} characters of {@code text} from {@code offset},
+     * as handed out by {@code JsonParser#getTextCharacters()}.
+     *
+     * @throws java.time.DateTimeException if the text is not a valid date
+     */
+    public static LocalDate parse(char[] text, int offset, int length) {
+        if (length == ISO_LENGTH) {
+            int year = digits(text, offset, 4);
+            int month = digits(text, offset + 5, 2);
+            int day = digits(text, offset + 8, 2);
+            if (text[offset + 4] == '-' && text[offset + 7] == '-'
+                    && (year | month | day) >= 0) {
+                return lookup(year, month, day);
+            }
+        }
+        return LocalDate.parse(new String(text, offset, length));
+    }
+
+    private static LocalDate lookup(int year, int month, int day) {
+        int key = key(year, month, day);
+        int slot = slot(key);
+        Entry entry = TABLE[slot];
+        if (entry != null && entry.key == key) {
+            return entry.date;
+        }
+        // validates the month and the day of month, as the strict ISO parser does
+        LocalDate date = LocalDate.of(year, month, day);
+        TABLE[slot] = new Entry(key, date, iso(year, month, day));
+        return date;
+    }
+
+    private static int key(int year, int month, int day) {
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static int slot(int key) {
+        return (key * 0x9E3779B9) >>> (32 - TABLE_BITS);
+    }
+
+    /**
+     * Value of {@code count} decimal digits, or -1 if any of them is not one.
+     */
+    private static int digits(char[] text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int digits(CharSequence text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static String iso(int year, int month, int day) {
+        char[] chars = new char[ISO_LENGTH];
+        chars[0] = (char) ('0' + year / 1000);
+        chars[1] = (char) ('0' + year / 100 % 10);
+        chars[2] = (char) ('0' + year / 10 % 10);
+        chars[3] = (char) ('0' + year % 10);
+        chars[4] = '-';
+        chars[5] = (char) ('0' + month / 10);
+        chars[6] = (char) ('0' + month % 10);
+        chars[7] = '-';
+        chars[8] = (char) ('0' + day / 10);
+        chars[9] = (char) ('0' + day % 10);
+        return new String(chars);
+    }
+
+    /**
+     * A slot of the table. The table is read and written without any
+     * synchronization: an entry has only final fields, so a thread seeing it
+     * sees it whole, and two threads filling the same slot at once lose
+     * nothing but one of the entries, which is computed again on its next
+     * miss.
+     */
+    private static final class Entry {
+
+        final int key;
+        final LocalDate date;
+        final String iso;
+
+        Entry(int key, LocalDate date, String iso) {
+            this.key = key;
+            this.date = date;
+            this.iso = iso;
+        }
+    }
+}
@@ -6,15 +6,37 @@ import java.time.LocalDate;
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
 
+/**
+ * Maps {@link LocalDate} to a SQL {@code DATE}. {@code Date.valueOf} and
+ * {@code Date#toLocalDate} both go through a calendar of the default time zone,
+ * so the local midnight of recently converted days is kept in two small
+ * direct-mapped tables, one looked up by day and one by instant, and only a
+ * miss pays for the calendar. Like {@code java.sql.Date} itself, this assumes
+ * the default time zone of the JVM does not change while it runs.
+ */
 @Converter
 public class LocalDateConverter implements AttributeConverter<LocalDate, Date> {
 
+    private static final int TABLE_BITS = 10;
+
+    // unsynchronized, as the table of LocalDateCodec, for the same reason
+    private static final Entry[] BY_DAY = new Entry[1 << TABLE_BITS];
+    private static final Entry[] BY_MILLIS = new Entry[1 << TABLE_BITS];
+
     @Override
     public Date convertToDatabaseColumn(LocalDate entityValue) {
         if (entityValue == null) {
             return null;
         }
-        return Date.valueOf(entityValue);
+        long epochDay = entityValue.toEpochDay();
+        int slot = slot(epochDay);
+        Entry entry = BY_DAY[slot];
+        if (entry == null || entry.epochDay != epochDay) {
+            entry = new Entry(entityValue, Date.valueOf(entityValue).getTime());
+            BY_DAY[slot] = entry;
+        }
+        // java.sql.Date is mutable, so every column value gets its own
+        return new Date(entry.millis);
     }
 
     @Override
@@ -22,6 +44,30 @@ public class LocalDateConverter implements AttributeConverter<LocalDate, Date> {
         if (databaseValue == null) {
             return null;
         }
-        return databaseValue.toLocalDate();
+        long millis = databaseValue.getTime();
+        int slot = slot(millis);
+        Entry entry = BY_MILLIS[slot];
+        if (entry == null || entry.millis != millis) {
+            entry = new Entry(databaseValue.toLocalDate(), millis);
+            BY_MILLIS[slot] = entry;
+        }
+        return entry.date;
+    }
+
+    private static int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - TABLE_BITS));
+    }
+
+    private static final class Entry {
+
+        final long epochDay;
+        final LocalDate date;
+        final long millis;
+
+        Entry(LocalDate date, long millis) {
+            this.epochDay = date.toEpochDay();
+            this.date = date;
+            this.millis = millis;
+        }
     }
-}
\ No newline at end of file
+}
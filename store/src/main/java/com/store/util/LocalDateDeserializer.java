@@ -1,10 +1,12 @@
 package com.store.util;
 
 import java.io.IOException;
+import java.time.DateTimeException;
 import java.time.LocalDate;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 
@@ -20,7 +22,14 @@ public class LocalDateDeserializer extends StdDeserializer<LocalDate> {
     @Override
     public LocalDate deserialize(JsonParser jp, DeserializationContext ctxt)
             throws IOException, JsonProcessingException {
-        return LocalDate.parse(jp.readValueAs(String.class));
+        if (jp.getCurrentToken() != JsonToken.VALUE_STRING) {
+            return LocalDate.parse(jp.readValueAs(String.class));
+        }
+        try {
+            return LocalDateCodec.parse(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+        } catch (DateTimeException e) {
+            throw ctxt.weirdStringException(jp.getText(), LocalDate.class, e.getMessage());
+        }
     }
 
 }
\ No newline at end of file
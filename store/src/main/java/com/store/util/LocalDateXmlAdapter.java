@@ -0,0 +1,28 @@
+package com.store.util;
+
+import java.time.LocalDate;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+/**
+ * Binds {@link LocalDate} to an ISO-8601 {@code xs:date} string for JAXB, which
+ * cannot marshal the class on its own since it has no no-arg constructor.
+ */
+public class LocalDateXmlAdapter extends XmlAdapter<String, LocalDate> {
+
+    @Override
+    public LocalDate unmarshal(String value) {
+        if (value == null) {
+            return null;
+        }
+        return LocalDateCodec.parse(value);
+    }
+
+    @Override
+    public String marshal(LocalDate value) {
+        if (value == null) {
+            return null;
+        }
+        return LocalDateCodec.format(value);
+    }
+}
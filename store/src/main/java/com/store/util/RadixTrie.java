@@ -0,0 +1,330 @@
+package com.store.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A radix trie of string keys for prefix completion. Every key carries a
+ * display value and a weight, the number of times it was added and not yet
+ * removed, and completions are returned heaviest first, then in key order.
+ * <p>
+ * Chains of single-child nodes are collapsed into one edge labelled with a
+ * {@code char[]}, and children are kept in two parallel sorted arrays rather
+ * than maps, so a node costs a few dozen bytes. Each node also records the
+ * heaviest weight below it; a completion is then a best-first walk that
+ * visits only the branches able to make the top {@code limit}, instead of the
+ * whole subtree under the prefix.
+ * <p>
+ * Not thread-safe: callers serialise writers against readers.
+ */
+public class RadixTrie {
+
+	private static final char[] NO_CHARS = new char[0];
+	private static final Node[] NO_NODES = new Node[0];
+
+	private static final Comparator<Candidate> BEST_FIRST = (a, b) -> a.weight != b.weight ? Integer
+			.compare(b.weight, a.weight) : a.text.compareTo(b.text);
+
+	private final Node root = new Node(NO_CHARS);
+
+	private int size;
+
+	private int nodeCount = 1;
+
+	/**
+	 * Adds one occurrence of {@code key}. The display value of a new key is
+	 * {@code value}; an existing key keeps the one it has.
+	 */
+	public void add(String key, String value) {
+		List<Node> path = new ArrayList<Node>();
+		Node node = root;
+		int index = 0;
+		while (true) {
+			path.add(node);
+			if (index == key.length()) {
+				if (node.weight++ == 0) {
+					node.value = value;
+					size++;
+				}
+				break;
+			}
+			int child = node.childIndex(key.charAt(index));
+			if (child < 0) {
+				Node leaf = new Node(key.substring(index).toCharArray());
+				leaf.value = value;
+				leaf.weight = 1;
+				leaf.best = 1;
+				node.insertChild(leaf);
+				nodeCount++;
+				size++;
+				break;
+			}
+			Node next = node.children[child];
+			int common = commonLength(next.label, key, index);
+			if (common < next.label.length) {
+				// the key leaves the edge halfway: split it
+				Node middle = new Node(Arrays.copyOf(next.label, common));
+				next.label = Arrays.copyOfRange(next.label, common,
+						next.label.length);
+				middle.insertChild(next);
+				middle.best = next.best;
+				node.children[child] = middle;
+				nodeCount++;
+				next = middle;
+			}
+			index += common;
+			node = next;
+		}
+		for (int i = path.size() - 1; i >= 0; i--) {
+			path.get(i).updateBest();
+		}
+	}
+
+	/**
+	 * Removes one occurrence of {@code key}; the key goes once its weight
+	 * drops to zero. Unknown keys are ignored.
+	 */
+	public void remove(String key) {
+		List<Node> path = new ArrayList<Node>();
+		Node node = root;
+		int index = 0;
+		while (index < key.length()) {
+			path.add(node);
+			int child = node.childIndex(key.charAt(index));
+			if (child < 0) {
+				return;
+			}
+			node = node.children[child];
+			if (commonLength(node.label, key, index) < node.label.length) {
+				return;
+			}
+			index += node.label.length;
+		}
+		if (node.weight == 0) {
+			return;
+		}
+		if (--node.weight == 0) {
+			node.value = null;
+			size--;
+			if (node != root) {
+				prune(node, path);
+			}
+		}
+		node.updateBest();
+		for (int i = path.size() - 1; i >= 0; i--) {
+			path.get(i).updateBest();
+		}
+	}
+
+	/**
+	 * The display values of the {@code limit} heaviest keys starting with
+	 * {@code prefix}.
+	 */
+	public List<String> complete(String prefix, int limit) {
+		List<String> completions = new ArrayList<String>(Math.min(limit, 16));
+		if (limit <= 0) {
+			return completions;
+		}
+
+		Node node = root;
+		int index = 0;
+		while (index < prefix.length()) {
+			int child = node.childIndex(prefix.charAt(index));
+			if (child < 0) {
+				return completions;
+			}
+			node = node.children[child];
+			int common = commonLength(node.label, prefix, index);
+			if (common < node.label.length && index + common < prefix.length()) {
+				return completions;
+			}
+			index += node.label.length;
+		}
+		String text = index == prefix.length() ? prefix : prefix
+				+ new String(node.label, node.label.length
+						- (index - prefix.length()), index - prefix.length());
+
+		PriorityQueue<Candidate> candidates = new PriorityQueue<Candidate>(
+				BEST_FIRST);
+		candidates.add(new Candidate(node, text, node.best, false));
+		while (!candidates.isEmpty() && completions.size() < limit) {
+			Candidate candidate = candidates.poll();
+			if (candidate.complete) {
+				completions.add(candidate.node.value);
+				continue;
+			}
+			Node current = candidate.node;
+			if (current.weight > 0) {
+				candidates.add(new Candidate(current, candidate.text,
+						current.weight, true));
+			}
+			for (Node child : current.children) {
+				candidates.add(new Candidate(child, candidate.text
+						+ new String(child.label), child.best, false));
+			}
+		}
+		return completions;
+	}
+
+	/**
+	 * The number of distinct keys.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * The heap taken by the trie, display values included, estimated for a
+	 * 64-bit JVM with compressed references.
+	 */
+	public long estimatedBytes() {
+		long bytes = 0;
+		List<Node> pending = new ArrayList<Node>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			Node node = pending.remove(pending.size() - 1);
+			// header and six fields
+			bytes += 40;
+			bytes += arrayBytes(node.label.length, 2);
+			if (node.children.length > 0) {
+				bytes += arrayBytes(node.children.length, 2);
+				bytes += arrayBytes(node.children.length, 4);
+			}
+			if (node.value != null) {
+				bytes += 24 + arrayBytes(node.value.length(), 2);
+			}
+			pending.addAll(Arrays.asList(node.children));
+		}
+		return bytes;
+	}
+
+	private void prune(Node node, List<Node> path) {
+		Node parent = path.get(path.size() - 1);
+		if (node.children.length == 0) {
+			parent.removeChild(node);
+			nodeCount--;
+			// the parent may now be a pass-through node
+			if (parent != root && parent.weight == 0
+					&& parent.children.length == 1) {
+				mergeWithChild(parent);
+			}
+		} else if (node.children.length == 1) {
+			mergeWithChild(node);
+		}
+	}
+
+	private void mergeWithChild(Node node) {
+		Node child = node.children[0];
+		char[] label = Arrays.copyOf(node.label, node.label.length
+				+ child.label.length);
+		System.arraycopy(child.label, 0, label, node.label.length,
+				child.label.length);
+		node.label = label;
+		node.firsts = child.firsts;
+		node.children = child.children;
+		node.value = child.value;
+		node.weight = child.weight;
+		node.best = child.best;
+		nodeCount--;
+	}
+
+	private static int commonLength(char[] label, String key, int offset) {
+		int max = Math.min(label.length, key.length() - offset);
+		int i = 0;
+		while (i < max && label[i] == key.charAt(offset + i)) {
+			i++;
+		}
+		return i;
+	}
+
+	private static long arrayBytes(int length, int elementBytes) {
+		return (16 + (long) length * elementBytes + 7) & ~7L;
+	}
+
+	private static final class Node {
+
+		private char[] label;
+		private char[] firsts = NO_CHARS;
+		private Node[] children = NO_NODES;
+		private String value;
+		private int weight;
+		private int best;
+
+		Node(char[] label) {
+			this.label = label;
+		}
+
+		int childIndex(char first) {
+			int index = Arrays.binarySearch(firsts, first);
+			return index >= 0 ? index : -1;
+		}
+
+		void insertChild(Node child) {
+			int index = -Arrays.binarySearch(firsts, child.label[0]) - 1;
+			char[] newFirsts = new char[firsts.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(firsts, 0, newFirsts, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			newFirsts[index] = child.label[0];
+			newChildren[index] = child;
+			System.arraycopy(firsts, index, newFirsts, index + 1,
+					firsts.length - index);
+			System.arraycopy(children, index, newChildren, index + 1,
+					children.length - index);
+			firsts = newFirsts;
+			children = newChildren;
+		}
+
+		void removeChild(Node child) {
+			int index = childIndex(child.label[0]);
+			if (children.length == 1) {
+				firsts = NO_CHARS;
+				children = NO_NODES;
+				return;
+			}
+			char[] newFirsts = new char[firsts.length - 1];
+			Node[] newChildren = new Node[children.length - 1];
+			System.arraycopy(firsts, 0, newFirsts, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(firsts, index + 1, newFirsts, index,
+					firsts.length - index - 1);
+			System.arraycopy(children, index + 1, newChildren, index,
+					children.length - index - 1);
+			firsts = newFirsts;
+			children = newChildren;
+		}
+
+		void updateBest() {
+			int max = weight;
+			for (Node child : children) {
+				max = Math.max(max, child.best);
+			}
+			best = max;
+		}
+
+	}
+
+	private static final class Candidate {
+
+		private final Node node;
+		private final String text;
+		private final int weight;
+		private final boolean complete;
+
+		Candidate(Node node, String text, int weight, boolean complete) {
+			this.node = node;
+			this.text = text;
+			this.weight = weight;
+			this.complete = complete;
+		}
+
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.store.async;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The Java 21 virtual thread API behind {@link VirtualThreads}. Only compiled
+ * by the {@code java21} profile, which builds the store for Java 21.
+ */
+final class JdkVirtualThreads implements VirtualThreads.Provider {
+
+	@Override
+	public ThreadFactory factory(String prefix) {
+		return Thread.ofVirtual().name(prefix, 1).factory();
+	}
+
+	@Override
+	public ExecutorService newThreadPerTaskExecutor(String prefix) {
+		return Executors.newThreadPerTaskExecutor(factory(prefix));
+	}
+
+}
@@ -0,0 +1,20 @@
+-- Catalog changes are numbered from the catalog_change_counter row, locked
+-- and bumped in the committing transaction, instead of the pooled
+-- catalog_change_seq generator, so that the numbers commit in order across
+-- instances. Run this once against an existing schema, with every instance
+-- stopped, before the first start of a version using the counter.
+--
+-- The counter holds the last number handed out: the next change is
+-- numbered max(change_sequence) + 1.
+
+CREATE TABLE IF NOT EXISTS catalog_change_counter (
+  counter_id INT NOT NULL PRIMARY KEY,
+  last_sequence BIGINT NOT NULL
+);
+
+DELETE FROM catalog_change_counter;
+
+INSERT INTO catalog_change_counter (counter_id, last_sequence)
+SELECT 1, COALESCE(MAX(change_sequence), 0) FROM catalog_change;
+
+DROP TABLE IF EXISTS catalog_change_seq;
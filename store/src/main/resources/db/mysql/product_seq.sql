@@ -0,0 +1,15 @@
+-- Product ids come from the pooled product_seq generator instead of
+-- AUTO_INCREMENT, so that the inserts of POST /store/products/bulk can be
+-- batched. Run this once against an existing schema, with the application
+-- stopped, before the first start of a version using the generator.
+--
+-- The pooled optimizer takes the next_val it reads as the top of a block of
+-- increment_size (50) ids and hands out the 49 below it first. To make the
+-- first new id max(product_id) + 1, next_val is seeded 49 above it.
+
+CREATE TABLE IF NOT EXISTS product_seq (next_val BIGINT);
+
+DELETE FROM product_seq;
+
+INSERT INTO product_seq (next_val)
+SELECT COALESCE(MAX(product_id), 0) + 50 FROM product;
@@ -0,0 +1,211 @@
+package com.store.async.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import com.store.async.RepositoryExecutor;
+import com.store.async.VirtualThreads;
+import com.store.exception.ProductNotFoundException;
+import com.store.exception.ServiceUnavailableException;
+import com.store.metrics.SqlStatementStatistics;
+import com.store.metrics.SqlStatementTaskDecorator;
+
+public class RepositoryExecutorTest {
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private RepositoryExecutor repositoryExecutor;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+		repositoryExecutor = new RepositoryExecutor(transactionManager);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		repositoryExecutor.shutdown();
+	}
+
+	@Test
+	public void disabledExecutorRunsOnTheCallingThread() throws Exception {
+
+		repositoryExecutor.init();
+		Thread caller = Thread.currentThread();
+
+		CompletableFuture<Boolean> future = repositoryExecutor
+				.submit(() -> Thread.currentThread() == caller);
+
+		assertThat(future.isDone()).isTrue();
+		assertThat(future.get()).isTrue();
+		verify(transactionManager, times(1)).getTransaction(
+				any(TransactionDefinition.class));
+		verify(transactionManager, times(1)).commit(null);
+	}
+
+	@Test
+	public void failureCompletesWithTheThrownException() throws Exception {
+
+		repositoryExecutor.init();
+		ProductNotFoundException missing = ProductNotFoundException.forId(1L);
+
+		CompletableFuture<Object> future = repositoryExecutor.submit(() -> {
+			throw missing;
+		});
+
+		try {
+			future.get();
+			fail("the future should have failed");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause()).isSameAs(missing);
+		}
+		verify(transactionManager, times(1)).rollback(null);
+	}
+
+	@Test
+	public void readOnlyWorkRunsInAReadOnlyTransaction() throws Exception {
+
+		repositoryExecutor.init();
+		ArgumentCaptor<TransactionDefinition> definitions = ArgumentCaptor
+				.forClass(TransactionDefinition.class);
+
+		repositoryExecutor.submitReadOnly(() -> "read").get();
+		repositoryExecutor.submit(() -> "written").get();
+
+		verify(transactionManager, times(2)).getTransaction(
+				definitions.capture());
+		assertThat(definitions.getAllValues().get(0).isReadOnly()).isTrue();
+		assertThat(definitions.getAllValues().get(1).isReadOnly()).isFalse();
+		verify(transactionManager, times(2)).commit(null);
+	}
+
+	@Test
+	public void workWithoutTransactionLeavesTheManagerAlone() throws Exception {
+
+		repositoryExecutor.init();
+
+		assertThat(repositoryExecutor.submitWithoutTransaction(() -> "done")
+				.get()).isEqualTo("done");
+		verifyZeroInteractions(transactionManager);
+	}
+
+	@Test
+	public void saturatedExecutorRejectsAtOnce() throws Exception {
+
+		ReflectionTestUtils.setField(repositoryExecutor, "enabled", true);
+		ReflectionTestUtils.setField(repositoryExecutor, "poolSize", 1);
+		ReflectionTestUtils.setField(repositoryExecutor, "queueCapacity", 1);
+		repositoryExecutor.init();
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> running = repositoryExecutor
+				.submitWithoutTransaction(() -> {
+					started.countDown();
+					await(release);
+					return "running";
+				});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		CompletableFuture<String> queued = repositoryExecutor
+				.submitWithoutTransaction(() -> "queued");
+
+		try {
+			repositoryExecutor.submitWithoutTransaction(() -> "rejected");
+			fail("the third task should have been rejected");
+		} catch (ServiceUnavailableException e) {
+			assertThat(e.getRetryAfterSeconds()).isEqualTo(1);
+		}
+
+		release.countDown();
+		assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("running");
+		assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+		assertThat(repositoryExecutor.statistics())
+				.containsEntry("submitted", 3L)
+				.containsEntry("rejected", 1L)
+				.containsEntry("completed", 2L);
+	}
+
+	@Test
+	public void taskDecoratorsCarryRequestStateToThePool() throws Exception {
+
+		ReflectionTestUtils.setField(repositoryExecutor, "enabled", true);
+		ReflectionTestUtils.setField(repositoryExecutor, "poolSize", 1);
+		ReflectionTestUtils.setField(repositoryExecutor, "taskDecorators",
+				Collections.singletonList(new SqlStatementTaskDecorator()));
+		repositoryExecutor.init();
+
+		SqlStatementStatistics statistics = new SqlStatementStatistics();
+		SqlStatementStatistics.bind(statistics);
+		try {
+			repositoryExecutor.submitWithoutTransaction(() -> {
+				SqlStatementStatistics.current().record(1000L);
+				return null;
+			}).get(5, TimeUnit.SECONDS);
+		} finally {
+			SqlStatementStatistics.restore(null);
+		}
+
+		assertThat(statistics.getStatements()).isEqualTo(1L);
+		assertThat(repositoryExecutor.submitWithoutTransaction(
+				SqlStatementStatistics::current).get(5, TimeUnit.SECONDS))
+				.isNull();
+	}
+
+	@Test
+	public void virtualThreadsRunEveryTaskOnANewThread() throws Exception {
+
+		assumeTrue(VirtualThreads.isSupported());
+		ReflectionTestUtils.setField(repositoryExecutor, "enabled", true);
+		ReflectionTestUtils.setField(repositoryExecutor, "virtualThreads", true);
+		ReflectionTestUtils.setField(repositoryExecutor, "poolSize", 2);
+		repositoryExecutor.init();
+		Thread caller = Thread.currentThread();
+
+		assertThat(repositoryExecutor.submitWithoutTransaction(
+				() -> Thread.currentThread() != caller).get(5, TimeUnit.SECONDS))
+				.isTrue();
+		assertThat(repositoryExecutor.statistics()).containsEntry(
+				"virtualThreads", true);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void virtualThreadsAreRefusedWithoutRuntimeSupport() {
+
+		assumeFalse(VirtualThreads.isSupported());
+		ReflectionTestUtils.setField(repositoryExecutor, "enabled", true);
+		ReflectionTestUtils.setField(repositoryExecutor, "virtualThreads", true);
+		repositoryExecutor.init();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.store.cache.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.store.cache.CategoryCacheInvalidator;
+import com.store.cache.CategoryCountCache;
+import com.store.config.CacheConfig;
+import com.store.domain.Category;
+import com.store.domain.CategorySummary;
+import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
+
+public class CategoryCacheInvalidatorTest {
+
+	@InjectMocks
+	private CategoryCacheInvalidator categoryCacheInvalidator;
+
+	@Spy
+	private CacheManager cacheManager = new ConcurrentMapCacheManager(
+			CacheConfig.CATEGORIES_BY_ID, CacheConfig.CATEGORIES_BY_NAME);
+
+	@Mock
+	private CategoryCountCache categoryCountCache;
+
+	private Category category;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+
+		category = new Category("cat1", LocalDate.of(2016, 8, 22));
+		category.setCategoryId(1L);
+		put(1L, "cat1");
+		put(2L, "cat2");
+	}
+
+	@Test
+	public void updateShouldEvictOnlyThatCategory() {
+
+		categoryCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.categoryUpdated(category));
+
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_ID).get(1L)).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_NAME).get("cat1")).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_ID).get(2L)).isNotNull();
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_NAME).get("cat2")).isNotNull();
+	}
+
+	@Test
+	public void deleteShouldEvictThatCategory() {
+
+		categoryCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.categoryDeleted(category));
+
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_ID).get(1L)).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_NAME).get("cat1")).isNull();
+	}
+
+	@Test
+	public void createAndDeleteShouldDropTheCount() {
+
+		categoryCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.categoryCreated(category));
+		categoryCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.categoryDeleted(category));
+
+		verify(categoryCountCache, times(2)).invalidate();
+	}
+
+	@Test
+	public void updateShouldKeepTheCount() {
+
+		categoryCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.categoryUpdated(category));
+
+		verify(categoryCountCache, never()).invalidate();
+	}
+
+	@Test
+	public void productDeleteShouldClearAllCategories() {
+
+		Product product = new Product(5L, "SKU_A", "ProductA", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+
+		categoryCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.productDeleted(product));
+
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_ID).get(1L)).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_ID).get(2L)).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_NAME).get("cat2")).isNull();
+	}
+
+	@Test
+	public void productUpdateShouldNotEvict() {
+
+		Product product = new Product(5L, "SKU_A", "ProductA", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+
+		categoryCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.productUpdated(product, "SKU_B"));
+
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_ID).get(1L)).isNotNull();
+		assertThat(cacheManager.getCache(CacheConfig.CATEGORIES_BY_NAME).get("cat1")).isNotNull();
+	}
+
+	private void put(long id, String name) {
+		CategorySummary summary = new CategorySummary(id, name, LocalDate.of(
+				2016, 8, 22), LocalDate.of(2016, 8, 22), 0L);
+		cacheManager.getCache(CacheConfig.CATEGORIES_BY_ID).put(id, summary);
+		cacheManager.getCache(CacheConfig.CATEGORIES_BY_NAME).put(name, summary);
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.store.cache.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import com.store.cache.CategoryCountCache;
+import com.store.datasource.DataSourceRoute;
+import com.store.repository.CategoryRepository;
+
+public class CategoryCountCacheTest {
+
+	@InjectMocks
+	private CategoryCountCache categoryCountCache;
+
+	@Mock
+	private CategoryRepository categoryRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private DataSourceRoute countedOn;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+		when(categoryRepository.count()).thenAnswer(invocation -> {
+			countedOn = DataSourceRoute.current();
+			return 3L;
+		});
+	}
+
+	@After
+	public void tearDown() {
+		DataSourceRoute.restore(null);
+	}
+
+	@Test
+	public void theCountIsReadInATransactionOfItsOwnOnThePrimary() {
+
+		DataSourceRoute.bind(DataSourceRoute.REPLICA);
+
+		assertThat(categoryCountCache.count()).isEqualTo(3L);
+
+		ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor
+				.forClass(TransactionDefinition.class);
+		verify(transactionManager).getTransaction(definition.capture());
+		assertThat(definition.getValue().getPropagationBehavior()).isEqualTo(
+				TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		assertThat(definition.getValue().isReadOnly()).isTrue();
+		assertThat(countedOn).isEqualTo(DataSourceRoute.PRIMARY);
+		assertThat(DataSourceRoute.current()).isEqualTo(DataSourceRoute.REPLICA);
+	}
+
+	@Test
+	public void theCountIsKeptUntilInvalidated() {
+
+		categoryCountCache.count();
+		categoryCountCache.count();
+		verify(categoryRepository, times(1)).count();
+
+		categoryCountCache.invalidate();
+		categoryCountCache.count();
+		verify(categoryRepository, times(2)).count();
+		verify(transactionManager, times(2)).getTransaction(
+				any(TransactionDefinition.class));
+	}
+
+}
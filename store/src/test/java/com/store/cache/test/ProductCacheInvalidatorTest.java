@@ -0,0 +1,101 @@
+package com.store.cache.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.store.cache.ProductCacheInvalidator;
+import com.store.config.CacheConfig;
+import com.store.domain.EntityVersion;
+import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
+import com.store.event.CatalogChangeEvent.EntityType;
+
+public class ProductCacheInvalidatorTest {
+
+	@InjectMocks
+	private ProductCacheInvalidator productCacheInvalidator;
+
+	@Spy
+	private CacheManager cacheManager = new ConcurrentMapCacheManager(
+			CacheConfig.PRODUCTS_BY_ID, CacheConfig.PRODUCT_IDS_BY_SKU,
+			CacheConfig.PRODUCT_VERSIONS);
+
+	private Product product;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+
+		product = new Product(1L, "SKU_A", "ProductA", LocalDate.of(2016, 8,
+				16), LocalDate.of(2016, 8, 17));
+		cacheManager.getCache(CacheConfig.PRODUCTS_BY_ID).put(1L, product);
+		cacheManager.getCache(CacheConfig.PRODUCT_VERSIONS).put(1L,
+				new EntityVersion(0L, Instant.now()));
+		cacheManager.getCache(CacheConfig.PRODUCT_IDS_BY_SKU).put("SKU_A", 1L);
+		cacheManager.getCache(CacheConfig.PRODUCTS_BY_ID).put(2L, product);
+	}
+
+	@Test
+	public void updateShouldEvictIdAndBothSkus() {
+
+		Product updated = new Product(1L, "SKU_B", "ProductA", LocalDate.of(
+				2016, 8, 16), LocalDate.now());
+		cacheManager.getCache(CacheConfig.PRODUCT_IDS_BY_SKU).put("SKU_B", 1L);
+
+		productCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.productUpdated(updated, "SKU_A"));
+
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCTS_BY_ID).get(1L)).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCT_VERSIONS).get(1L)).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCT_IDS_BY_SKU).get("SKU_A")).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCT_IDS_BY_SKU).get("SKU_B")).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCTS_BY_ID).get(2L)).isNotNull();
+	}
+
+	@Test
+	public void updateByIdOnlyShouldEvictIdEntries() {
+
+		productCacheInvalidator.onCatalogChange(new CatalogChangeEvent(
+				EntityType.PRODUCT, ChangeType.UPDATED, 1L, null, null));
+
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCTS_BY_ID).get(1L)).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCT_VERSIONS).get(1L)).isNull();
+		// still the right id; the lookup checks the SKU of the product
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCT_IDS_BY_SKU).get("SKU_A")).isNotNull();
+	}
+
+	@Test
+	public void deleteShouldEvictIdAndSku() {
+
+		productCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.productDeleted(product));
+
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCTS_BY_ID).get(1L)).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCT_IDS_BY_SKU).get("SKU_A")).isNull();
+	}
+
+	@Test
+	public void creationShouldOnlyEvictItsSku() {
+
+		Product created = new Product(3L, "SKU_A", "ProductC", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+
+		productCacheInvalidator.onCatalogChange(CatalogChangeEvent
+				.productCreated(created));
+
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCT_IDS_BY_SKU).get("SKU_A")).isNull();
+		assertThat(cacheManager.getCache(CacheConfig.PRODUCTS_BY_ID).get(1L)).isNotNull();
+	}
+
+}
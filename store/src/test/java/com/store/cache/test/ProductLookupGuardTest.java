@@ -0,0 +1,117 @@
+package com.store.cache.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.store.cache.ProductLookupGuard;
+import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
+import com.store.exception.ProductNotFoundException;
+import com.store.repository.ProductRepository;
+
+public class ProductLookupGuardTest {
+
+	@InjectMocks
+	private ProductLookupGuard productLookupGuard;
+
+	@Mock
+	private ProductRepository productRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+		productLookupGuard.init();
+	}
+
+	@Test
+	public void nothingIsRejectedBeforeLoad() {
+
+		assertThat(productLookupGuard.missingId(42L)).isNull();
+		assertThat(productLookupGuard.missingSku("SKU_X")).isNull();
+	}
+
+	@Test
+	public void unknownKeysAreRejectedAfterLoad() {
+
+		load(new Object[] { 1L, "SKU_A" });
+
+		assertThat(productLookupGuard.missingId(1L)).isNull();
+		assertThat(productLookupGuard.missingSku("SKU_A")).isNull();
+
+		ProductNotFoundException missing = productLookupGuard.missingSku("SKU_X");
+		assertThat(missing.getMessage()).isEqualTo("the product sku SKU_X is not existed");
+		assertThat(missing.getStackTrace()).isEmpty();
+		assertThat(productLookupGuard.missingSku("SKU_X")).isSameAs(missing);
+		assertThat(productLookupGuard.missingId(42L).getMessage()).isEqualTo(
+				"the product id 42 is not existed");
+	}
+
+	@Test
+	public void recordedMissesAreServedUntilTheProductIsCreated() {
+
+		load(new Object[] { 1L, "SKU_A" });
+
+		// a deleted product stays in the filter; its miss is recorded instead
+		ProductNotFoundException missing = ProductNotFoundException.forId(1L);
+		productLookupGuard.recordMissingId(1L, missing);
+		assertThat(productLookupGuard.missingId(1L)).isSameAs(missing);
+
+		Product product = new Product(1L, "SKU_B", "ProductB", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+		productLookupGuard.onProductWrite(CatalogChangeEvent.productCreated(product));
+
+		assertThat(productLookupGuard.missingId(1L)).isNull();
+		assertThat(productLookupGuard.missingSku("SKU_B")).isNull();
+	}
+
+	@Test
+	public void productsCreatedElsewhereAreFoundAfterARebuild() {
+
+		load(new Object[] { 1L, "SKU_A" });
+		assertThat(productLookupGuard.missingSku("SKU_B")).isNotNull();
+
+		// another instance created SKU_B
+		load(new Object[] { 1L, "SKU_A" }, new Object[] { 2L, "SKU_B" });
+
+		assertThat(productLookupGuard.missingId(2L)).isNull();
+		assertThat(productLookupGuard.missingSku("SKU_B")).isNull();
+	}
+
+	@Test
+	public void productsCreatedDuringARebuildAreKept() {
+
+		load(new Object[] { 1L, "SKU_A" });
+
+		Product product = new Product(2L, "SKU_B", "ProductB", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+		// committed after the rebuild read the catalog
+		when(productRepository.streamProductKeys()).thenAnswer(invocation -> {
+			productLookupGuard.onProductWrite(CatalogChangeEvent
+					.productCreated(product));
+			return Stream.<Object[]> of(new Object[] { 1L, "SKU_A" });
+		});
+		productLookupGuard.load();
+
+		assertThat(productLookupGuard.missingId(2L)).isNull();
+		assertThat(productLookupGuard.missingSku("SKU_B")).isNull();
+	}
+
+	private void load(Object[]... keys) {
+		when(productRepository.streamProductKeys()).thenReturn(Stream.of(keys));
+		productLookupGuard.load();
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.store.datasource.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.method.HandlerMethod;
+
+import com.store.datasource.DataSourceRoute;
+import com.store.datasource.DataSourceRouteTaskDecorator;
+import com.store.datasource.ReadsFromPrimary;
+import com.store.datasource.ReadWriteRoutingDataSource;
+import com.store.datasource.ReadWriteRoutingInterceptor;
+
+public class ReadWriteRoutingTest {
+
+	private static final String WHICH = "SELECT name FROM which_database";
+
+	private JdbcTemplate jdbcTemplate;
+
+	private TransactionTemplate transactionTemplate;
+
+	@Before
+	public void setUp() {
+		DataSource dataSource = new LazyConnectionDataSourceProxy(
+				new ReadWriteRoutingDataSource(database("primary"),
+						database("replica")));
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		transactionTemplate = new TransactionTemplate(
+				new DataSourceTransactionManager(dataSource));
+	}
+
+	@After
+	public void tearDown() {
+		DataSourceRoute.restore(null);
+	}
+
+	@Test
+	public void statementsGoToTheBoundRoute() {
+
+		assertThat(jdbcTemplate.queryForObject(WHICH, String.class)).isEqualTo(
+				"primary");
+
+		DataSourceRoute.bind(DataSourceRoute.REPLICA);
+		assertThat(jdbcTemplate.queryForObject(WHICH, String.class)).isEqualTo(
+				"replica");
+		// the connection of a transaction is taken at its first statement
+		String inTransaction = transactionTemplate.execute(status -> jdbcTemplate
+				.queryForObject(WHICH, String.class));
+		assertThat(inTransaction).isEqualTo("replica");
+	}
+
+	@Test
+	public void theRouteFollowsTheWorkToAnotherThread() throws Exception {
+
+		String[] answer = new String[1];
+		DataSourceRoute.bind(DataSourceRoute.REPLICA);
+		Thread worker = new Thread(new DataSourceRouteTaskDecorator()
+				.decorate(() -> answer[0] = jdbcTemplate.queryForObject(WHICH,
+						String.class)));
+		DataSourceRoute.restore(null);
+
+		worker.start();
+		worker.join();
+
+		assertThat(answer[0]).isEqualTo("replica");
+	}
+
+	@Test
+	public void readsGoToTheReplicaOutsideTheReadYourWritesWindow()
+			throws Exception {
+
+		ReadWriteRoutingInterceptor interceptor = new ReadWriteRoutingInterceptor(
+				5000);
+
+		assertThat(route(interceptor, "GET", null)).isEqualTo(
+				DataSourceRoute.REPLICA);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request("POST", null), response, null);
+		assertThat(DataSourceRoute.current()).isEqualTo(DataSourceRoute.PRIMARY);
+		Cookie cookie = response.getCookie(ReadWriteRoutingInterceptor.COOKIE);
+		assertThat(cookie.getMaxAge()).isEqualTo(5);
+		assertThat(Long.parseLong(cookie.getValue())).isGreaterThan(
+				System.currentTimeMillis());
+
+		assertThat(route(interceptor, "GET", cookie)).isEqualTo(
+				DataSourceRoute.PRIMARY);
+		assertThat(
+				route(interceptor, "GET", new Cookie(
+						ReadWriteRoutingInterceptor.COOKIE, Long
+								.toString(System.currentTimeMillis() - 1))))
+				.isEqualTo(DataSourceRoute.REPLICA);
+		assertThat(
+				route(interceptor, "GET", new Cookie(
+						ReadWriteRoutingInterceptor.COOKIE, "garbage")))
+				.isEqualTo(DataSourceRoute.REPLICA);
+	}
+
+	@Test
+	public void readsFillingTheCachesGoToThePrimary() throws Exception {
+
+		ReadWriteRoutingInterceptor interceptor = new ReadWriteRoutingInterceptor(
+				5000);
+		Handlers handlers = new Handlers();
+
+		assertThat(route(interceptor, "GET", null, new HandlerMethod(handlers,
+				"cached"))).isEqualTo(DataSourceRoute.PRIMARY);
+		assertThat(route(interceptor, "GET", null, new HandlerMethod(handlers,
+				"listing"))).isEqualTo(DataSourceRoute.REPLICA);
+	}
+
+	private static DataSourceRoute route(
+			ReadWriteRoutingInterceptor interceptor, String method,
+			Cookie cookie) throws Exception {
+		return route(interceptor, method, cookie, null);
+	}
+
+	private static DataSourceRoute route(
+			ReadWriteRoutingInterceptor interceptor, String method,
+			Cookie cookie, Object handler) throws Exception {
+		MockHttpServletRequest request = request(method, cookie);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, handler);
+		try {
+			return DataSourceRoute.current();
+		} finally {
+			interceptor.afterCompletion(request, response, null, null);
+		}
+	}
+
+	private static MockHttpServletRequest request(String method, Cookie cookie) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method,
+				"/store/products");
+		if (cookie != null) {
+			request.setCookies(cookie);
+		}
+		return request;
+	}
+
+	private static DataSource database(String name) {
+		DataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:"
+				+ name, "sa", "");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("DROP TABLE which_database IF EXISTS");
+		jdbcTemplate.execute("CREATE TABLE which_database (name VARCHAR(16))");
+		jdbcTemplate.update("INSERT INTO which_database VALUES (?)", name);
+		return dataSource;
+	}
+
+	public static class Handlers {
+
+		@ReadsFromPrimary
+		public void cached() {
+
+		}
+
+		public void listing() {
+
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.store.event.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.store.domain.CatalogChange;
+import com.store.domain.CatalogChangeCounter;
+import com.store.domain.Category;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeOutbox;
+
+public class CatalogChangeOutboxTest {
+
+	@InjectMocks
+	private CatalogChangeOutbox catalogChangeOutbox;
+
+	@Mock
+	private EntityManager entityManager;
+
+	private CatalogChangeCounter counter;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+		counter = new CatalogChangeCounter();
+		counter.next(5);
+		when(entityManager.find(CatalogChangeCounter.class,
+				CatalogChangeCounter.ID, LockModeType.PESSIMISTIC_WRITE))
+				.thenAnswer(invocation -> counter);
+	}
+
+	@After
+	public void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		TransactionSynchronizationManager.setActualTransactionActive(false);
+		if (TransactionSynchronizationManager.hasResource(catalogChangeOutbox)) {
+			TransactionSynchronizationManager.unbindResource(catalogChangeOutbox);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void changesOutsideATransactionAreRefused() {
+
+		catalogChangeOutbox.record(CatalogChangeEvent.categoryCreated(category()));
+	}
+
+	@Test
+	public void changesAreNumberedFromTheLockedCounterAtCommit() {
+
+		List<TransactionSynchronization> first = inTransaction(2);
+		verify(entityManager, never()).persist(any());
+
+		beforeCommit(first);
+		complete(first, TransactionSynchronization.STATUS_COMMITTED);
+		List<TransactionSynchronization> second = inTransaction(1);
+		beforeCommit(second);
+		complete(second, TransactionSynchronization.STATUS_COMMITTED);
+
+		ArgumentCaptor<CatalogChange> persisted = ArgumentCaptor
+				.forClass(CatalogChange.class);
+		verify(entityManager, times(3)).persist(persisted.capture());
+		assertThat(persisted.getAllValues()).extracting("sequence")
+				.containsExactly(6L, 7L, 8L);
+		assertThat(counter.getLastSequence()).isEqualTo(8L);
+		verify(entityManager, times(2)).find(CatalogChangeCounter.class,
+				CatalogChangeCounter.ID, LockModeType.PESSIMISTIC_WRITE);
+	}
+
+	@Test
+	public void theFirstChangeCreatesTheCounter() {
+
+		counter = null;
+
+		List<TransactionSynchronization> synchronizations = inTransaction(1);
+		beforeCommit(synchronizations);
+
+		ArgumentCaptor<Object> persisted = ArgumentCaptor.forClass(Object.class);
+		verify(entityManager, times(2)).persist(persisted.capture());
+		assertThat(persisted.getAllValues().get(0)).isInstanceOf(
+				CatalogChangeCounter.class);
+		assertThat(((CatalogChange) persisted.getAllValues().get(1)).getSequence())
+				.isEqualTo(1L);
+	}
+
+	private List<TransactionSynchronization> inTransaction(int changes) {
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		try {
+			for (int i = 0; i < changes; i++) {
+				catalogChangeOutbox.record(CatalogChangeEvent
+						.categoryUpdated(category()));
+			}
+			return TransactionSynchronizationManager.getSynchronizations();
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+			TransactionSynchronizationManager.setActualTransactionActive(false);
+		}
+	}
+
+	private static void beforeCommit(
+			List<TransactionSynchronization> synchronizations) {
+		for (TransactionSynchronization synchronization : synchronizations) {
+			synchronization.beforeCommit(false);
+		}
+	}
+
+	private static void complete(
+			List<TransactionSynchronization> synchronizations, int status) {
+		for (TransactionSynchronization synchronization : synchronizations) {
+			synchronization.afterCompletion(status);
+		}
+	}
+
+	private static Category category() {
+		Category category = new Category("cat1");
+		category.setCategoryId(1L);
+		return category;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.store.metrics.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.store.domain.Product;
+import com.store.exception.ProductNotFoundException;
+import com.store.metrics.LatencyAspect;
+import com.store.metrics.LatencyHistogram;
+import com.store.metrics.LatencyRecorder;
+import com.store.repository.ProductRepository;
+
+public class LatencyRecorderTest {
+
+	private LatencyRecorder latencyRecorder;
+
+	@Before
+	public void setUp() {
+		latencyRecorder = new LatencyRecorder();
+	}
+
+	@Test
+	public void percentilesAreReportedInMilliseconds() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long millis = 1; millis <= 1000; millis++) {
+			histogram.record(millis * 1000000L, millis % 100 == 0);
+		}
+
+		Map<String, Object> statistics = histogram.statistics();
+
+		assertThat(statistics.get("count")).isEqualTo(1000L);
+		assertThat(statistics.get("failures")).isEqualTo(10L);
+		assertThat((Double) statistics.get("p50Ms")).isBetween(499.0, 501.0);
+		assertThat((Double) statistics.get("p99Ms")).isBetween(989.0, 991.0);
+		assertThat((Double) statistics.get("maxMs")).isBetween(999.0, 1001.0);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void repositoryCallsAreTimedPerMethod() {
+
+		ProductRepository target = mock(ProductRepository.class);
+		when(target.findOne(1L)).thenReturn(new Product());
+		when(target.findByProductSku("SKU_X")).thenThrow(
+				ProductNotFoundException.forSku("SKU_X"));
+		ProductRepository productRepository = advise(target);
+
+		productRepository.findOne(1L);
+		productRepository.findOne(1L);
+		try {
+			productRepository.findByProductSku("SKU_X");
+			fail("the lookup should have failed");
+		} catch (ProductNotFoundException expected) {
+		}
+
+		Map<String, Object> statistics = latencyRecorder.statistics();
+
+		assertThat(statistics).containsOnlyKeys(
+				"ProductRepository.findOne(Long)",
+				"ProductRepository.findByProductSku(String)");
+		assertThat(
+				(Map<String, Object>) statistics.get("ProductRepository.findOne(Long)"))
+				.containsEntry("count", 2L).containsEntry("failures", 0L);
+		assertThat(
+				(Map<String, Object>) statistics
+						.get("ProductRepository.findByProductSku(String)"))
+				.containsEntry("count", 1L).containsEntry("failures", 1L);
+	}
+
+	private ProductRepository advise(ProductRepository target) {
+		LatencyAspect aspect = new LatencyAspect();
+		ReflectionTestUtils.setField(aspect, "latencyRecorder", latencyRecorder);
+		AspectJProxyFactory factory = new AspectJProxyFactory(target);
+		factory.addAspect(aspect);
+		return factory.getProxy();
+	}
+
+}
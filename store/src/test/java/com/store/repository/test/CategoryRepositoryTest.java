@@ -2,7 +2,10 @@ package com.store.repository.test;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -10,11 +13,19 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 
 import com.store.domain.Category;
+import com.store.domain.CategorySummary;
+import com.store.domain.EntityVersion;
+import com.store.domain.Product;
+import com.store.metrics.SqlStatementStatistics;
 import com.store.repository.CategoryRepository;
+import com.store.repository.OffsetLimitRequest;
+import com.store.repository.ProductRepository;
+import com.store.util.test.TestUtil;
 
 
 @RunWith(SpringRunner.class)
@@ -25,6 +36,12 @@ public class CategoryRepositoryTest {
 	@Qualifier("categoryRepository")
 	CategoryRepository categoryRepository;
 	
+	@Autowired
+	ProductRepository productRepository;
+	
+	@Autowired
+	TestEntityManager entityManager;
+	
 	
 	@Test
 	public void FindByIDShouldReturnCategory() {
@@ -104,4 +121,163 @@ public class CategoryRepositoryTest {
 		
 	}
 
+	@Test
+	public void findCategoriesOrderedByIdShouldReturnWindow(){
+		
+		categoryRepository.save(new Category("cat21", LocalDate.now()));
+		categoryRepository.save(new Category("cat22", LocalDate.now()));
+		categoryRepository.save(new Category("cat23", LocalDate.now()));
+		
+		List<Category> categories = categoryRepository.findCategoriesOrderedById(new OffsetLimitRequest(1, 1));
+		
+		assertThat(categories.size()).isEqualTo(1);
+		assertThat(categories.get(0).getCategoryName()).isEqualTo("cat22");
+		assertThat(categoryRepository.count()).isEqualTo(3);
+	}
+
+	@Test
+	public void addProductsToCategoryShouldInsertOnlyNewLinks(){
+		
+		Product product1 = productRepository.save(new Product("sku51", "p51"));
+		Product product2 = productRepository.save(new Product("sku52", "p52"));
+		
+		Category category = new Category("cat51", LocalDate.now());
+		category.getProducts().add(product1);
+		categoryRepository.saveAndFlush(category);
+		
+		int inserted = categoryRepository.addProductsToCategory(category.getCategoryId(),
+				Arrays.asList(product1.getProductId(), product2.getProductId()));
+		
+		assertThat(inserted).isEqualTo(1);
+		
+		entityManager.clear();
+		Category reloaded = categoryRepository.findOne(category.getCategoryId());
+		assertThat(reloaded.getProducts()).containsOnly(product1, product2);
+	}
+
+	@Test
+	public void removeProductsFromCategoryShouldDeleteLinks(){
+		
+		Product product1 = productRepository.save(new Product("sku61", "p61"));
+		Product product2 = productRepository.save(new Product("sku62", "p62"));
+		Product product3 = productRepository.save(new Product("sku63", "p63"));
+		
+		Category category = new Category("cat61", LocalDate.now());
+		category.getProducts().add(product1);
+		category.getProducts().add(product2);
+		categoryRepository.saveAndFlush(category);
+		
+		List<Long> members = categoryRepository.findProductIdsInCategory(category.getCategoryId(),
+				Arrays.asList(product1.getProductId(), product3.getProductId()));
+		assertThat(members).containsOnly(product1.getProductId());
+		
+		int removed = categoryRepository.removeProductsFromCategory(category.getCategoryId(),
+				Arrays.asList(product1.getProductId(), product2.getProductId()));
+		
+		assertThat(removed).isEqualTo(2);
+		
+		entityManager.clear();
+		Category reloaded = categoryRepository.findOne(category.getCategoryId());
+		assertThat(reloaded.getProducts()).isEmpty();
+	}
+
+	@Test
+	public void removeProductFromAllCategoriesShouldDeleteEveryLink(){
+		
+		Product product = productRepository.save(new Product("sku71", "p71"));
+		Product other = productRepository.save(new Product("sku72", "p72"));
+		
+		Category category1 = new Category("cat71", LocalDate.now());
+		category1.getProducts().add(product);
+		category1.getProducts().add(other);
+		Category category2 = new Category("cat72", LocalDate.now());
+		category2.getProducts().add(product);
+		categoryRepository.save(category1);
+		categoryRepository.saveAndFlush(category2);
+		entityManager.clear();
+		
+		int removed = categoryRepository.removeProductFromAllCategories(product.getProductId());
+		productRepository.delete(product.getProductId());
+		productRepository.flush();
+		
+		assertThat(removed).isEqualTo(2);
+		
+		entityManager.clear();
+		assertThat(categoryRepository.findOne(category1.getCategoryId()).getProducts()).containsOnly(other);
+		assertThat(categoryRepository.findOne(category2.getCategoryId()).getProducts()).isEmpty();
+	}
+
+	@Test
+	public void findCategorySummaryShouldCountProductsWithoutLoadingThem(){
+		
+		Product product1 = productRepository.save(new Product("sku81", "p81"));
+		Product product2 = productRepository.save(new Product("sku82", "p82"));
+		
+		Category category = new Category("cat81", LocalDate.now().minusDays(1));
+		category.getProducts().add(product1);
+		category.getProducts().add(product2);
+		categoryRepository.save(category);
+		categoryRepository.saveAndFlush(new Category("cat82", LocalDate.now()));
+		
+		CategorySummary summary = categoryRepository.findCategorySummaryByName("cat81");
+		assertThat(summary.getCategoryId()).isEqualTo(category.getCategoryId());
+		assertThat(summary.getProductCount()).isEqualTo(2L);
+		assertThat(summary.getCategoryCreated().compareTo(LocalDate.now())).isEqualTo(-1);
+		assertThat(summary.getProducts()).isNull();
+		
+		CategorySummary empty = categoryRepository.findCategorySummaryByName("cat82");
+		assertThat(empty.getProductCount()).isEqualTo(0L);
+		
+		assertThat(categoryRepository.findProductsByCategoryId(category.getCategoryId()))
+				.containsExactly(product1, product2);
+	}
+	
+	@Test
+	public void membershipChangesShouldBumpCategoryVersion(){
+		
+		Product product = productRepository.save(new Product("sku91", "p91"));
+		Category category = categoryRepository.saveAndFlush(new Category("cat91", LocalDate.now()));
+		long categoryId = category.getCategoryId();
+		
+		EntityVersion created = categoryRepository.findVersionById(categoryId);
+		assertThat(created.getVersion()).isEqualTo(0L);
+		
+		categoryRepository.addProductsToCategory(categoryId, Arrays.asList(product.getProductId()));
+		categoryRepository.touchCategory(categoryId, Timestamp.from(Instant.now()));
+		assertThat(categoryRepository.findVersionByName("cat91").getVersion()).isEqualTo(1L);
+		
+		categoryRepository.touchCategoriesOfProduct(product.getProductId(), Timestamp.from(Instant.now()));
+		assertThat(categoryRepository.findVersionById(categoryId).getVersion()).isEqualTo(2L);
+	}
+
+	@Test
+	public void findProductsByCategoryIdsShouldAvoidOneQueryPerCategory(){
+		
+		Product product1 = productRepository.save(new Product("sku81", "p81"));
+		Product product2 = productRepository.save(new Product("sku82", "p82"));
+		
+		Category category1 = new Category("cat81", LocalDate.now());
+		category1.getProducts().add(product1);
+		Category category2 = new Category("cat82", LocalDate.now());
+		category2.getProducts().add(product2);
+		categoryRepository.save(category1);
+		categoryRepository.save(category2);
+		entityManager.flush();
+		entityManager.clear();
+		
+		List<Long> categoryIds = Arrays.asList(category1.getCategoryId(), category2.getCategoryId());
+		
+		SqlStatementStatistics lazyLoading = TestUtil.countSqlStatements(() -> {
+			for (Category category : categoryRepository.findAll(categoryIds)) {
+				category.getProducts().size();
+			}
+		});
+		assertThat(lazyLoading.getStatements()).isEqualTo(3L);
+		
+		entityManager.clear();
+		SqlStatementStatistics joined = TestUtil.countSqlStatements(
+				() -> categoryRepository.findProductsByCategoryIds(categoryIds));
+		assertThat(joined.getStatements()).isEqualTo(1L);
+	}
+
 }
@@ -2,16 +2,21 @@ package com.store.repository.test;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import com.store.domain.EntityVersion;
 import com.store.domain.Product;
+import com.store.repository.OffsetLimitRequest;
 import com.store.repository.ProductRepository;
 
 @RunWith(SpringRunner.class)
@@ -22,21 +27,25 @@ public class ProductRepositoryTest {
 	@Autowired
 	private ProductRepository productRepository;
 
+	@Autowired
+	private TestEntityManager entityManager;
+
 	@Test
 	public void FindByIDShouldReturnProduct() {
 		
-		productRepository.save(new Product("Sku1", "p1"));
-		productRepository.save(new Product("Sku2", "p2"));
+		// pooled ids, not rolled back with the test transactions
+		long id1 = productRepository.save(new Product("Sku1", "p1")).getProductId();
+		long id2 = productRepository.save(new Product("Sku2", "p2")).getProductId();
 
-		Product product1 = productRepository.findOne(1L);
+		Product product1 = productRepository.findOne(id1);
 		assertThat(product1.getProductName()).isEqualTo("p1");
 		assertThat(product1.getProductSku()).isEqualTo("Sku1");
 
-		Product product2 = productRepository.findOne(2L);
+		Product product2 = productRepository.findOne(id2);
 		assertThat(product2.getProductName()).isEqualTo("p2");
 		assertThat(product2.getProductSku()).isEqualTo("Sku2");
 		
-		Product product3 = productRepository.findOne(100L);
+		Product product3 = productRepository.findOne(id2 + 1);
 		assertThat(product3).isEqualTo(null);
 
 	}
@@ -109,4 +118,112 @@ public class ProductRepositoryTest {
 
 	}
 
+	@Test
+	public void FindProductsAfterShouldReturnKeysetPage() {
+
+		Product p1 = productRepository.save(new Product("Sku21", "Product21"));
+		Product p2 = productRepository.save(new Product("Sku22", "Product22"));
+		Product p3 = productRepository.save(new Product("Sku23", "Product23"));
+		Product p4 = productRepository.save(new Product("Sku24", "Product24"));
+
+		List<Product> page = productRepository.findProductsAfter(
+				p1.getProductId(), new OffsetLimitRequest(0, 2));
+
+		assertThat(page.size()).isEqualTo(2);
+		assertThat(page.get(0).getProductSku()).isEqualTo(p2.getProductSku());
+		assertThat(page.get(1).getProductSku()).isEqualTo(p3.getProductSku());
+
+		List<Product> lastPage = productRepository.findProductsAfter(
+				p3.getProductId(), new OffsetLimitRequest(0, 2));
+
+		assertThat(lastPage.size()).isEqualTo(1);
+		assertThat(lastPage.get(0).getProductSku()).isEqualTo(p4.getProductSku());
+	}
+
+	@Test
+	public void FindProductsOrderedByIdShouldReturnOffsetWindow() {
+
+		productRepository.save(new Product("Sku31", "Product31"));
+		productRepository.save(new Product("Sku32", "Product32"));
+		productRepository.save(new Product("Sku33", "Product33"));
+
+		List<Product> window = productRepository
+				.findProductsOrderedById(new OffsetLimitRequest(1, 5));
+
+		assertThat(window.size()).isEqualTo(2);
+		assertThat(window.get(0).getProductSku()).isEqualTo("Sku32");
+		assertThat(window.get(1).getProductSku()).isEqualTo("Sku33");
+	}
+
+	@Test
+	public void FindExistingProductSkusShouldReturnKnownSkus() {
+
+		productRepository.save(new Product("Sku41", "Product41"));
+		productRepository.save(new Product("Sku42", "Product42"));
+
+		List<String> existing = productRepository.findExistingProductSkus(Arrays
+				.asList("Sku41", "Sku42", "Sku43"));
+
+		assertThat(existing).containsOnly("Sku41", "Sku42");
+	}
+
+	@Test
+	public void UpdateShouldBumpVersionAndModified() {
+
+		Product product = productRepository.saveAndFlush(new Product("Sku61", "Product61"));
+
+		EntityVersion created = productRepository.findVersionById(product.getProductId());
+		assertThat(created.getVersion()).isEqualTo(0L);
+		assertThat(created.getModified()).isNotNull();
+		assertThat(productRepository.findIdBySku("Sku61")).isEqualTo(product.getProductId());
+
+		product.setProductName("Product61b");
+		productRepository.saveAndFlush(product);
+
+		EntityVersion updated = productRepository.findVersionById(product.getProductId());
+		assertThat(updated.getVersion()).isEqualTo(1L);
+		assertThat(updated.getModified()).isGreaterThanOrEqualTo(created.getModified());
+		assertThat(updated.eTag("application/json")).isNotEqualTo(created.eTag("application/json"));
+
+		assertThat(productRepository.findVersionById(1000L)).isNull();
+	}
+
+	@Test
+	public void FindDetachedByIdShouldReturnAnUnmanagedCopy() {
+
+		Product product = productRepository.saveAndFlush(new Product("Sku81", "Product81"));
+
+		Product copy = productRepository.findDetachedById(product.getProductId());
+		assertThat(copy).isNotSameAs(product);
+		assertThat(entityManager.getEntityManager().contains(copy)).isFalse();
+		assertThat(copy.getProductSku()).isEqualTo("Sku81");
+		assertThat(copy.getProductVersion()).isEqualTo(product.getProductVersion());
+
+		// a change to the managed entity does not reach the copy
+		product.setProductName("Product81b");
+		assertThat(copy.getProductName()).isEqualTo("Product81");
+
+		assertThat(productRepository.findDetachedById(1000L)).isNull();
+	}
+
+	@Test
+	public void PatchProductShouldUpdateOnlyTheExpectedVersion() {
+
+		Product product = productRepository.saveAndFlush(new Product("Sku71", "Product71"));
+		long productId = product.getProductId();
+		Instant modified = Instant.now();
+
+		assertThat(productRepository.patchProduct(productId, 0L, null, "Product71b", modified)).isEqualTo(1);
+		// a second writer still holding version 0 loses
+		assertThat(productRepository.patchProduct(productId, 0L, "Sku71b", null, modified)).isEqualTo(0);
+		assertThat(productRepository.patchProduct(1000L, 0L, "Sku71b", null, modified)).isEqualTo(0);
+
+		// the bulk update bypasses the persistence context
+		entityManager.clear();
+		Product patched = productRepository.findByProductSku("Sku71");
+		assertThat(patched.getProductName()).isEqualTo("Product71b");
+		assertThat(patched.getProductVersion()).isEqualTo(1L);
+		assertThat(productRepository.findIdBySku("Sku71")).isEqualTo(productId);
+	}
+
 }
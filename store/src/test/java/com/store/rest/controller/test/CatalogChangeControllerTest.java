@@ -0,0 +1,161 @@
+package com.store.rest.controller.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.store.async.RepositoryExecutor;
+import com.store.domain.CatalogChange;
+import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeOutbox;
+import com.store.repository.CatalogChangeRepository;
+import com.store.rest.controller.CatalogChangeController;
+import com.store.rest.exception.RestErrorHandlerAdvice;
+import com.store.util.test.TestUtil;
+
+@RunWith(SpringRunner.class)
+@WebAppConfiguration
+public class CatalogChangeControllerTest {
+
+	@InjectMocks
+	private CatalogChangeController catalogChangeController;
+
+	@Mock
+	private CatalogChangeRepository catalogChangeRepository;
+
+	@Mock
+	private CatalogChangeOutbox catalogChangeOutbox;
+
+	// runs every task on the calling thread
+	@Spy
+	private RepositoryExecutor repositoryExecutor = new RepositoryExecutor(
+			mock(PlatformTransactionManager.class));
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setUp() throws Exception {
+
+		MockitoAnnotations.initMocks(this);
+		mockMvc = MockMvcBuilders.standaloneSetup(catalogChangeController)
+				.setControllerAdvice(new RestErrorHandlerAdvice())
+				.setMessageConverters(new MappingJackson2HttpMessageConverter(),
+						new Jaxb2RootElementHttpMessageConverter()).build();
+	}
+
+	private ResultActions perform(RequestBuilder request) throws Exception {
+		return TestUtil.performAsync(mockMvc, request);
+	}
+
+	@Test
+	public void testGetChangesReturnsABatchAndTheNextPosition() throws Exception {
+
+		when(catalogChangeOutbox.visibleUpTo()).thenReturn(Long.MAX_VALUE);
+		when(catalogChangeRepository.findChanges(eq(40L), eq(Long.MAX_VALUE),
+				any(Pageable.class))).thenReturn(changes(41L, 42L, 43L));
+
+		perform(
+				MockMvcRequestBuilders.get("/store/changes")
+						.param("after", "40").param("limit", "2")
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.changes", hasSize(2)))
+				.andExpect(jsonPath("$.changes[0].sequence", is(41)))
+				.andExpect(jsonPath("$.changes[0].entityType", is("PRODUCT")))
+				.andExpect(jsonPath("$.changes[0].changeType", is("CREATED")))
+				.andExpect(jsonPath("$.changes[0].key", is("SKU_41")))
+				.andExpect(jsonPath("$.changes[0].changedAt", is("2016-08-22T08:00:00Z")))
+				.andExpect(jsonPath("$.next", is(42)))
+				.andExpect(jsonPath("$.more", is(true)));
+
+		// one more row than the batch, to know whether another follows
+		ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+		verify(catalogChangeRepository).findChanges(eq(40L), eq(Long.MAX_VALUE),
+				page.capture());
+		assertThat(page.getValue().getPageSize(), is(3));
+	}
+
+	@Test
+	public void testGetChangesStopsBelowUncommittedChanges() throws Exception {
+
+		when(catalogChangeOutbox.visibleUpTo()).thenReturn(6L);
+		when(catalogChangeRepository.findChanges(eq(0L), eq(6L),
+				any(Pageable.class))).thenReturn(new ArrayList<CatalogChange>());
+
+		perform(
+				MockMvcRequestBuilders.get("/store/changes").accept(
+						MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.changes", hasSize(0)))
+				.andExpect(jsonPath("$.next", is(0)))
+				.andExpect(jsonPath("$.more", is(false)));
+
+		verify(catalogChangeRepository).findChanges(eq(0L), eq(6L),
+				any(Pageable.class));
+	}
+
+	@Test
+	public void testGetChangesAsXml() throws Exception {
+
+		when(catalogChangeOutbox.visibleUpTo()).thenReturn(Long.MAX_VALUE);
+		when(catalogChangeRepository.findChanges(anyLong(), anyLong(),
+				any(Pageable.class))).thenReturn(changes(7L));
+
+		String xml = perform(
+				MockMvcRequestBuilders.get("/store/changes").param("after", "6")
+						.accept(MediaType.APPLICATION_XML))
+				.andExpect(status().isOk()).andReturn().getResponse()
+				.getContentAsString();
+
+		assertThat(xml.contains("<sequence>7</sequence>"), is(true));
+		assertThat(xml.contains("<next>7</next>"), is(true));
+	}
+
+	private static List<CatalogChange> changes(long... sequences) {
+		List<CatalogChange> changes = new ArrayList<CatalogChange>();
+		for (long sequence : sequences) {
+			CatalogChange change = new CatalogChange(
+					CatalogChangeEvent.productCreated(new Product(sequence,
+							"SKU_" + sequence, "Product" + sequence, null, null)),
+					Instant.parse("2016-08-22T08:00:00Z"));
+			change.setSequence(sequence);
+			changes.add(change);
+		}
+		return changes;
+	}
+
+}
@@ -1,40 +1,66 @@
 package com.store.rest.controller.test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import com.store.async.RepositoryExecutor;
+import com.store.cache.CategoryCountCache;
 import com.store.domain.Category;
+import com.store.domain.CategorySummary;
+import com.store.domain.EntityVersion;
 import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
 import com.store.exception.CategoryNotFoundException;
 import com.store.exception.ProductNotFoundException;
+import com.store.metrics.SqlStatementHeaderFilter;
+import com.store.metrics.SqlStatementInterceptor;
 import com.store.repository.CategoryRepository;
+import com.store.repository.OffsetLimitRequest;
 import com.store.repository.ProductRepository;
 import com.store.rest.controller.CategoryController;
 import com.store.rest.exception.RestErrorHandlerAdvice;
@@ -53,6 +79,19 @@ public class CategoryControllerTest {
 	
 	@Mock
 	private ProductRepository productRepository;
+	
+	@Mock
+	private CategoryCountCache categoryCountCache;
+
+	@Mock
+	private ApplicationEventPublisher eventPublisher;
+
+	// runs every task on the calling thread
+	@Spy
+	private RepositoryExecutor repositoryExecutor = new RepositoryExecutor(
+			mock(PlatformTransactionManager.class));
+		
+	private static final EntityVersion VERSION = new EntityVersion(2L, Instant.parse("2016-08-22T08:00:00Z"));
 		
 	private MockMvc mockMvc;
 	
@@ -61,10 +100,17 @@ public class CategoryControllerTest {
 		
 		MockitoAnnotations.initMocks(this);
 		mockMvc = MockMvcBuilders.standaloneSetup(categoryController)
-				.setControllerAdvice(new RestErrorHandlerAdvice()).setMessageConverters(new MappingJackson2HttpMessageConverter(),
+				.setControllerAdvice(new RestErrorHandlerAdvice())
+				.addInterceptors(new SqlStatementInterceptor(20))
+				.addFilters(new SqlStatementHeaderFilter())
+				.setMessageConverters(new MappingJackson2HttpMessageConverter(),
                         new Jaxb2RootElementHttpMessageConverter()).build();
 		
 	}
+
+	private ResultActions perform(RequestBuilder request) throws Exception {
+		return TestUtil.performAsync(mockMvc, request);
+	}
 	
 	@Test
 	public void testCategoryIdNotFound() throws Exception{
@@ -72,16 +118,16 @@ public class CategoryControllerTest {
 		String message = "the category id 10 is not existed";
 		String url = "/store/category/id/10";
 		
-		when(categoryRepository.findOne(1000L)).thenThrow(new CategoryNotFoundException(message));
+		when(categoryRepository.findVersionById(10L)).thenReturn(null);
 		
-		mockMvc.perform(MockMvcRequestBuilders.get("/store/category/id/{id}",10L)
+		perform(MockMvcRequestBuilders.get("/store/category/id/{id}",10L)
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNotFound())
 		            .andExpect(jsonPath("message", is(message)))
 		            .andExpect(jsonPath("url", is(url)));
 		
-		verify(categoryRepository, times(1)).findOne(10L);
+		verify(categoryRepository, times(1)).findVersionById(10L);
 		verifyNoMoreInteractions(categoryRepository);
 		 
 		
@@ -90,45 +136,134 @@ public class CategoryControllerTest {
 	@Test
 	public void testCategoryIdFound() throws Exception{
 		
-		Category category = new Category("cat1",LocalDate.of(2016, 8, 17));
-		Set<Product> products = new HashSet<Product>();
+		CategorySummary category = new CategorySummary(1L, "cat1", LocalDate.of(2016, 8, 17), LocalDate.of(2016, 8, 17), 3L);
+		
+		when(categoryRepository.findVersionById(1L)).thenReturn(VERSION);
+		when(categoryRepository.findCategorySummaryById(1L)).thenReturn(category);
+		
+		perform(MockMvcRequestBuilders.get("/store/category/id/{id}",1L)
+	            .contentType(MediaType.APPLICATION_JSON)
+	            .accept(MediaType.APPLICATION_JSON))
+	            .andExpect(status().isOk())
+	            .andExpect(jsonPath("$.categoryName", is("cat1")))
+	            .andExpect(jsonPath("$.productCount", is(3)))
+	            .andExpect(jsonPath("$.products").doesNotExist())
+	            .andExpect(jsonPath("$.categoryCreated",is("2016-08-17")))
+	             .andExpect(jsonPath("$.categoryUpdated",is("2016-08-17")))
+	            .andExpect(header().string("ETag", VERSION.eTag(MediaType.APPLICATION_JSON_VALUE, null, null)))
+	            .andExpect(header().dateValue("Last-Modified", VERSION.getModifiedMillis()));
+	
+		verify(categoryRepository, times(1)).findVersionById(1L);
+		verify(categoryRepository, times(1)).findCategorySummaryById(1L);
+		verifyNoMoreInteractions(categoryRepository);
+		
+	}
+	
+	@Test
+	public void testCategoryIdFoundWithProducts() throws Exception{
+		
+		CategorySummary category = new CategorySummary(1L, "cat1", LocalDate.of(2016, 8, 17), LocalDate.of(2016, 8, 17), 3L);
+		List<Product> products = new ArrayList<Product>();
 		products.add(new Product("sku1","p1"));
 		products.add(new Product("sku2","p2"));
 		products.add(new Product("sku3","p3"));
-		category.setProducts(products);
 		
-		when(categoryRepository.findOne(1L)).thenReturn(category);
+		when(categoryRepository.findVersionById(1L)).thenReturn(VERSION);
+		when(categoryRepository.findCategorySummaryById(1L)).thenReturn(category);
+		when(categoryRepository.findProductsByCategoryId(1L)).thenReturn(products);
 		
-		mockMvc.perform(MockMvcRequestBuilders.get("/store/category/id/{id}",1L)
-	            .contentType(MediaType.APPLICATION_JSON)
+		perform(MockMvcRequestBuilders.get("/store/category/id/{id}",1L)
+				.param("expand", "products")
 	            .accept(MediaType.APPLICATION_JSON))
 	            .andExpect(status().isOk())
 	            .andExpect(jsonPath("$.categoryName", is("cat1")))
-	            .andExpect(jsonPath("$.products", hasSize(3)))
-	            .andExpect(jsonPath("$.categoryCreated",is("2016-08-17")))
-	             .andExpect(jsonPath("$.categoryUpdated",is("2016-08-17")));
+	            .andExpect(jsonPath("$.products", hasSize(3)));
 	
-		verify(categoryRepository, times(1)).findOne(1L);
+		verify(categoryRepository, times(1)).findVersionById(1L);
+		verify(categoryRepository, times(1)).findCategorySummaryById(1L);
+		verify(categoryRepository, times(1)).findProductsByCategoryId(1L);
 		verifyNoMoreInteractions(categoryRepository);
 		
 	}
 	
+	@Test
+	public void testCategoryIdSparseFields() throws Exception{
+		
+		CategorySummary category = new CategorySummary(1L, "cat1", LocalDate.of(2016, 8, 17), LocalDate.of(2016, 8, 17), 3L);
+		
+		when(categoryRepository.findVersionById(1L)).thenReturn(VERSION);
+		when(categoryRepository.findCategorySummaryById(1L)).thenReturn(category);
+		
+		perform(MockMvcRequestBuilders.get("/store/category/id/{id}",1L)
+				.param("fields", "categoryName,productCount")
+	            .accept(MediaType.APPLICATION_JSON))
+	            .andExpect(status().isOk())
+	            .andExpect(jsonPath("$.categoryName", is("cat1")))
+	            .andExpect(jsonPath("$.productCount", is(3)))
+	            .andExpect(jsonPath("$.categoryId").doesNotExist())
+	            .andExpect(jsonPath("$.categoryCreated").doesNotExist())
+	            .andExpect(jsonPath("$.products").doesNotExist());
+	
+		verify(categoryRepository, times(1)).findVersionById(1L);
+		verify(categoryRepository, times(1)).findCategorySummaryById(1L);
+		verifyNoMoreInteractions(categoryRepository);
+
+		// the repository result may be a cached instance and must stay whole
+		assertThat(category.getCategoryId(), is(1L));
+		assertThat(category.getCategoryCreated(), is(LocalDate.of(2016, 8, 17)));
+		
+	}
+	
+	@Test
+	public void testCategoryIdNotModified() throws Exception{
+		
+		when(categoryRepository.findVersionById(1L)).thenReturn(VERSION);
+		
+		perform(MockMvcRequestBuilders.get("/store/category/id/{id}",1L)
+				.param("fields", "categoryName")
+	            .accept(MediaType.APPLICATION_JSON)
+	            .header("If-None-Match", VERSION.eTag(MediaType.APPLICATION_JSON_VALUE, "categoryName", null)))
+	            .andExpect(status().isNotModified());
+	
+		verify(categoryRepository, times(1)).findVersionById(1L);
+		verifyNoMoreInteractions(categoryRepository);
+		
+	}
+	
+	@Test
+	public void testCategoryIdOtherFieldsNotMatched() throws Exception{
+		
+		CategorySummary category = new CategorySummary(1L, "cat1", LocalDate.of(2016, 8, 17), LocalDate.of(2016, 8, 17), 3L);
+		
+		when(categoryRepository.findVersionById(1L)).thenReturn(VERSION);
+		when(categoryRepository.findCategorySummaryById(1L)).thenReturn(category);
+		
+		// the tag of one field selection does not validate another one
+		perform(MockMvcRequestBuilders.get("/store/category/id/{id}",1L)
+				.param("fields", "productCount")
+	            .accept(MediaType.APPLICATION_JSON)
+	            .header("If-None-Match", VERSION.eTag(MediaType.APPLICATION_JSON_VALUE, "categoryName", null)))
+	            .andExpect(status().isOk())
+	            .andExpect(jsonPath("$.productCount", is(3)));
+		
+	}
+	
 	@Test
 	public void testCategoryNameNotFound() throws Exception{
 		
 		String message = "the category name cat_10 is not existed";
 		String url = "/store/category/name/cat_10";
 		
-		when(categoryRepository.getCategoryByCategoryName("cat_10")).thenThrow(new CategoryNotFoundException(message));
+		when(categoryRepository.findVersionByName("cat_10")).thenReturn(null);
 		
-		mockMvc.perform(MockMvcRequestBuilders.get("/store/category/name/{name}","cat_10")
+		perform(MockMvcRequestBuilders.get("/store/category/name/{name}","cat_10")
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNotFound())
 		            .andExpect(jsonPath("message", is(message)))
 		            .andExpect(jsonPath("url", is(url)));
 		
-		verify(categoryRepository, times(1)).getCategoryByCategoryName("cat_10");
+		verify(categoryRepository, times(1)).findVersionByName("cat_10");
 		verifyNoMoreInteractions(categoryRepository);
 		 
 		
@@ -137,24 +272,22 @@ public class CategoryControllerTest {
 	@Test
 	public void testCategoryNameFound() throws Exception{
 		
-		Category category = new Category("cat1",LocalDate.of(2016, 8, 22));
-		Set<Product> products = new HashSet<Product>();
-		products.add(new Product("sku1","p1"));
-		products.add(new Product("sku2","p2"));
-		category.setProducts(products);
+		CategorySummary category = new CategorySummary(1L, "cat1", LocalDate.of(2016, 8, 22), LocalDate.of(2016, 8, 22), 2L);
 		
-		when(categoryRepository.getCategoryByCategoryName("cat1")).thenReturn(category);
+		when(categoryRepository.findVersionByName("cat1")).thenReturn(VERSION);
+		when(categoryRepository.findCategorySummaryByName("cat1")).thenReturn(category);
 		
-		mockMvc.perform(MockMvcRequestBuilders.get("/store/category/name/{name}","cat1")
+		perform(MockMvcRequestBuilders.get("/store/category/name/{name}","cat1")
 	            .contentType(MediaType.APPLICATION_JSON)
 	            .accept(MediaType.APPLICATION_JSON))
 	            .andExpect(status().isOk())
 	            .andExpect(jsonPath("$.categoryName", is("cat1")))
-	            .andExpect(jsonPath("$.products", hasSize(2)))
+	            .andExpect(jsonPath("$.productCount", is(2)))
 	            .andExpect(jsonPath("$.categoryCreated",is("2016-08-22")))
 	             .andExpect(jsonPath("$.categoryUpdated",is("2016-08-22")));
 	
-		verify(categoryRepository, times(1)).getCategoryByCategoryName("cat1");
+		verify(categoryRepository, times(1)).findVersionByName("cat1");
+		verify(categoryRepository, times(1)).findCategorySummaryByName("cat1");
 		verifyNoMoreInteractions(categoryRepository);
 		
 	}
@@ -165,16 +298,16 @@ public class CategoryControllerTest {
 		String message = "no Categories are available in the store";
 		String url = "/store/categories";
 		
-		when(categoryRepository.findAll()).thenThrow(new CategoryNotFoundException(message));
+		when(categoryRepository.findCategorySummaries(new OffsetLimitRequest(0, 50))).thenThrow(new CategoryNotFoundException(message));
 		
-		mockMvc.perform(MockMvcRequestBuilders.get("/store/categories")
+		perform(MockMvcRequestBuilders.get("/store/categories")
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNotFound())
 		            .andExpect(jsonPath("message", is(message)))
 		            .andExpect(jsonPath("url", is(url)));
 		
-		verify(categoryRepository, times(1)).findAll();
+		verify(categoryRepository, times(1)).findCategorySummaries(new OffsetLimitRequest(0, 50));
 		verifyNoMoreInteractions(categoryRepository);
 		 
 		
@@ -183,52 +316,88 @@ public class CategoryControllerTest {
 	@Test
 	public void testCategoriesFound() throws Exception{
 		
-		Category category1 = new Category("cat1",LocalDate.of(2016, 8, 22));
-		Set<Product> products1 = new HashSet<Product>();
-		products1.add(new Product("sku1","p1"));
-		products1.add(new Product("sku2","p2"));
-		category1.setProducts(products1);
-		
-		Category category2 = new Category("cat2",LocalDate.of(2016, 8, 23));
-		Set<Product> products2 = new HashSet<Product>();
-		products2.add(new Product("sku3","p3"));
-		products2.add(new Product("sku4","p4"));
-		category2.setProducts(products2);
-		
-		Category category3 = new Category("cat3",LocalDate.of(2016, 8, 24));
-		Set<Product> products3 = new HashSet<Product>();
-		products3.add(new Product("sku5","p5"));
-		products3.add(new Product("sku6","p6"));
-		products3.add(new Product("sku7","p7"));
-		category3.setProducts(products3);
+		List<CategorySummary> categories = new ArrayList<CategorySummary>();
+		categories.add(new CategorySummary(1L, "cat1", LocalDate.of(2016, 8, 22), LocalDate.of(2016, 8, 22), 2L));
+		categories.add(new CategorySummary(2L, "cat2", LocalDate.of(2016, 8, 23), LocalDate.of(2016, 8, 23), 2L));
+		categories.add(new CategorySummary(3L, "cat3", LocalDate.of(2016, 8, 24), LocalDate.of(2016, 8, 24), 3L));
 		
-		List<Category> categories = new ArrayList<Category>();
-		categories.add(category1);
-		categories.add(category2);
-		categories.add(category3);
+		when(categoryRepository.findCategorySummaries(new OffsetLimitRequest(0, 50))).thenReturn(categories);
+		when(categoryCountCache.count()).thenReturn(3L);
 		
-		
-		when(categoryRepository.findAll()).thenReturn(categories);
-		
-		mockMvc.perform(MockMvcRequestBuilders.get("/store/categories")
+		perform(MockMvcRequestBuilders.get("/store/categories")
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isOk())
+		            .andExpect(jsonPath("$.totalCount", is(3)))
+		            .andExpect(jsonPath("$.offset", is(0)))
+		            .andExpect(jsonPath("$.limit", is(50)))
 		            .andExpect(jsonPath("$.categories",  hasSize(3)))
 		            .andExpect(jsonPath("$.categories[0].categoryName", is("cat1")))
 		            .andExpect(jsonPath("$.categories[0].categoryCreated",is("2016-08-22")))
 		            .andExpect(jsonPath("$.categories[0].categoryUpdated",is("2016-08-22")))
-		            .andExpect(jsonPath("$.categories[1].products", hasSize(2)))
-		            .andExpect(jsonPath("$.categories[2].products", hasSize(3)))
+		            .andExpect(jsonPath("$.categories[1].productCount", is(2)))
+		            .andExpect(jsonPath("$.categories[2].productCount", is(3)))
 		            .andExpect(jsonPath("$.categories[2].categoryName", is("cat3")));
 		            
 		
-		verify(categoryRepository, times(1)).findAll();
+		verify(categoryRepository, times(1)).findCategorySummaries(new OffsetLimitRequest(0, 50));
+		verify(categoryCountCache, times(1)).count();
 		verifyNoMoreInteractions(categoryRepository);
 		 
 		
 	}
 	
+	@Test
+	public void testCategoriesFoundWithProducts() throws Exception{
+		
+		List<CategorySummary> categories = new ArrayList<CategorySummary>();
+		categories.add(new CategorySummary(1L, "cat1", LocalDate.of(2016, 8, 22), LocalDate.of(2016, 8, 22), 2L));
+		categories.add(new CategorySummary(2L, "cat2", LocalDate.of(2016, 8, 23), LocalDate.of(2016, 8, 23), 1L));
+		
+		List<Object[]> rows = new ArrayList<Object[]>();
+		rows.add(new Object[] { 1L, new Product("sku1","p1") });
+		rows.add(new Object[] { 1L, new Product("sku2","p2") });
+		rows.add(new Object[] { 2L, new Product("sku3","p3") });
+		
+		when(categoryRepository.findCategorySummaries(new OffsetLimitRequest(0, 50))).thenReturn(categories);
+		when(categoryRepository.findProductsByCategoryIds(anyCollectionOf(Long.class))).thenReturn(rows);
+		
+		perform(MockMvcRequestBuilders.get("/store/categories")
+					.param("expand", "products")
+		            .accept(MediaType.APPLICATION_JSON))
+		            .andExpect(status().isOk())
+		            .andExpect(jsonPath("$.categories",  hasSize(2)))
+		            .andExpect(jsonPath("$.categories[0].products", hasSize(2)))
+		            .andExpect(jsonPath("$.categories[1].products", hasSize(1)))
+		            .andExpect(jsonPath("$.categories[1].products[0].productSku", is("sku3")));
+		
+		verify(categoryRepository, times(1)).findCategorySummaries(new OffsetLimitRequest(0, 50));
+		verify(categoryRepository, times(1)).findProductsByCategoryIds(anyCollectionOf(Long.class));
+		verifyNoMoreInteractions(categoryRepository);
+	}
+	
+	@Test
+	public void testCategoriesPageIsBounded() throws Exception{
+		
+		List<CategorySummary> categories = new ArrayList<CategorySummary>();
+		categories.add(new CategorySummary(11L, "cat11", LocalDate.of(2016, 8, 22), LocalDate.of(2016, 8, 22), 0L));
+		
+		when(categoryRepository.findCategorySummaries(new OffsetLimitRequest(10, 200))).thenReturn(categories);
+		when(categoryCountCache.count()).thenReturn(11L);
+		
+		perform(MockMvcRequestBuilders.get("/store/categories")
+		            .param("offset", "10")
+		            .param("limit", "100000")
+		            .accept(MediaType.APPLICATION_JSON))
+		            .andExpect(status().isOk())
+		            .andExpect(jsonPath("$.totalCount", is(11)))
+		            .andExpect(jsonPath("$.limit", is(200)))
+		            .andExpect(jsonPath("$.categories",  hasSize(1)));
+		
+		verify(categoryRepository, times(1)).findCategorySummaries(new OffsetLimitRequest(10, 200));
+		verifyNoMoreInteractions(categoryRepository);
+	}
+	
 	@Test
 	public void testCreateNewCategory() throws Exception{
 		
@@ -240,7 +409,7 @@ public class CategoryControllerTest {
 		
 		when(categoryRepository.save(category)).thenReturn(category);
 		
-		this.mockMvc.perform(MockMvcRequestBuilders.post("/store/categories")
+		perform(MockMvcRequestBuilders.post("/store/categories")
 						.contentType(MediaType.APPLICATION_JSON)
 						.content(TestUtil.asJsonString(category)))
 		.andExpect(status().isCreated())
@@ -248,6 +417,8 @@ public class CategoryControllerTest {
 		.andExpect(jsonPath("$.products[0].productName", is("p1")));
 
 		verify(categoryRepository, times(1)).save(category);
+		// dropped after commit, by the CategoryCacheInvalidator
+		verify(categoryCountCache, never()).invalidate();
 		verifyNoMoreInteractions(categoryRepository);
 	 
 		
@@ -263,7 +434,7 @@ public class CategoryControllerTest {
 		category.setProducts(products);
 
 
-		this.mockMvc.perform(MockMvcRequestBuilders.post("/store/categories")
+		perform(MockMvcRequestBuilders.post("/store/categories")
 				.contentType(MediaType.APPLICATION_JSON)
 				.content(TestUtil.asJsonString(category)))
 				.andExpect(status().isBadRequest());
@@ -281,7 +452,7 @@ public class CategoryControllerTest {
 		
 		when(categoryRepository.findOne(25L)).thenThrow(new CategoryNotFoundException(message));
 		
-		mockMvc.perform(MockMvcRequestBuilders.delete("/store/category/{id}", 25L)
+		perform(MockMvcRequestBuilders.delete("/store/category/{id}", 25L)
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNotFound())
@@ -306,7 +477,7 @@ public class CategoryControllerTest {
 		
 		when(categoryRepository.findOne(1L)).thenReturn(category);
 		
-		mockMvc.perform(MockMvcRequestBuilders.delete("/store/category/{id}", 1L)
+		perform(MockMvcRequestBuilders.delete("/store/category/{id}", 1L)
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNoContent());
@@ -315,6 +486,12 @@ public class CategoryControllerTest {
 		verify(categoryRepository, times(1)).findOne(1L);
 		verify(categoryRepository, times(1)).delete(category);
 		verifyNoMoreInteractions(categoryRepository);
+
+		ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor
+				.forClass(CatalogChangeEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertThat(event.getValue().getChangeType(), is(ChangeType.DELETED));
+		assertThat(event.getValue().getKey(), is("cat1"));
 		
 	}
 	
@@ -326,7 +503,7 @@ public class CategoryControllerTest {
 		
 		when(categoryRepository.findOne(25L)).thenThrow(new CategoryNotFoundException(message));
 		
-		mockMvc.perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products/{productIds}", 25L,"23,24,25")
+		perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products/{productIds}", 25L,"23,24,25")
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNotFound())
@@ -341,8 +518,8 @@ public class CategoryControllerTest {
 	@Test
 	public void testaddNontExistedProductToCategory() throws Exception{
 		
-		String message = "product Id 23 is not available in the store to add it to category";
-		String url = "/store/category/1/products/23";
+		String message = "the product ids 23,25 are not existed";
+		String url = "/store/category/1/products/23,24,25";
 		
 		Category category = new Category("cat1",LocalDate.of(2016, 8, 22));
 		Set<Product> products = new HashSet<Product>();
@@ -351,10 +528,12 @@ public class CategoryControllerTest {
 		category.setProducts(products);
 		category.setCategoryId(1L);
 		
+		Set<Long> ids = new LinkedHashSet<Long>(Arrays.asList(23L, 24L, 25L));
+		
 		when(categoryRepository.findOne(1L)).thenReturn(category);
-		when(productRepository.findOne(23L)).thenThrow(new ProductNotFoundException(message));
+		when(productRepository.findExistingProductIds(ids)).thenReturn(Arrays.asList(24L));
 		
-		mockMvc.perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products/{productIds}", 1L,"23")
+		perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products/{productIds}", 1L,"23,24,25")
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNotFound())
@@ -362,7 +541,7 @@ public class CategoryControllerTest {
 		            .andExpect(jsonPath("url", is(url)));
 		
 		verify(categoryRepository, times(1)).findOne(1L);
-		verify(productRepository, times(1)).findOne(23L);
+		verify(productRepository, times(1)).findExistingProductIds(ids);
 		verifyNoMoreInteractions(productRepository);
 		verifyNoMoreInteractions(categoryRepository);
 		
@@ -375,28 +554,34 @@ public class CategoryControllerTest {
 		Category category = new Category("cat1",LocalDate.of(2016, 8, 22));
 		category.setCategoryId(1L);
 		
-		Product product = new Product(1L,"sku_1", "p1",LocalDate.now(), LocalDate.now());
+		Set<Long> ids = new LinkedHashSet<Long>(Arrays.asList(1L, 2L));
+		Set<Long> attachedIds = new LinkedHashSet<Long>(Arrays.asList(2L));
 		
 		when(categoryRepository.findOne(1L)).thenReturn(category);
-		when(productRepository.findOne(1L)).thenReturn(product);
-		
-		Set<Product> products = new HashSet<Product>();
-		products.add(product);
-		category.setProducts(products);
-		
-		when(categoryRepository.save(category)).thenReturn(category);
-		
-		mockMvc.perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products/{productIds}", 1L,"1")
+		when(productRepository.findExistingProductIds(ids)).thenReturn(Arrays.asList(1L, 2L));
+		when(categoryRepository.findProductIdsInCategory(1L, ids)).thenReturn(Arrays.asList(1L));
+		when(categoryRepository.addProductsToCategory(1L, attachedIds)).thenReturn(1);
+		when(categoryRepository.findProductsByCategoryId(1L)).thenReturn(Arrays.asList(
+				new Product(1L, "sku_1", "p1", LocalDate.now(), LocalDate.now()),
+				new Product(2L, "sku_2", "p2", LocalDate.now(), LocalDate.now())));
+		
+		// the category and its products, read with one join
+		perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products/{productIds}", 1L,"1,2")
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		             .andExpect(status().isOk())
+		            .andExpect(jsonPath("$.categoryId", is(1)))
 		            .andExpect(jsonPath("$.categoryName", is("cat1")))
+		            .andExpect(jsonPath("$.products", hasSize(2)))
 		            .andExpect(jsonPath("$.products[0].productSku", is("sku_1")))
-		            .andExpect(jsonPath("$.products[0].productName", is("p1")));
+		            .andExpect(jsonPath("$.products[1].productName", is("p2")));
 		
 		verify(categoryRepository, times(1)).findOne(1L);
-		verify(productRepository, times(1)).findOne(1L);
-		verify(categoryRepository, times(1)).saveAndFlush(category);
+		verify(productRepository, times(1)).findExistingProductIds(ids);
+		verify(categoryRepository, times(1)).findProductIdsInCategory(1L, ids);
+		verify(categoryRepository, times(1)).addProductsToCategory(1L, attachedIds);
+		verify(categoryRepository, times(1)).touchCategory(eq(1L), any(Timestamp.class));
+		verify(categoryRepository, times(1)).findProductsByCategoryId(1L);
 		verifyNoMoreInteractions(productRepository);
 		verifyNoMoreInteractions(categoryRepository);
 		
@@ -414,7 +599,7 @@ public class CategoryControllerTest {
 		List<Product> products = new ArrayList<Product>();
 		products.add(product);
 		
-		mockMvc.perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products", 25L)
+		perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products", 25L)
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .content(TestUtil.asJsonString(products))
 		            .accept(MediaType.APPLICATION_JSON))		           
@@ -441,7 +626,7 @@ public class CategoryControllerTest {
 		products.add(product1);
 		products.add(product2);
 		
-		mockMvc.perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products", 1L)
+		perform(MockMvcRequestBuilders.put("/store/category/{categoryId}/products", 1L)
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .content(TestUtil.asJsonString(products))
 		            .accept(MediaType.APPLICATION_JSON))		           
@@ -470,7 +655,7 @@ public class CategoryControllerTest {
 		
 		when(categoryRepository.findOne(25L)).thenThrow(new CategoryNotFoundException(message));
 		
-		mockMvc.perform(MockMvcRequestBuilders.delete("/store/category/{categoryId}/products/{productIds}", 25L,"12,13,15")
+		perform(MockMvcRequestBuilders.delete("/store/category/{categoryId}/products/{productIds}", 25L,"12,13,15")
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNotFound())
@@ -484,20 +669,20 @@ public class CategoryControllerTest {
 	@Test
 	public void testDeleteNonExistedProductsFromCategory() throws Exception{
 		
-		String message = "product Id 12 is not available in the store to add it to category";
+		String message = "the product id 12 is not existed in the store";
 		String url = "/store/category/1/products/12,24,23";
 		
 		Category category = new Category("cat1",LocalDate.of(2016, 8, 22));
-		Set<Product> products = new HashSet<Product>();
-		products.add(new Product("sku1","p1"));
-		products.add(new Product("sku2","p2"));
-		category.setProducts(products);
 		category.setCategoryId(1L);
 		
+		Set<Long> ids = new LinkedHashSet<Long>(Arrays.asList(12L, 24L, 23L));
+		Set<Long> nonMembers = new LinkedHashSet<Long>(Arrays.asList(12L, 23L));
+		
 		when(categoryRepository.findOne(1L)).thenReturn(category);
-		when(productRepository.findOne(12L)).thenThrow(new ProductNotFoundException(message));
+		when(categoryRepository.findProductIdsInCategory(1L, ids)).thenReturn(Arrays.asList(24L));
+		when(productRepository.findExistingProductIds(nonMembers)).thenReturn(Arrays.asList(23L));
 		
-		mockMvc.perform(MockMvcRequestBuilders.delete("/store/category/{categoryId}/products/{productIds}", 1L,"12,24,23")
+		perform(MockMvcRequestBuilders.delete("/store/category/{categoryId}/products/{productIds}", 1L,"12,24,23")
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNotFound())
@@ -505,43 +690,68 @@ public class CategoryControllerTest {
 		            .andExpect(jsonPath("url", is(url)));
 		
 		verify(categoryRepository, times(1)).findOne(1L);
-		verify(productRepository, times(1)).findOne(12L);
+		verify(categoryRepository, times(1)).findProductIdsInCategory(1L, ids);
+		verify(productRepository, times(1)).findExistingProductIds(nonMembers);
 		verifyNoMoreInteractions(productRepository);
 		verifyNoMoreInteractions(categoryRepository);
 	}
 	
 	@Test
-	public void testDeleteProductsFromCategory() throws Exception{
+	public void testDeleteNonMemberProductsFromCategory() throws Exception{
+		
+		String message = "the product id 24 is not existed in the category whose name cat1";
+		String url = "/store/category/1/products/10,24";
 		
 		Category category = new Category("cat1",LocalDate.of(2016, 8, 22));
 		category.setCategoryId(1L);
 		
-		Product product1 = new Product("SKU_1", "Product1");
-		product1.setProductId(10L);
-		Product product2 = new Product("SKU_2", "Product2");
-		product2.setProductId(11L);
-		Set<Product> products = new HashSet<Product>();
-		products.add(product1);
-		products.add(product2);
+		Set<Long> ids = new LinkedHashSet<Long>(Arrays.asList(10L, 24L));
+		Set<Long> nonMembers = new LinkedHashSet<Long>(Arrays.asList(24L));
 		
-		category.setProducts(products);
+		when(categoryRepository.findOne(1L)).thenReturn(category);
+		when(categoryRepository.findProductIdsInCategory(1L, ids)).thenReturn(Arrays.asList(10L));
+		when(productRepository.findExistingProductIds(nonMembers)).thenReturn(Arrays.asList(24L));
+		
+		perform(MockMvcRequestBuilders.delete("/store/category/{categoryId}/products/{productIds}", 1L,"10,24")
+		            .contentType(MediaType.APPLICATION_JSON)
+		            .accept(MediaType.APPLICATION_JSON))
+		            .andExpect(status().isNotFound())
+		            .andExpect(jsonPath("message", is(message)))
+		            .andExpect(jsonPath("url", is(url)));
+		
+		verify(categoryRepository, times(0)).removeProductsFromCategory(1L, ids);
+	}
+	
+	@Test
+	public void testDeleteProductsFromCategory() throws Exception{
+		
+		Category category = new Category("cat1",LocalDate.of(2016, 8, 22));
+		category.setCategoryId(1L);
+		
+		Set<Long> ids = new LinkedHashSet<Long>(Arrays.asList(10L, 11L));
 		
 		when(categoryRepository.findOne(1L)).thenReturn(category);
-		when(productRepository.findOne(10L)).thenReturn(product1);
-		when(productRepository.findOne(11L)).thenReturn(product2);
+		when(categoryRepository.findProductIdsInCategory(1L, ids)).thenReturn(Arrays.asList(10L, 11L));
+		when(categoryRepository.removeProductsFromCategory(1L, ids)).thenReturn(2);
 		
-		mockMvc.perform(MockMvcRequestBuilders.delete("/store/category/{categoryId}/products/{productIds}", 1L,"10,11")
+		perform(MockMvcRequestBuilders.delete("/store/category/{categoryId}/products/{productIds}", 1L,"10,11")
 		            .contentType(MediaType.APPLICATION_JSON)
 		            .accept(MediaType.APPLICATION_JSON))
 		            .andExpect(status().isNoContent());
 		            
 		
 		verify(categoryRepository, times(1)).findOne(1L);
-		verify(productRepository, times(1)).findOne(10L);
-		verify(productRepository, times(1)).findOne(11L);
-		verify(categoryRepository, times(1)).saveAndFlush(category);
+		verify(categoryRepository, times(1)).findProductIdsInCategory(1L, ids);
+		verify(categoryRepository, times(1)).removeProductsFromCategory(1L, ids);
+		verify(categoryRepository, times(1)).touchCategory(eq(1L), any(Timestamp.class));
 		verifyNoMoreInteractions(productRepository);
 		verifyNoMoreInteractions(categoryRepository);
+
+		ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor
+				.forClass(CatalogChangeEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertThat(event.getValue().getChangeType(), is(ChangeType.UPDATED));
+		assertThat(event.getValue().getEntityId(), is(1L));
 	}
 	
 	
@@ -1,26 +1,46 @@
 package com.store.rest.controller.test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.MethodParameter;
 import org.springframework.validation.BindingResult;
 import org.springframework.http.MediaType;
@@ -29,15 +49,35 @@ import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConvert
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.async.RepositoryExecutor;
+import com.store.cache.ProductLookupGuard;
+import com.store.domain.EntityVersion;
 import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
 import com.store.exception.ProductNotFoundException;
+import com.store.exception.ServiceUnavailableException;
+import com.store.metrics.SqlStatementHeaderFilter;
+import com.store.metrics.SqlStatementInterceptor;
+import com.store.metrics.SqlStatementStatistics;
+import com.store.repository.CategoryRepository;
+import com.store.repository.OffsetLimitRequest;
 import com.store.repository.ProductRepository;
 import com.store.rest.controller.ProductController;
 import com.store.rest.exception.RestErrorHandlerAdvice;
+import com.store.rest.representation.ProductPatchRepresentation;
+import com.store.rest.representation.ProductSearchResultRepresentation;
+import com.store.rest.representation.ProductSearchResultRepresentation.Hit;
+import com.store.search.ProductSearchIndex;
+import com.store.util.KeysetCursor;
 import com.store.util.test.TestUtil;
 
 @RunWith(SpringRunner.class)
@@ -51,6 +91,34 @@ public class ProductControllerTest {
 	@Mock
 	private ProductRepository productRepository;
 
+	@Mock
+	private CategoryRepository categoryRepository;
+
+	@Mock
+	private EntityManager entityManager;
+
+	@Spy
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Mock
+	private ApplicationEventPublisher eventPublisher;
+
+	@Mock
+	private ProductLookupGuard productLookupGuard;
+
+	@Mock
+	private ProductSearchIndex productSearchIndex;
+
+	// runs every task on the calling thread
+	@Spy
+	private RepositoryExecutor repositoryExecutor = new RepositoryExecutor(
+			mock(PlatformTransactionManager.class));
+
+	private static final Instant MODIFIED = Instant.parse("2016-08-17T10:15:30Z");
+
 	private MockMvc mockMvc;
 
 
@@ -61,22 +129,26 @@ public class ProductControllerTest {
 		mockMvc = MockMvcBuilders
 				.standaloneSetup(productController)
 				.setControllerAdvice(new RestErrorHandlerAdvice())
+				.addInterceptors(new SqlStatementInterceptor(20))
+				.addFilters(new SqlStatementHeaderFilter())
 				.setMessageConverters(
 						new MappingJackson2HttpMessageConverter(),
 						new Jaxb2RootElementHttpMessageConverter()).build();
 
 	}
 
+	private ResultActions perform(RequestBuilder request) throws Exception {
+		return TestUtil.performAsync(mockMvc, request);
+	}
+
 	@Test
 	public void testGetProductIdNotFound() throws Exception {
 
 		String message = "the product id 10 is not existed";
 		String url = "/store/product/id/10";
-		when(productRepository.findOne(10L)).thenThrow(
-				new ProductNotFoundException(message));
+		when(productRepository.findVersionById(10L)).thenReturn(null);
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders.get("/store/product/id/{id}", 10L)
 								.contentType(MediaType.APPLICATION_JSON)
 								.accept(MediaType.APPLICATION_JSON))
@@ -84,8 +156,27 @@ public class ProductControllerTest {
 				.andExpect(jsonPath("message", is(message)))
 				.andExpect(jsonPath("url", is(url)));
 
-		verify(productRepository, times(1)).findOne(10L);
+		verify(productRepository, times(1)).findVersionById(10L);
 		verifyNoMoreInteractions(productRepository);
+		verify(productLookupGuard, times(1)).missingId(10L);
+		verify(productLookupGuard, times(1)).recordMissingId(eq(10L),
+				any(ProductNotFoundException.class));
+	}
+
+	@Test
+	public void testGetProductSkuKnownMissing() throws Exception {
+
+		when(productLookupGuard.missingSku("SKU_X")).thenReturn(
+				ProductNotFoundException.forSku("SKU_X"));
+
+		perform(
+						MockMvcRequestBuilders.get("/store/product/sku/{sku}", "SKU_X")
+								.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotFound())
+				.andExpect(jsonPath("message", is("the product sku SKU_X is not existed")))
+				.andExpect(jsonPath("url", is("/store/product/sku/SKU_X")));
+
+		verifyZeroInteractions(productRepository);
 	}
 
 	@Test
@@ -94,21 +185,128 @@ public class ProductControllerTest {
 		Product product = new Product("SKU_A", "ProductA", LocalDate.of(2016,
 				8, 14), LocalDate.of(2016, 8, 17));
 
-		when(productRepository.findOne(1L)).thenReturn(product);
+		EntityVersion version = new EntityVersion(3L, MODIFIED);
+		when(productRepository.findVersionById(1L)).thenReturn(version);
+		when(productRepository.findDetachedById(1L)).thenReturn(product);
 
-		mockMvc.perform(
+		perform(
 				MockMvcRequestBuilders.get("/store/product/id/{id}", 1L)
 				.accept(MediaType.APPLICATION_JSON))
 				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", version.eTag(MediaType.APPLICATION_JSON_VALUE)))
+				.andExpect(header().dateValue("Last-Modified", MODIFIED.toEpochMilli()))
 				.andExpect(jsonPath("productSku", is("SKU_A")))
-				.andExpect(jsonPath("productName", is("ProductA")));
+				.andExpect(jsonPath("productName", is("ProductA")))
+				.andExpect(jsonPath("productVersion").doesNotExist());
 		// .andExpect(
 		// content()
 		// .string("{\"productSku\":\"SKU_C\",\"productName\":\"ProductC\",\"productLastUpdated\":{\"year\":2016,\"month\":\"AUGUST\",\"dayOfMonth\":14,\"dayOfWeek\":\"SUNDAY\",\"era\":\"CE\",\"dayOfYear\":227,\"leapYear\":true,\"monthValue\":8,\"chronology\":{\"id\":\"ISO\",\"calendarType\":\"iso8601\"}},\"id\":1}"));
 
-		verify(productRepository, times(1)).findOne(1L);
+		verify(productRepository, times(1)).findVersionById(1L);
+		verify(productRepository, times(1)).findDetachedById(1L);
+		verifyNoMoreInteractions(productRepository);
+
+	}
+
+	@Test
+	public void testGetProductIdReportsSqlStatements() throws Exception {
+
+		when(productRepository.findVersionById(1L)).thenAnswer(invocation -> {
+			SqlStatementStatistics.current().record(2000000L);
+			return new EntityVersion(3L, MODIFIED);
+		});
+		when(productRepository.findDetachedById(1L)).thenAnswer(invocation -> {
+			SqlStatementStatistics.current().record(1000000L);
+			return new Product("SKU_A", "ProductA");
+		});
+
+		ResultActions actions = perform(
+				MockMvcRequestBuilders.get("/store/product/id/{id}", 1L)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(header().string(SqlStatementHeaderFilter.MILLIS_HEADER, "3.000"));
+
+		assertThat(TestUtil.sqlStatements(actions), is(2L));
+		assertThat(SqlStatementStatistics.current(), nullValue());
+	}
+
+	@Test
+	public void testSearchProductsIsServedFromTheIndex() throws Exception {
+
+		List<Hit> hits = new ArrayList<Hit>();
+		hits.add(new Hit(2L, "SKU_B", "Phone charger", 3));
+		when(productSearchIndex.search("phone", 20, 100)).thenReturn(
+				new ProductSearchResultRepresentation("phone", 21, 20, hits));
+
+		perform(
+				MockMvcRequestBuilders.get("/store/products/search")
+				.param("q", "phone").param("offset", "20").param("size", "5000")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("total", is(21)))
+				.andExpect(jsonPath("hits", hasSize(1)))
+				.andExpect(jsonPath("hits[0].productSku", is("SKU_B")));
+
+		verifyZeroInteractions(productRepository);
+	}
+
+	@Test
+	public void testSuggestProductsIsServedFromTheIndex() throws Exception {
+
+		List<String> suggestions = new ArrayList<String>();
+		suggestions.add("Phone charger");
+		suggestions.add("PH-100");
+		when(productSearchIndex.suggest("ph", 10)).thenReturn(suggestions);
+
+		perform(
+				MockMvcRequestBuilders.get("/store/products/suggest")
+				.param("prefix", "ph")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("prefix", is("ph")))
+				.andExpect(jsonPath("suggestions", hasSize(2)))
+				.andExpect(jsonPath("suggestions[0]", is("Phone charger")));
+
+		verifyZeroInteractions(productRepository);
+	}
+
+	@Test
+	public void testGetProductIdNotModified() throws Exception {
+
+		EntityVersion version = new EntityVersion(3L, MODIFIED);
+		when(productRepository.findVersionById(1L)).thenAnswer(invocation -> {
+			SqlStatementStatistics.current().record(1000000L);
+			return version;
+		});
+
+		ResultActions actions = perform(
+				MockMvcRequestBuilders.get("/store/product/id/{id}", 1L)
+				.accept(MediaType.APPLICATION_JSON)
+				.header("If-None-Match", version.eTag(MediaType.APPLICATION_JSON_VALUE)))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+
+		assertThat(TestUtil.sqlStatements(actions), is(1L));
+
+		verify(productRepository, times(1)).findVersionById(1L);
 		verifyNoMoreInteractions(productRepository);
+	}
 
+	@Test
+	public void testGetProductIdModifiedSinceOlderCopy() throws Exception {
+
+		Product product = new Product("SKU_A", "ProductA", LocalDate.of(2016,
+				8, 14), LocalDate.of(2016, 8, 17));
+
+		when(productRepository.findVersionById(1L)).thenReturn(new EntityVersion(4L, MODIFIED));
+		when(productRepository.findDetachedById(1L)).thenReturn(product);
+
+		perform(
+				MockMvcRequestBuilders.get("/store/product/id/{id}", 1L)
+				.accept(MediaType.APPLICATION_JSON)
+				.header("If-None-Match", new EntityVersion(3L, MODIFIED).eTag(MediaType.APPLICATION_JSON_VALUE)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("productSku", is("SKU_A")));
 	}
 
 
@@ -117,11 +315,9 @@ public class ProductControllerTest {
 
 		String message = "the product sku SKU_ProA is not existed";
 		String url = "/store/product/sku/SKU_ProA";
-		when(productRepository.findByProductSku("SKU_ProA")).thenThrow(
-				new ProductNotFoundException(message));
+		when(productRepository.findIdBySku("SKU_ProA")).thenReturn(null);
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders
 								.get("/store/product/sku/{sku}", "SKU_ProA")
 								.contentType(MediaType.APPLICATION_JSON)
@@ -130,7 +326,7 @@ public class ProductControllerTest {
 				.andExpect(jsonPath("message", is(message)))
 				.andExpect(jsonPath("url", is(url)));
 
-		verify(productRepository, times(1)).findByProductSku("SKU_ProA");
+		verify(productRepository, times(1)).findIdBySku("SKU_ProA");
 		verifyNoMoreInteractions(productRepository);
 	}
 
@@ -140,30 +336,52 @@ public class ProductControllerTest {
 		Product product = new Product("SKU_B", "ProductB", LocalDate.of(2016,
 				8, 16), LocalDate.of(2016, 8, 17));
 
-		when(productRepository.findByProductSku("SKU_B")).thenReturn(product);
+		when(productRepository.findIdBySku("SKU_B")).thenReturn(2L);
+		when(productRepository.findVersionById(2L)).thenReturn(new EntityVersion(1L, MODIFIED));
+		when(productRepository.findDetachedById(2L)).thenReturn(product);
 
-		mockMvc.perform(
+		perform(
 				MockMvcRequestBuilders.get("/store/product/sku/{sku}", "SKU_B")
 						.accept(MediaType.APPLICATION_JSON))
 				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", new EntityVersion(1L, MODIFIED).eTag(MediaType.APPLICATION_JSON_VALUE)))
 				.andExpect(jsonPath("productSku", is("SKU_B")))
 				.andExpect(jsonPath("productName", is("ProductB")));
 
-		verify(productRepository, times(1)).findByProductSku("SKU_B");
+		verify(productRepository, times(1)).findIdBySku("SKU_B");
+		verify(productRepository, times(1)).findVersionById(2L);
+		verify(productRepository, times(1)).findDetachedById(2L);
 		verifyNoMoreInteractions(productRepository);
 
 	}
 
+	@Test
+	public void testGetProductSkuRenamedById() throws Exception {
+
+		Product product = new Product(2L, "SKU_C", "ProductB", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+
+		// the cached mapping still points at the product that left the SKU
+		when(productRepository.findIdBySku("SKU_B")).thenReturn(2L);
+		when(productRepository.findVersionById(2L)).thenReturn(new EntityVersion(2L, MODIFIED));
+		when(productRepository.findDetachedById(2L)).thenReturn(product);
+
+		perform(
+				MockMvcRequestBuilders.get("/store/product/sku/{sku}", "SKU_B")
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotFound())
+				.andExpect(jsonPath("message", is("the product sku SKU_B is not existed")));
+	}
+
 	@Test
 	public void testGetAllProductsNotFound() throws Exception {
 
 		String message = "no Products are existed in the store";
 		String url = "/store/products";
-		when(productRepository.findAll()).thenThrow(
-				new ProductNotFoundException(message));
+		when(productRepository.findProductsAfter(0L, new OffsetLimitRequest(0, 100)))
+				.thenThrow(new ProductNotFoundException(message));
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders.get("/store/products")
 								.contentType(MediaType.APPLICATION_JSON)
 								.accept(MediaType.APPLICATION_JSON))
@@ -171,7 +389,8 @@ public class ProductControllerTest {
 				.andExpect(jsonPath("message", is(message)))
 				.andExpect(jsonPath("url", is(url)));
 
-		verify(productRepository, times(1)).findAll();
+		verify(productRepository, times(1)).findProductsAfter(0L,
+				new OffsetLimitRequest(0, 100));
 		verifyNoMoreInteractions(productRepository);
 
 	}
@@ -195,9 +414,10 @@ public class ProductControllerTest {
 		products.add(product3);
 		products.add(product4);
 
-		when(productRepository.findAll()).thenReturn(products);
+		when(productRepository.findProductsAfter(0L, new OffsetLimitRequest(0, 100)))
+				.thenReturn(products);
 
-		mockMvc.perform(
+		perform(
 				MockMvcRequestBuilders.get("/store/products").accept(
 						MediaType.APPLICATION_JSON))
 				.andExpect(status().isOk())
@@ -207,11 +427,156 @@ public class ProductControllerTest {
 						jsonPath("$.products[0].productName", is("ProductA")))
 				.andExpect(jsonPath("$.products[3].productSku", is("SKU_F")))
 				.andExpect(
-						jsonPath("$.products[3].productName", is("ProductF")));
+						jsonPath("$.products[3].productName", is("ProductF")))
+				.andExpect(jsonPath("$.nextCursor", nullValue()));
+
+		verify(productRepository, times(1)).findProductsAfter(0L,
+				new OffsetLimitRequest(0, 100));
+		verifyNoMoreInteractions(productRepository);
+
+	}
+
+	@Test
+	public void testGetProductsPageWithCursor() throws Exception {
+
+		Product product3 = new Product(3L, "SKU_C", "ProductC", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+		Product product4 = new Product(4L, "SKU_D", "ProductD", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+
+		List<Product> products = new ArrayList<Product>();
+		products.add(product3);
+		products.add(product4);
+
+		when(productRepository.findProductsAfter(2L, new OffsetLimitRequest(0, 2)))
+				.thenReturn(products);
+
+		perform(
+				MockMvcRequestBuilders.get("/store/products")
+						.param("cursor", KeysetCursor.encode(2L))
+						.param("size", "2")
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.products", hasSize(2)))
+				.andExpect(jsonPath("$.products[0].productSku", is("SKU_C")))
+				.andExpect(jsonPath("$.nextCursor", is(KeysetCursor.encode(4L))));
+
+		verify(productRepository, times(1)).findProductsAfter(2L,
+				new OffsetLimitRequest(0, 2));
+		verifyNoMoreInteractions(productRepository);
+	}
+
+	@Test
+	public void testGetProductsFirstLastWindow() throws Exception {
+
+		Product product2 = new Product(2L, "SKU_B", "ProductB", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+
+		List<Product> products = new ArrayList<Product>();
+		products.add(product2);
+
+		when(productRepository.findProductsOrderedById(new OffsetLimitRequest(1, 3)))
+				.thenReturn(products);
+
+		perform(
+				MockMvcRequestBuilders.get("/store/products")
+						.param("first", "2")
+						.param("last", "4")
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.products", hasSize(1)))
+				.andExpect(jsonPath("$.products[0].productSku", is("SKU_B")))
+				.andExpect(jsonPath("$.nextCursor", nullValue()));
+
+		verify(productRepository, times(1)).findProductsOrderedById(
+				new OffsetLimitRequest(1, 3));
+		verifyNoMoreInteractions(productRepository);
+	}
+
+	@Test
+	public void testGetProductsFirstWithoutLastIsOnePage() throws Exception {
+
+		Product product2 = new Product(2L, "SKU_B", "ProductB", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+		Product product3 = new Product(3L, "SKU_C", "ProductC", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+
+		List<Product> products = new ArrayList<Product>();
+		products.add(product2);
+		products.add(product3);
+
+		when(productRepository.findProductsOrderedById(new OffsetLimitRequest(1, 2)))
+				.thenReturn(products);
+
+		// no longer the rest of the table: a page, and the cursor after it
+		perform(
+				MockMvcRequestBuilders.get("/store/products")
+						.param("first", "2")
+						.param("size", "2")
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.products", hasSize(2)))
+				.andExpect(jsonPath("$.nextCursor", is(KeysetCursor.encode(3L))));
+
+		verify(productRepository, times(1)).findProductsOrderedById(
+				new OffsetLimitRequest(1, 2));
+		verifyNoMoreInteractions(productRepository);
+	}
+
+	@Test
+	public void testGetProductsInvalidCursor() throws Exception {
+
+		perform(
+				MockMvcRequestBuilders.get("/store/products")
+						.param("cursor", "not-a-cursor")
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isBadRequest());
 
-		verify(productRepository, times(1)).findAll();
 		verifyNoMoreInteractions(productRepository);
+	}
+
+	@Test
+	public void testGetProductsWhenExecutorSaturated() throws Exception {
+
+		doThrow(new ServiceUnavailableException("the store is busy", 2)).when(
+				repositoryExecutor).submitReadOnly(any(Supplier.class));
+
+		perform(
+				MockMvcRequestBuilders.get("/store/products").accept(
+						MediaType.APPLICATION_JSON))
+				.andExpect(status().isServiceUnavailable())
+				.andExpect(header().string("Retry-After", "2"))
+				.andExpect(jsonPath("message", is("the store is busy")));
+
+		verifyZeroInteractions(productRepository);
+	}
+
+	@Test
+	public void testExportProductsAsNdjson() throws Exception {
+
+		Product product1 = new Product(1L, "SKU_A", "ProductA", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+		Product product2 = new Product(2L, "SKU_B", "ProductB", LocalDate.of(
+				2016, 8, 16), LocalDate.of(2016, 8, 17));
+
+		when(productRepository.streamAllProducts()).thenReturn(
+				Stream.of(product1, product2));
+
+		String line1 = "{\"productId\":1,\"productSku\":\"SKU_A\",\"productName\":\"ProductA\","
+				+ "\"productCreated\":\"2016-08-16\",\"productLastUpdated\":\"2016-08-17\"}";
+		String line2 = "{\"productId\":2,\"productSku\":\"SKU_B\",\"productName\":\"ProductB\","
+				+ "\"productCreated\":\"2016-08-16\",\"productLastUpdated\":\"2016-08-17\"}";
+
+		perform(
+				MockMvcRequestBuilders.get("/store/products/export").accept(
+						ProductController.NDJSON_VALUE))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(
+						ProductController.NDJSON_VALUE))
+				.andExpect(content().string(line1 + "\n" + line2 + "\n"));
 
+		verify(productRepository, times(1)).streamAllProducts();
+		verifyNoMoreInteractions(productRepository);
 	}
 
 	@Test
@@ -224,8 +589,7 @@ public class ProductControllerTest {
 		when(productRepository.findOne(25L)).thenThrow(
 				new ProductNotFoundException(message));
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders.put("/store/product/id/{id}", 25L)
 								.contentType(MediaType.APPLICATION_JSON)
 								.accept(MediaType.APPLICATION_JSON)
@@ -251,7 +615,7 @@ public class ProductControllerTest {
 		product.setProductSku(TestUtil.createStringWithLength(46));
 		product.setProductName(TestUtil.createStringWithLength(50));
 
-		this.mockMvc.perform(
+		perform(
 				MockMvcRequestBuilders.put("/store/product/id/{id}", 1L)
 				.contentType(MediaType.APPLICATION_JSON)
                 .content(TestUtil.asJsonString(product)))
@@ -273,8 +637,10 @@ public class ProductControllerTest {
 				LocalDate.of(2016, 8, 16), LocalDate.now());
 
 		when(productRepository.findOne(1L)).thenReturn(product);
+		when(productRepository.saveAndFlush(updatedProduct)).thenReturn(
+				updatedProduct);
 
-		this.mockMvc.perform(
+		perform(
 				MockMvcRequestBuilders.put("/store/product/id/{id}", 1L)
 						.contentType(MediaType.APPLICATION_JSON)
 						// .accept((MediaType.APPLICATION_JSON))
@@ -289,6 +655,12 @@ public class ProductControllerTest {
 		verify(productRepository, times(1)).saveAndFlush(updatedProduct);
 		verifyNoMoreInteractions(productRepository);
 
+		ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor
+				.forClass(CatalogChangeEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertThat(event.getValue().getChangeType(), is(ChangeType.UPDATED));
+		assertThat(event.getValue().getKey(), is("SKU_A"));
+
 	}
 
 	@Test
@@ -301,8 +673,7 @@ public class ProductControllerTest {
 		when(productRepository.findByProductSku("SKU_111")).thenThrow(
 				new ProductNotFoundException(message));
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders
 								.put("/store/product/sku/{sku}", "SKU_111")
 								.contentType(MediaType.APPLICATION_JSON)
@@ -329,8 +700,10 @@ public class ProductControllerTest {
 
 		Product updatedProduct = new Product(1L, "SKU_1", "Product_V1",
 				LocalDate.of(2016, 8, 16), LocalDate.now());
+		when(productRepository.saveAndFlush(updatedProduct)).thenReturn(
+				updatedProduct);
 
-		this.mockMvc.perform(
+		perform(
 				MockMvcRequestBuilders.put("/store/product/sku/{sku}", "SKU_1")
 						.contentType(MediaType.APPLICATION_JSON)
 						// .accept((MediaType.APPLICATION_JSON))
@@ -347,13 +720,131 @@ public class ProductControllerTest {
 
 	}
 
+	@Test
+	public void testUpdateProductBySkuRenamedKeepsPreviousSku() throws Exception {
+
+		Product product = new Product(25L, "SKU_1", "Product1", LocalDate.of(
+				2016, 8, 16), LocalDate.now());
+
+		when(productRepository.findByProductSku("SKU_1")).thenReturn(product);
+		// the merge copies the new state into the managed instance read first
+		when(productRepository.saveAndFlush(any(Product.class))).thenAnswer(invocation -> {
+			Product merged = (Product) invocation.getArguments()[0];
+			product.setProductSku(merged.getProductSku());
+			product.setProductName(merged.getProductName());
+			return product;
+		});
+
+		perform(
+				MockMvcRequestBuilders.put("/store/product/sku/{sku}", "SKU_1")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(TestUtil.asJsonString(new Product("SKU_2", "Product1"))))
+				.andExpect(status().isOk());
+
+		ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor
+				.forClass(CatalogChangeEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertThat(event.getValue().getKey(), is("SKU_2"));
+		assertThat(event.getValue().getPreviousKey(), is("SKU_1"));
+	}
+
+	@Test
+	public void testPatchProduct() throws Exception {
+
+		String eTag = new EntityVersion(3L, MODIFIED).eTag(MediaType.APPLICATION_JSON_VALUE);
+		when(productRepository.patchProduct(eq(1L), eq(3L), isNull(String.class),
+				eq("Product_V2"), any(Instant.class))).thenAnswer(invocation -> {
+					SqlStatementStatistics.current().record(1000000L);
+					return 1;
+				});
+
+		ResultActions actions = perform(
+				MockMvcRequestBuilders.patch("/store/product/id/{id}", 1L)
+						.contentType(MediaType.APPLICATION_JSON)
+						.accept(MediaType.APPLICATION_JSON)
+						.header("If-Match", eTag)
+						.content(TestUtil.asJsonString(new ProductPatchRepresentation(null, "Product_V2"))))
+				.andExpect(status().isNoContent())
+				.andExpect(header().string("ETag", startsWith("\"4-")));
+
+		assertThat(TestUtil.sqlStatements(actions), is(1L));
+
+		verify(productRepository, times(1)).patchProduct(eq(1L), eq(3L),
+				isNull(String.class), eq("Product_V2"), any(Instant.class));
+		verifyNoMoreInteractions(productRepository);
+
+		ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor
+				.forClass(CatalogChangeEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertThat(event.getValue().getChangeType(), is(ChangeType.UPDATED));
+		assertThat(event.getValue().getEntityId(), is(1L));
+	}
+
+	@Test
+	public void testPatchProductConflict() throws Exception {
+
+		String eTag = new EntityVersion(3L, MODIFIED).eTag(MediaType.APPLICATION_JSON_VALUE);
+		when(productRepository.patchProduct(eq(1L), eq(3L), eq("SKU_Z"),
+				isNull(String.class), any(Instant.class))).thenReturn(0);
+		when(productRepository.findVersionById(1L)).thenReturn(new EntityVersion(4L, MODIFIED));
+
+		perform(
+				MockMvcRequestBuilders.patch("/store/product/id/{id}", 1L)
+						.contentType(MediaType.APPLICATION_JSON)
+						.header("If-Match", eTag)
+						.content(TestUtil.asJsonString(new ProductPatchRepresentation("SKU_Z", null))))
+				.andExpect(status().isConflict());
+
+		verifyZeroInteractions(eventPublisher);
+	}
+
+	@Test
+	public void testPatchProductNotFound() throws Exception {
+
+		when(productRepository.patchProduct(eq(25L), eq(3L), eq("SKU_Z"),
+				isNull(String.class), any(Instant.class))).thenReturn(0);
+		when(productRepository.findVersionById(25L)).thenReturn(null);
+
+		perform(
+				MockMvcRequestBuilders.patch("/store/product/id/{id}", 25L)
+						.contentType(MediaType.APPLICATION_JSON)
+						.header("If-Match", "\"3-0\"")
+						.content(TestUtil.asJsonString(new ProductPatchRepresentation("SKU_Z", null))))
+				.andExpect(status().isNotFound())
+				.andExpect(jsonPath("message", is("the product Id 25 is not existed to update it")));
+	}
+
+	@Test
+	public void testPatchProductWithoutIfMatch() throws Exception {
+
+		perform(
+				MockMvcRequestBuilders.patch("/store/product/id/{id}", 1L)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(TestUtil.asJsonString(new ProductPatchRepresentation(null, "Product_V2"))))
+				.andExpect(status().isPreconditionRequired());
+
+		verifyZeroInteractions(productRepository);
+	}
+
+	@Test
+	public void testPatchProductNonValid() throws Exception {
+
+		perform(
+				MockMvcRequestBuilders.patch("/store/product/id/{id}", 1L)
+						.contentType(MediaType.APPLICATION_JSON)
+						.header("If-Match", "\"3-0\"")
+						.content(TestUtil.asJsonString(new ProductPatchRepresentation("", null))))
+				.andExpect(status().isBadRequest());
+
+		verifyZeroInteractions(productRepository);
+	}
+
 	@Test
 	public void testCreateNewProduct() throws Exception {
 		Product product = new Product("SKU_1", "Product1");
 		when(productRepository.save(product)).thenReturn(product);
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders.post("/store/products")
 								.contentType(MediaType.APPLICATION_JSON)
 								.content(TestUtil.asJsonString(product)))
@@ -375,7 +866,7 @@ public class ProductControllerTest {
 //		when(productRepository.save(product)).thenThrow(
 //				new MethodArgumentNotValidException(new MethodParameter(null), null));
 
-		mockMvc.perform(MockMvcRequestBuilders.post("/store/products")
+		perform(MockMvcRequestBuilders.post("/store/products")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(TestUtil.asJsonString(product))
         )
@@ -395,6 +886,49 @@ public class ProductControllerTest {
     }
 
 
+	@Test
+	public void testCreateProductsInBulk() throws Exception {
+
+		Product product1 = new Product("SKU_1", "Product1");
+		Product product2 = new Product("SKU_2", "Product2");
+		Product duplicate = new Product("SKU_1", "Product1bis");
+		Product invalid = new Product(TestUtil.createStringWithLength(46),
+				"Product4");
+
+		List<Product> products = new ArrayList<Product>();
+		products.add(product1);
+		products.add(product2);
+		products.add(duplicate);
+		products.add(invalid);
+
+		List<String> existing = new ArrayList<String>();
+		existing.add("SKU_2");
+		when(productRepository.findExistingProductSkus(anyCollectionOf(String.class)))
+				.thenReturn(existing);
+
+		perform(
+						MockMvcRequestBuilders.post("/store/products/bulk")
+								.contentType(MediaType.APPLICATION_JSON)
+								.accept(MediaType.APPLICATION_JSON)
+								.content(TestUtil.asJsonString(products)))
+				.andExpect(status().isMultiStatus())
+				.andExpect(jsonPath("$.created", is(1)))
+				.andExpect(jsonPath("$.failed", is(3)))
+				.andExpect(jsonPath("$.items", hasSize(4)))
+				.andExpect(jsonPath("$.items[0].status", is("CREATED")))
+				.andExpect(jsonPath("$.items[1].status", is("FAILED")))
+				.andExpect(jsonPath("$.items[1].message", is("the product sku SKU_2 is already existed")))
+				.andExpect(jsonPath("$.items[2].message", is("the product sku SKU_1 is duplicated in the request")))
+				.andExpect(jsonPath("$.items[3].status", is("FAILED")));
+
+		List<Product> inserted = new ArrayList<Product>();
+		inserted.add(product1);
+		verify(productRepository, times(1)).findExistingProductSkus(anyCollectionOf(String.class));
+		verify(productRepository, times(1)).save(inserted);
+		verify(productRepository, times(1)).flush();
+		verifyNoMoreInteractions(productRepository);
+	}
+
 	@Test
 	public void testDeleteProductByIdNotExisted() throws Exception {
 
@@ -406,8 +940,7 @@ public class ProductControllerTest {
 		when(productRepository.findOne(25L)).thenThrow(
 				new ProductNotFoundException(message));
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders.delete("/store/product/id/{id}", 25L)
 								.contentType(MediaType.APPLICATION_JSON)
 								.accept(MediaType.APPLICATION_JSON)
@@ -419,6 +952,7 @@ public class ProductControllerTest {
 
 		verify(productRepository, times(1)).findOne(25L);
 		verify(productRepository, times(0)).delete(product);
+		verifyNoMoreInteractions(categoryRepository);
 
 	}
 
@@ -431,8 +965,7 @@ public class ProductControllerTest {
 
 		when(productRepository.findOne(1L)).thenReturn(product);
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders.delete("/store/product/id/{id}", 1L)
 								.contentType(MediaType.APPLICATION_JSON)
 								.accept(MediaType.APPLICATION_JSON)
@@ -441,7 +974,10 @@ public class ProductControllerTest {
 
 
 		verify(productRepository, times(1)).findOne(1L);
+		verify(categoryRepository, times(1)).touchCategoriesOfProduct(eq(1L), any(Timestamp.class));
+		verify(categoryRepository, times(1)).removeProductFromAllCategories(1L);
 		verify(productRepository, times(1)).delete(product);
+		verifyNoMoreInteractions(categoryRepository);
 
 	}
 	
@@ -456,8 +992,7 @@ public class ProductControllerTest {
 		when(productRepository.findByProductSku("SKU_A")).thenThrow(
 				new ProductNotFoundException(message));
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders.delete("/store/product/sku/{sku}", "SKU_A")
 								.contentType(MediaType.APPLICATION_JSON)
 								.accept(MediaType.APPLICATION_JSON)
@@ -481,8 +1016,7 @@ public class ProductControllerTest {
 
 		when(productRepository.findByProductSku("SKU_A")).thenReturn(product);
 
-		this.mockMvc
-				.perform(
+		perform(
 						MockMvcRequestBuilders.delete("/store/product/sku/{sku}", "SKU_A")
 								.contentType(MediaType.APPLICATION_JSON)
 								.accept(MediaType.APPLICATION_JSON)
@@ -491,7 +1025,17 @@ public class ProductControllerTest {
 
 
 		verify(productRepository, times(1)).findByProductSku("SKU_A");
+		verify(categoryRepository, times(1)).touchCategoriesOfProduct(eq(1L), any(Timestamp.class));
+		verify(categoryRepository, times(1)).removeProductFromAllCategories(1L);
 		verify(productRepository, times(1)).delete(product);
+		verifyNoMoreInteractions(categoryRepository);
+
+		ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor
+				.forClass(CatalogChangeEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertThat(event.getValue().getChangeType(), is(ChangeType.DELETED));
+		assertThat(event.getValue().getEntityId(), is(1L));
+		assertThat(event.getValue().getKey(), is("SKU_A"));
 
 	}
 
@@ -0,0 +1,171 @@
+package com.store.search.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeEvent.ChangeType;
+import com.store.event.CatalogChangeEvent.EntityType;
+import com.store.exception.ServiceUnavailableException;
+import com.store.repository.ProductRepository;
+import com.store.rest.representation.ProductSearchResultRepresentation;
+import com.store.rest.representation.ProductSearchResultRepresentation.Hit;
+import com.store.search.ProductSearchIndex;
+
+public class ProductSearchIndexTest {
+
+	@InjectMocks
+	private ProductSearchIndex productSearchIndex;
+
+	@Mock
+	private ProductRepository productRepository;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+	}
+
+	@Test
+	public void searchesAreRefusedUntilLoaded() {
+
+		try {
+			productSearchIndex.search("phone", 0, 10);
+			fail("the search should have been refused");
+		} catch (ServiceUnavailableException e) {
+			assertThat(e.getRetryAfterSeconds()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void tokensMatchByPrefixAndExactMatchesRankFirst() {
+
+		load(new Object[] { 1L, "PH-100", "Smartphone case" },
+				new Object[] { 2L, "PH-200", "Phone charger" },
+				new Object[] { 3L, "CB-300", "Phone cable" },
+				new Object[] { 4L, "TV-400", "Television" });
+
+		assertThat(ids(productSearchIndex.search("phone", 0, 10)))
+				.containsExactly(2L, 3L);
+		assertThat(ids(productSearchIndex.search("ph", 0, 10)))
+				.containsExactly(1L, 2L, 3L);
+		assertThat(ids(productSearchIndex.search("Phone CA", 0, 10)))
+				.containsExactly(3L);
+		assertThat(ids(productSearchIndex.search("ph-200", 0, 10)))
+				.containsExactly(2L);
+		assertThat(productSearchIndex.search("radio", 0, 10).getTotal())
+				.isEqualTo(0);
+		assertThat(productSearchIndex.search(" -- ", 0, 10).getHits())
+				.isEmpty();
+	}
+
+	@Test
+	public void pagesKeepTheTotal() {
+
+		load(new Object[] { 1L, "SKU_1", "Lamp" },
+				new Object[] { 2L, "SKU_2", "Lamp" },
+				new Object[] { 3L, "SKU_3", "Lamp" });
+
+		ProductSearchResultRepresentation page = productSearchIndex.search(
+				"lamp", 1, 1);
+
+		assertThat(page.getTotal()).isEqualTo(3);
+		assertThat(page.getOffset()).isEqualTo(1);
+		assertThat(ids(page)).containsExactly(2L);
+		assertThat(productSearchIndex.search("lamp", 5, 1).getHits()).isEmpty();
+	}
+
+	@Test
+	public void changesAreAppliedIncrementally() {
+
+		load(new Object[] { 1L, "SKU_1", "Desk lamp" });
+
+		productSearchIndex.onProductChange(CatalogChangeEvent
+				.productCreated(product(2L, "SKU_2", "Floor lamp")));
+		productSearchIndex.onProductChange(CatalogChangeEvent.productUpdated(
+				product(1L, "SKU_1", "Desk fan"), "SKU_1"));
+		assertThat(ids(productSearchIndex.search("lamp", 0, 10)))
+				.containsExactly(2L);
+		assertThat(ids(productSearchIndex.search("fan", 0, 10)))
+				.containsExactly(1L);
+
+		// a patch of the SKU alone keeps the indexed name
+		productSearchIndex.onProductChange(new CatalogChangeEvent(
+				EntityType.PRODUCT, ChangeType.UPDATED, 2L, "LMP_2", null));
+		assertThat(ids(productSearchIndex.search("lmp floor", 0, 10)))
+				.containsExactly(2L);
+
+		productSearchIndex.onProductChange(CatalogChangeEvent
+				.productDeleted(product(2L, "LMP_2", "Floor lamp")));
+		assertThat(productSearchIndex.search("floor", 0, 10).getTotal())
+				.isEqualTo(0);
+		assertThat(productSearchIndex.statistics()).containsEntry("products", 1);
+	}
+
+	@Test
+	public void suggestionsCompleteSkusAndNamesAndFollowChanges() {
+
+		load(new Object[] { 1L, "PH-100", "Phone case" },
+				new Object[] { 2L, "PH-200", "Phone charger" },
+				new Object[] { 3L, "PH-300", "Phone charger" });
+
+		assertThat(productSearchIndex.suggest("  PH", 10)).containsExactly(
+				"Phone charger", "PH-100", "PH-200", "PH-300", "Phone case");
+		assertThat(productSearchIndex.suggest("phone c", 1)).containsExactly(
+				"Phone charger");
+		assertThat(productSearchIndex.suggest(" ", 10)).isEmpty();
+
+		productSearchIndex.onProductChange(CatalogChangeEvent
+				.productDeleted(product(2L, "PH-200", "Phone charger")));
+		productSearchIndex.onProductChange(CatalogChangeEvent.productUpdated(
+				product(3L, "PH-300", "Phone stand"), "PH-300"));
+
+		assertThat(productSearchIndex.suggest("phone ", 10)).containsExactly(
+				"Phone case", "Phone stand");
+		assertThat(productSearchIndex.statistics()).containsEntry(
+				"suggestionKeys", 4);
+	}
+
+	@Test
+	public void changesDuringTheLoadAreReplayedOverIt() {
+
+		productSearchIndex.onProductChange(CatalogChangeEvent
+				.productDeleted(product(1L, "SKU_1", "Desk lamp")));
+
+		// the load read the row before the delete committed
+		load(new Object[] { 1L, "SKU_1", "Desk lamp" });
+
+		assertThat(productSearchIndex.search("lamp", 0, 10).getTotal())
+				.isEqualTo(0);
+	}
+
+	private void load(Object[]... rows) {
+		when(productRepository.streamProductNames()).thenReturn(Stream.of(rows));
+		productSearchIndex.load();
+	}
+
+	private static Product product(long productId, String sku, String name) {
+		return new Product(productId, sku, name, null, null);
+	}
+
+	private static List<Long> ids(ProductSearchResultRepresentation result) {
+		return result.getHits().stream().map(Hit::getProductId)
+				.collect(Collectors.toList());
+	}
+
+}
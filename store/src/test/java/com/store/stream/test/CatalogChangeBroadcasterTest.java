@@ -0,0 +1,238 @@
+package com.store.stream.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.store.async.RepositoryExecutor;
+import com.store.domain.CatalogChange;
+import com.store.domain.Product;
+import com.store.event.CatalogChangeEvent;
+import com.store.event.CatalogChangeOutbox;
+import com.store.repository.CatalogChangeRepository;
+import com.store.rest.controller.CatalogChangeController;
+import com.store.rest.exception.RestErrorHandlerAdvice;
+import com.store.stream.CatalogChangeBroadcaster;
+
+public class CatalogChangeBroadcasterTest {
+
+	private CatalogChangeBroadcaster catalogChangeBroadcaster;
+
+	private CatalogChangeRepository catalogChangeRepository;
+
+	private MockMvc mockMvc;
+
+	// the highest sequence committed to the outbox table
+	private volatile long committedUpTo;
+
+	@Before
+	public void setUp() {
+		catalogChangeRepository = mock(CatalogChangeRepository.class);
+		CatalogChangeOutbox catalogChangeOutbox = mock(CatalogChangeOutbox.class);
+		when(catalogChangeOutbox.visibleUpTo()).thenAnswer(
+				invocation -> committedUpTo);
+		PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+		// reads the polls and the replay pages on the calling thread
+		RepositoryExecutor repositoryExecutor = new RepositoryExecutor(
+				transactionManager);
+		repositoryExecutor.init();
+
+		catalogChangeBroadcaster = new CatalogChangeBroadcaster();
+		ReflectionTestUtils.setField(catalogChangeBroadcaster,
+				"catalogChangeRepository", catalogChangeRepository);
+		ReflectionTestUtils.setField(catalogChangeBroadcaster,
+				"catalogChangeOutbox", catalogChangeOutbox);
+		ReflectionTestUtils.setField(catalogChangeBroadcaster,
+				"repositoryExecutor", repositoryExecutor);
+		ReflectionTestUtils.setField(catalogChangeBroadcaster, "bufferSize", 4);
+		ReflectionTestUtils.setField(catalogChangeBroadcaster,
+				"writerThreads", 1);
+		// polled by the tests only
+		ReflectionTestUtils.setField(catalogChangeBroadcaster, "pollMillis",
+				3600000L);
+		catalogChangeBroadcaster.init();
+		// the first poll takes the head
+		catalogChangeBroadcaster.poll();
+
+		CatalogChangeController catalogChangeController = new CatalogChangeController();
+		ReflectionTestUtils.setField(catalogChangeController,
+				"catalogChangeBroadcaster", catalogChangeBroadcaster);
+		mockMvc = MockMvcBuilders.standaloneSetup(catalogChangeController)
+				.setControllerAdvice(new RestErrorHandlerAdvice())
+				.setMessageConverters(new StringHttpMessageConverter(),
+						new MappingJackson2HttpMessageConverter())
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		catalogChangeBroadcaster.shutdown();
+	}
+
+	@Test
+	public void liveChangesArePushedInOrder() throws Exception {
+
+		MvcResult stream = subscribe(null);
+
+		commit(0L, 1L, 2L);
+
+		String events = await(stream, "\"key\":\"SKU_2\"");
+		assertThat(events).contains("id:1\nevent:change\ndata:{");
+		assertThat(events.indexOf("id:1\n")).isLessThan(events.indexOf("id:2\n"));
+	}
+
+	@Test
+	public void aLiveSubscriberStartsFromTheLastPoll() throws Exception {
+
+		commit(0L, 1L, 2L);
+		MvcResult stream = subscribe(null);
+		commit(2L, 3L);
+
+		String events = await(stream, "\"key\":\"SKU_3\"");
+		assertThat(events).doesNotContain("id:1\n").doesNotContain("id:2\n");
+		assertThat(catalogChangeBroadcaster.statistics()).containsEntry(
+				"polledUpTo", 3L);
+	}
+
+	@Test
+	public void aResumingSubscriberIsSentWhatItMissedOnce() throws Exception {
+
+		when(catalogChangeRepository.findChanges(eq(5L), anyLong(),
+				any(Pageable.class))).thenReturn(changes(6L, 7L));
+
+		MvcResult stream = subscribe("5");
+
+		// 7 was read by the replay already
+		commit(0L, 7L, 8L);
+
+		String events = await(stream, "\"key\":\"SKU_8\"");
+		assertThat(events).contains("id:6\n");
+		assertThat(events.indexOf("id:7\n")).isEqualTo(
+				events.lastIndexOf("id:7\n"));
+		assertThat(events).doesNotContain("id:5\n");
+	}
+
+	@Test
+	public void aLongReplayIsCutAndToldWhereToResume() throws Exception {
+
+		ReflectionTestUtils.setField(catalogChangeBroadcaster, "maxReplay", 4);
+		ReflectionTestUtils.setField(catalogChangeBroadcaster,
+				"replayPageSize", 2);
+		when(catalogChangeRepository.findChanges(eq(5L), anyLong(),
+				any(Pageable.class))).thenReturn(changes(6L, 7L));
+		when(catalogChangeRepository.findChanges(eq(7L), anyLong(),
+				any(Pageable.class))).thenReturn(changes(8L, 9L));
+
+		MvcResult stream = subscribe("5");
+
+		String events = await(stream, "{\"after\":9}");
+		assertThat(events.indexOf("id:6\n")).isLessThan(events.indexOf("id:8\n"));
+		assertThat(events).contains("id:9\nevent:resync");
+	}
+
+	@Test
+	public void anOverflowingSubscriberIsToldWhereToResume() throws Exception {
+
+		// the live changes arrive while the replay runs, and overflow the buffer
+		when(catalogChangeRepository.findChanges(eq(0L), eq(10L),
+				any(Pageable.class))).thenReturn(
+				changes(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L));
+		when(catalogChangeRepository.findChanges(eq(0L), eq(0L),
+				any(Pageable.class))).thenAnswer(invocation -> {
+			committedUpTo = 10L;
+			catalogChangeBroadcaster.poll();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!catalogChangeBroadcaster.statistics().get("overflows")
+					.equals(1L)
+					|| !catalogChangeBroadcaster.statistics().get("pending")
+							.equals(0)) {
+				if (System.currentTimeMillis() > deadline) {
+					fail("the buffer never overflowed");
+				}
+				Thread.sleep(10);
+			}
+			return new ArrayList<CatalogChange>();
+		});
+
+		MvcResult stream = subscribe("0");
+
+		String events = await(stream, "{\"after\":4}");
+		assertThat(events).contains("id:4\nevent:change");
+		assertThat(events).doesNotContain("id:5\n");
+		assertThat(events).contains("id:4\nevent:resync\ndata:{\"after\":4}");
+	}
+
+	// the changes are committed after the last poll, which the next one reads
+	private void commit(long after, long... sequences) {
+		committedUpTo = sequences[sequences.length - 1];
+		when(catalogChangeRepository.findChanges(eq(after), eq(committedUpTo),
+				any(Pageable.class))).thenReturn(changes(sequences));
+		catalogChangeBroadcaster.poll();
+	}
+
+	private MvcResult subscribe(String lastEventId) throws Exception {
+		MvcResult result = lastEventId == null ? mockMvc.perform(
+				MockMvcRequestBuilders.get("/store/changes/stream")).andReturn()
+				: mockMvc.perform(
+						MockMvcRequestBuilders.get("/store/changes/stream")
+								.header("Last-Event-ID", lastEventId))
+						.andReturn();
+		assertThat(result.getRequest().isAsyncStarted()).isTrue();
+		return result;
+	}
+
+	private static String await(MvcResult stream, String expected)
+			throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (true) {
+			String events = stream.getResponse().getContentAsString();
+			if (events.contains(expected)) {
+				return events;
+			}
+			if (System.currentTimeMillis() > deadline) {
+				fail("never received " + expected + " in " + events);
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	private static List<CatalogChange> changes(long... sequences) {
+		List<CatalogChange> changes = new ArrayList<CatalogChange>();
+		for (long sequence : sequences) {
+			changes.add(change(sequence));
+		}
+		return changes;
+	}
+
+	private static CatalogChange change(long sequence) {
+		CatalogChange change = new CatalogChange(
+				CatalogChangeEvent.productCreated(new Product(sequence, "SKU_"
+						+ sequence, "Product" + sequence, null, null)),
+				Instant.parse("2016-08-22T08:00:00Z"));
+		change.setSequence(sequence);
+		return change;
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.store.util.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.domain.Product;
+import com.store.util.LocalDateCodec;
+import com.store.util.LocalDateConverter;
+
+public class LocalDateCodecTest {
+
+	private final LocalDateConverter converter = new LocalDateConverter();
+
+	@Test
+	public void formatShouldMatchIsoLocalDate() {
+
+		for (LocalDate date : new LocalDate[] { LocalDate.of(2016, 8, 16),
+				LocalDate.of(2016, 2, 29), LocalDate.of(1, 1, 1),
+				LocalDate.of(0, 12, 31), LocalDate.of(999, 6, 5),
+				LocalDate.of(9999, 12, 31), LocalDate.of(10000, 1, 1),
+				LocalDate.of(-1, 3, 4) }) {
+			assertThat(LocalDateCodec.format(date)).isEqualTo(
+					date.format(DateTimeFormatter.ISO_LOCAL_DATE));
+			assertThat(LocalDateCodec.format(date)).isEqualTo(
+					date.format(DateTimeFormatter.ISO_LOCAL_DATE));
+		}
+	}
+
+	@Test
+	public void parseShouldRoundTripEveryDayOfSeveralYears() {
+
+		LocalDate date = LocalDate.of(2012, 1, 1);
+		while (date.getYear() < 2020) {
+			char[] chars = ("\"" + date + "\"").toCharArray();
+			assertThat(LocalDateCodec.parse(chars, 1, 10)).isEqualTo(date);
+			assertThat(LocalDateCodec.parse(date.toString())).isEqualTo(date);
+			date = date.plusDays(1);
+		}
+	}
+
+	@Test
+	public void repeatedDatesShouldShareInstances() {
+
+		LocalDate first = LocalDateCodec.parse("2016-08-16");
+
+		assertThat(LocalDateCodec.parse("2016-08-16")).isSameAs(first);
+		assertThat(LocalDateCodec.format(first)).isSameAs(
+				LocalDateCodec.format(LocalDate.of(2016, 8, 16)));
+	}
+
+	@Test(expected = DateTimeException.class)
+	public void parseShouldRejectImpossibleDay() {
+
+		LocalDateCodec.parse("2015-02-29");
+	}
+
+	@Test(expected = DateTimeException.class)
+	public void parseShouldRejectMalformedText() {
+
+		LocalDateCodec.parse("2016-8-16x");
+	}
+
+	@Test(expected = JsonMappingException.class)
+	public void deserializerShouldRejectInvalidDate() throws IOException {
+
+		new ObjectMapper().readValue(
+				"{\"productSku\":\"SKU_A\",\"productCreated\":\"2016-13-01\"}",
+				Product.class);
+	}
+
+	@Test
+	public void deserializerShouldReadIsoDates() throws IOException {
+
+		Product product = new ObjectMapper().readValue(
+				"{\"productSku\":\"SKU_A\",\"productCreated\":\"2016-08-16\",\"productLastUpdated\":\"2016-08-17\"}",
+				Product.class);
+
+		assertThat(product.getProductCreated()).isEqualTo(LocalDate.of(2016, 8, 16));
+		assertThat(product.getProductLastUpdated()).isEqualTo(LocalDate.of(2016, 8, 17));
+	}
+
+	@Test
+	public void converterShouldMatchSqlDate() {
+
+		LocalDate date = LocalDate.of(2016, 8, 16);
+
+		Date column = converter.convertToDatabaseColumn(date);
+
+		assertThat(column).isEqualTo(Date.valueOf(date));
+		assertThat(converter.convertToDatabaseColumn(date)).isNotSameAs(column);
+		assertThat(converter.convertToEntityAttribute(column)).isEqualTo(date);
+		assertThat(converter.convertToEntityAttribute(Date.valueOf("1999-12-31")))
+				.isEqualTo(LocalDate.of(1999, 12, 31));
+		assertThat(converter.convertToDatabaseColumn(null)).isNull();
+		assertThat(converter.convertToEntityAttribute(null)).isNull();
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.store.util.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.store.util.RadixTrie;
+
+public class RadixTrieTest {
+
+	@Test
+	public void completionsAreHeaviestFirstThenInKeyOrder() {
+
+		RadixTrie trie = new RadixTrie();
+		trie.add("desk lamp", "Desk lamp");
+		trie.add("desk fan", "Desk fan");
+		trie.add("desk", "Desk");
+		trie.add("desk fan", "desk FAN");
+		trie.add("door", "Door");
+
+		assertThat(trie.complete("de", 10)).containsExactly("Desk fan",
+				"Desk", "Desk lamp");
+		assertThat(trie.complete("desk l", 10)).containsExactly("Desk lamp");
+		assertThat(trie.complete("d", 2)).containsExactly("Desk fan", "Desk");
+		assertThat(trie.complete("desks", 10)).isEmpty();
+		assertThat(trie.complete("x", 10)).isEmpty();
+		assertThat(trie.size()).isEqualTo(4);
+	}
+
+	@Test
+	public void removedKeysCollapseTheirBranch() {
+
+		RadixTrie trie = new RadixTrie();
+		trie.add("sku-10", "SKU-10");
+		trie.add("sku-11", "SKU-11");
+		trie.add("sku-2", "SKU-2");
+		int nodes = trie.nodeCount();
+
+		trie.add("sku-12", "SKU-12");
+		trie.remove("sku-12");
+		trie.remove("sku-99");
+
+		assertThat(trie.nodeCount()).isEqualTo(nodes);
+		trie.remove("sku-10");
+		trie.remove("sku-11");
+		assertThat(trie.complete("sku", 10)).containsExactly("SKU-2");
+		assertThat(trie.nodeCount()).isEqualTo(2);
+		assertThat(trie.estimatedBytes()).isPositive();
+	}
+
+	@Test
+	public void completionsMatchABruteForceModel() {
+
+		Random random = new Random(42);
+		RadixTrie trie = new RadixTrie();
+		Map<String, Integer> model = new TreeMap<String, Integer>();
+		for (int operation = 0; operation < 5000; operation++) {
+			String key = randomKey(random);
+			if (random.nextInt(3) == 0) {
+				trie.remove(key);
+				model.computeIfPresent(key, (k, weight) -> weight == 1 ? null
+						: weight - 1);
+			} else {
+				trie.add(key, key.toUpperCase());
+				model.merge(key, 1, Integer::sum);
+			}
+
+			String prefix = randomKey(random).substring(0, 1 + random.nextInt(2));
+			int limit = 1 + random.nextInt(5);
+			assertThat(trie.complete(prefix, limit)).isEqualTo(
+					expected(model, prefix, limit));
+			assertThat(trie.size()).isEqualTo(model.size());
+		}
+	}
+
+	private static String randomKey(Random random) {
+		StringBuilder key = new StringBuilder();
+		for (int i = 2 + random.nextInt(4); i > 0; i--) {
+			key.append("abc".charAt(random.nextInt(3)));
+		}
+		return key.toString();
+	}
+
+	private static List<String> expected(Map<String, Integer> model,
+			String prefix, int limit) {
+		List<Map.Entry<String, Integer>> matches = new ArrayList<Map.Entry<String, Integer>>();
+		for (Map.Entry<String, Integer> entry : model.entrySet()) {
+			if (entry.getKey().startsWith(prefix)) {
+				matches.add(entry);
+			}
+		}
+		// the model is a TreeMap, so a stable sort keeps key order in ties
+		matches.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+		return matches.stream().limit(limit)
+				.map(entry -> entry.getKey().toUpperCase())
+				.collect(Collectors.toList());
+	}
+
+}
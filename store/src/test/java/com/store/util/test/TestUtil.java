@@ -1,8 +1,15 @@
 package com.store.util.test;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.store.metrics.SqlStatementHeaderFilter;
+import com.store.metrics.SqlStatementStatistics;
 
 import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
  
 
 import java.io.IOException;
@@ -28,6 +35,48 @@ public class TestUtil {
         return builder.toString();
     }
     
+    /**
+     * Performs the request and, when the handler answered asynchronously,
+     * the async dispatch that renders the outcome.
+     */
+    public static ResultActions performAsync(MockMvc mockMvc, RequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        if (!result.getRequest().isAsyncStarted()) {
+            return actions;
+        }
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+
+    /**
+     * Runs the work with fresh SQL statement statistics bound to the calling
+     * thread and returns them. The work must run on the calling thread.
+     */
+    public static SqlStatementStatistics countSqlStatements(Runnable work) {
+        SqlStatementStatistics statistics = new SqlStatementStatistics();
+        SqlStatementStatistics previous = SqlStatementStatistics.bind(statistics);
+        try {
+            work.run();
+        } finally {
+            SqlStatementStatistics.restore(previous);
+        }
+        return statistics;
+    }
+
+    /**
+     * The number of SQL statements a request reported in its
+     * X-SQL-Statements header.
+     */
+    public static long sqlStatements(ResultActions actions) {
+        String statements = actions.andReturn().getResponse()
+                .getHeader(SqlStatementHeaderFilter.STATEMENTS_HEADER);
+        if (statements == null) {
+            throw new AssertionError("the response carries no "
+                    + SqlStatementHeaderFilter.STATEMENTS_HEADER + " header");
+        }
+        return Long.parseLong(statements);
+    }
+
     public static String asJsonString(Object obj) {
         try {
             return new ObjectMapper().writeValueAsString(obj);